@@ -0,0 +1,100 @@
+package com.example.bench;
+
+import java.nio.file.Path;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.SocialMediaApp;
+import com.example.security.PasswordHasher;
+
+/**
+ * Starts the application for in-process benchmarks and seeds its embedded H2
+ * database (schema from data.sql) with generated accounts and messages.
+ *
+ * Generated ids start far above the data.sql test ids (9996-9999) and the
+ * ids handed out by the sequences during a benchmark run, so they never
+ * collide: accounts are numbered from {@link #FIRST_ACCOUNT_ID} and messages
+ * from {@link #FIRST_MESSAGE_ID}. Every account has the password
+ * {@link #PASSWORD}, hashed with the app's PasswordHasher settings, and posts
+ * about {@link #MESSAGES_PER_ACCOUNT} messages.
+ */
+public final class BenchmarkData {
+    public static final int FIRST_ACCOUNT_ID = 100_000;
+    public static final int FIRST_MESSAGE_ID = 1_000_000_000;
+    public static final int MESSAGES_PER_ACCOUNT = 100;
+    public static final String PASSWORD = "password";
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Starts the application without its web server.
+     * @param args	extra "--property=value" arguments
+     * @return	the running application
+     */
+    public static ConfigurableApplicationContext startApp(String... args) {
+        return new SpringApplicationBuilder(SocialMediaApp.class)
+                .web(WebApplicationType.NONE)
+                .logStartupInfo(false)
+                .properties("spring.main.banner-mode=off", "logging.level.root=WARN")
+                .run(args);
+    }
+
+    /**
+     * Starts the application without its web server in the "persistent"
+     * profile, on the H2 database file at "path".
+     * @param path	database file, without the ".mv.db" extension
+     * @param args	extra "--property=value" arguments
+     * @return	the running application
+     */
+    public static ConfigurableApplicationContext startPersistentApp(Path path, String... args) {
+        return new SpringApplicationBuilder(SocialMediaApp.class)
+                .web(WebApplicationType.NONE)
+                .logStartupInfo(false)
+                .profiles("persistent")
+                .properties("spring.main.banner-mode=off", "logging.level.root=WARN",
+                        "app.storage.path=" + path.toAbsolutePath())
+                .run(args);
+    }
+
+    /**
+     * Creates the H2 database file at "path", migrated and seeded with the
+     * data.sql test data and "messages" messages, and closes it again.
+     * @param path	database file, without the ".mv.db" extension
+     * @param messages	number of messages to insert
+     */
+    public static void seedPersistent(Path path, int messages) {
+        try (ConfigurableApplicationContext app = startPersistentApp(path,
+                "--spring.sql.init.mode=always", "--app.storage.warm-up=false")) {
+            seed(app, messages);
+        }
+    }
+
+    /**
+     * @param messages	number of seeded messages
+     * @return	number of seeded accounts
+     */
+    public static int accountCount(int messages) {
+        return Math.max(1, messages / MESSAGES_PER_ACCOUNT);
+    }
+
+    /**
+     * Inserts {@link #accountCount(int)} accounts and "messages" messages,
+     * generated inside H2 so seeding 10M rows takes seconds, not minutes.
+     * @param app	the running application
+     * @param messages	number of messages to insert
+     */
+    public static void seed(ConfigurableApplicationContext app, int messages) {
+        JdbcTemplate jdbcTemplate = app.getBean(JdbcTemplate.class);
+        int accounts = accountCount(messages);
+        jdbcTemplate.update("INSERT INTO account (accountId, username, password)"
+                + " SELECT ? + X, 'bench' || X, ? FROM SYSTEM_RANGE(0, ? - 1)",
+                FIRST_ACCOUNT_ID, app.getBean(PasswordHasher.class).hash(PASSWORD), accounts);
+        jdbcTemplate.update("INSERT INTO message (messageId, postedBy, messageText, timePostedEpoch)"
+                + " SELECT ? + X, ? + MOD(X, ?), 'bench message ' || X, 1669947792 + X FROM SYSTEM_RANGE(0, ? - 1)",
+                FIRST_MESSAGE_ID, FIRST_ACCOUNT_ID, accounts, messages);
+    }
+}
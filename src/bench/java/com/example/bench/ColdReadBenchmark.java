@@ -0,0 +1,104 @@
+package com.example.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import com.example.service.MessageService;
+
+/**
+ * JMH benchmark of the first reads after a restart in the "persistent"
+ * profile, on an H2 database file seeded by BenchmarkData with 100k and 1M
+ * messages. Every invocation restarts the application, so H2's page cache
+ * and the application's caches start out empty, and then times READS
+ * lookups of random messages and account timelines.
+ *
+ * With "warmUp" false these are cold reads, served from the file; with
+ * "warmUp" true PageCacheWarmer has read the database into the page cache
+ * first. ServiceBenchmark.getMessage and getAllMessagesByAccount give the
+ * steady-state latency to compare with. The OS file cache survives the
+ * restarts; drop it between invocations (echo 3 > /proc/sys/vm/drop_caches)
+ * to measure reads from the disk itself.
+ *
+ * Run with "mvn -P bench test-compile exec:exec -Djmh.include=ColdReadBenchmark".
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx8g"})
+public class ColdReadBenchmark {
+    static final int READS = 1000;
+
+    @Param({"100000", "1000000"})
+    public int messages;
+
+    @Param({"false", "true"})
+    public boolean warmUp;
+
+    Path directory;
+    ConfigurableApplicationContext app;
+    MessageService messageService;
+    SplittableRandom random = new SplittableRandom(42);
+    int accounts;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        this.directory = Files.createTempDirectory("cold-read-bench");
+        BenchmarkData.seedPersistent(this.directory.resolve("socialmedia"), this.messages);
+        this.accounts = BenchmarkData.accountCount(this.messages);
+    }
+
+    @Setup(Level.Invocation)
+    public void start() {
+        this.app = BenchmarkData.startPersistentApp(this.directory.resolve("socialmedia"),
+                "--app.storage.warm-up=" + this.warmUp);
+        this.messageService = this.app.getBean(MessageService.class);
+    }
+
+    /**
+     * Average latency of a getMessage plus a getAllMessagesByAccount over
+     * the READS first ones after startup.
+     */
+    @Benchmark
+    @OperationsPerInvocation(READS)
+    public void firstReads(Blackhole blackhole) {
+        for (int i = 0; i < READS; i++) {
+            blackhole.consume(this.messageService.getMessage(
+                    BenchmarkData.FIRST_MESSAGE_ID + this.random.nextInt(this.messages)));
+            blackhole.consume(this.messageService.getAllMessagesByAccount(
+                    BenchmarkData.FIRST_ACCOUNT_ID + this.random.nextInt(this.accounts)));
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void stop() {
+        this.app.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FileSystemUtils.deleteRecursively(this.directory);
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.entity.Message;
+import com.example.repository.MessageRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * JMH benchmark of the two halves of GET /messages, on the embedded H2
+ * database seeded by BenchmarkData with 10k and 100k messages:
+ *
+ * - loading every message as managed entities (findAll) or as a projection
+ *   (findAllMessages), in a read-only transaction like the service;
+ * - writing them as JSON with a plain ObjectMapper (Jackson's reflective
+ *   BeanSerializer) or with the application's (MessageSerializer).
+ *
+ * Add "-prof gc" to the JMH arguments to compare the bytes allocated per
+ * operation as well.
+ *
+ * Run with "mvn -P bench test-compile exec:exec -Djmh.include=ListMessagesBenchmark".
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx8g"})
+public class ListMessagesBenchmark {
+    @Param({"10000", "100000"})
+    public int messages;
+
+    ConfigurableApplicationContext app;
+    MessageRepository messageRepository;
+    TransactionTemplate readOnlyTransaction;
+    ObjectMapper reflectiveMapper;
+    ObjectMapper applicationMapper;
+    List<Message> list;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.app = BenchmarkData.startApp();
+        BenchmarkData.seed(this.app, this.messages);
+        this.messageRepository = this.app.getBean(MessageRepository.class);
+        this.readOnlyTransaction = new TransactionTemplate(this.app.getBean(PlatformTransactionManager.class));
+        this.readOnlyTransaction.setReadOnly(true);
+        this.reflectiveMapper = new ObjectMapper();
+        this.applicationMapper = this.app.getBean(ObjectMapper.class);
+        this.list = this.messageRepository.findAllMessages();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.app.close();
+    }
+
+    @Benchmark
+    public List<Message> loadEntities() {
+        return this.readOnlyTransaction.execute(status -> this.messageRepository.findAll());
+    }
+
+    @Benchmark
+    public List<Message> loadProjection() {
+        return this.readOnlyTransaction.execute(status -> this.messageRepository.findAllMessages());
+    }
+
+    @Benchmark
+    public byte[] writeReflective() throws JsonProcessingException {
+        return this.reflectiveMapper.writeValueAsBytes(this.list);
+    }
+
+    @Benchmark
+    public byte[] writeMessageSerializer() throws JsonProcessingException {
+        return this.applicationMapper.writeValueAsBytes(this.list);
+    }
+}
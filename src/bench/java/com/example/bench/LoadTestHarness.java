@@ -0,0 +1,384 @@
+package com.example.bench;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.SocialMediaApp;
+import com.example.entity.Account;
+import com.example.entity.Message;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * HTTP load generator for capacity checks before a rollout. Like the
+ * integration tests (see SpringTest), it boots the app with
+ * SpringApplication.run and drives it over java.net.http.HttpClient; with
+ * "url=" it targets an already running instance instead.
+ *
+ * It replays a weighted mix of register / login / post / read / patch /
+ * delete requests at a fixed target rate (open loop), each request on its own
+ * virtual thread when the JVM supports them (JDK 21+), else on a bounded
+ * platform thread pool. Latency is measured from the moment a request was
+ * scheduled, not sent, so a server that falls behind can't hide its queueing
+ * delay (no coordinated omission). Latencies are recorded per endpoint in an
+ * HdrHistogram and summarized in a report.
+ *
+ * With "clients=" it runs closed loop instead: that many clients each send
+ * their next request as soon as the previous one returns, which measures the
+ * maximum throughput at that concurrency.
+ *
+ * Arguments (all optional, as name=value):
+ *   rps=500              target requests per second
+ *   duration=30          seconds of measured load
+ *   warmup=5             seconds of unmeasured load before that
+ *   mix=register:5,login:15,post:20,read:45,patch:10,delete:5
+ *   clients=0            closed-loop clients; when set, rps is ignored
+ *   threads=256          platform threads, when virtual threads are unavailable
+ *   profiles=persistent  Spring profiles of the started app
+ *   url=http://host:port target a running app instead of starting one
+ *   report=target/load-report.txt
+ *
+ * Requests that get no response within 30 seconds are counted with status -1.
+ *
+ * Run with "mvn -P bench test-compile exec:exec@load -Dload.args='rps=1000'", or
+ * "-Dload.args='clients=1000'".
+ */
+public class LoadTestHarness {
+    static final String[] OPERATIONS = {"register", "login", "post", "read", "patch", "delete"};
+    static final long HIGHEST_LATENCY_NANOS = TimeUnit.MINUTES.toNanos(1);
+    static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    final HttpClient webClient;
+    final ObjectMapper objectMapper = new ObjectMapper();
+    final String baseUrl;
+    final IdPool accountIds = new IdPool();
+    final IdPool messageIds = new IdPool();
+    final AtomicLong usernames = new AtomicLong();
+    final Map<String, Histogram> latencies = new LinkedHashMap<String, Histogram>();
+    final Map<String, Map<Integer, LongAdder>> statuses = new ConcurrentHashMap<String, Map<Integer, LongAdder>>();
+    volatile boolean recording;
+
+    LoadTestHarness(String baseUrl) {
+        this.baseUrl = baseUrl;
+        // The client keeps its own executor: sharing the bounded request pool
+        // with it deadlocks once every pool thread is blocked in send()
+        this.webClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(REQUEST_TIMEOUT)
+                .build();
+        for (String operation : OPERATIONS) {
+            this.latencies.put(operation, new ConcurrentHistogram(HIGHEST_LATENCY_NANOS, 3));
+            this.statuses.put(operation, new ConcurrentHashMap<Integer, LongAdder>());
+        }
+        // Rows created by data.sql
+        for (int accountId = 9996; accountId <= 9999; accountId++) {
+            this.accountIds.add(accountId);
+        }
+        this.messageIds.add(9996);
+        this.messageIds.add(9997);
+        this.messageIds.add(9999);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        int rps = Integer.parseInt(options.getOrDefault("rps", "500"));
+        int duration = Integer.parseInt(options.getOrDefault("duration", "30"));
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "5"));
+        int clients = Integer.parseInt(options.getOrDefault("clients", "0"));
+        int threads = Math.max(clients, Integer.parseInt(options.getOrDefault("threads", "256")));
+        int[] weights = parseMix(options.getOrDefault("mix", "register:5,login:15,post:20,read:45,patch:10,delete:5"));
+        Path reportFile = Paths.get(options.getOrDefault("report", "target/load-report.txt"));
+
+        ApplicationContext app = null;
+        String baseUrl = options.get("url");
+        if (baseUrl == null) {
+            String profiles = options.get("profiles");
+            app = SpringApplication.run(SocialMediaApp.class,
+                    profiles == null ? new String[] {} : new String[] {"--spring.profiles.active=" + profiles});
+            baseUrl = "http://localhost:8080";
+        }
+
+        ExecutorService executor = newExecutor(threads);
+        try {
+            LoadTestHarness harness = new LoadTestHarness(baseUrl);
+            String load;
+            if (clients > 0) {
+                harness.runClients(executor, weights, clients, warmup, false);
+                harness.runClients(executor, weights, clients, duration, true);
+                load = clients + " clients";
+            } else {
+                harness.run(executor, weights, rps, warmup, false);
+                harness.run(executor, weights, rps, duration, true);
+                load = rps + " req/s";
+            }
+
+            String report = harness.report(load, duration, executor);
+            System.out.print(report);
+            if (reportFile.getParent() != null) {
+                Files.createDirectories(reportFile.getParent());
+            }
+            Files.write(reportFile, report.getBytes(StandardCharsets.UTF_8));
+            System.out.println("Report written to " + reportFile.toAbsolutePath());
+        } finally {
+            executor.shutdownNow();
+            if (app != null) {
+                SpringApplication.exit(app);
+            }
+        }
+    }
+
+    /**
+     * Issues requests at the target rate for the given number of seconds,
+     * then waits for the outstanding ones to finish.
+     */
+    void run(ExecutorService executor, int[] weights, int rps, int seconds, boolean record) throws InterruptedException {
+        this.recording = record;
+        int totalWeight = totalWeight(weights);
+        SplittableRandom random = new SplittableRandom();
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rps;
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(seconds);
+        LongAdder outstanding = new LongAdder();
+
+        for (long scheduledAt = start; scheduledAt < end; scheduledAt += intervalNanos) {
+            long wait = scheduledAt - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            String name = pick(weights, random.nextInt(totalWeight));
+            long intendedStart = scheduledAt;
+            outstanding.increment();
+            executor.execute(() -> {
+                try {
+                    execute(name, intendedStart);
+                } finally {
+                    outstanding.decrement();
+                }
+            });
+        }
+        while (outstanding.sum() > 0) {
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Runs the given number of clients for the given number of seconds, each
+     * sending its next request as soon as the previous one completed.
+     */
+    void runClients(ExecutorService executor, int[] weights, int clients, int seconds, boolean record) throws InterruptedException {
+        this.recording = record;
+        int totalWeight = totalWeight(weights);
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        CountDownLatch finished = new CountDownLatch(clients);
+        for (int client = 0; client < clients; client++) {
+            executor.execute(() -> {
+                try {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    while (System.nanoTime() < end && !Thread.currentThread().isInterrupted()) {
+                        execute(pick(weights, random.nextInt(totalWeight)), System.nanoTime());
+                    }
+                } finally {
+                    finished.countDown();
+                }
+            });
+        }
+        finished.await();
+    }
+
+    static int totalWeight(int[] weights) {
+        int totalWeight = 0;
+        for (int weight : weights) {
+            totalWeight += weight;
+        }
+        return totalWeight;
+    }
+
+    /**
+     * Maps a number in [0, total weight) to the operation it falls on.
+     */
+    static String pick(int[] weights, int pick) {
+        int operation = 0;
+        while (pick >= weights[operation]) {
+            pick -= weights[operation];
+            operation++;
+        }
+        return OPERATIONS[operation];
+    }
+
+    void execute(String operation, long intendedStart) {
+        int status;
+        try {
+            status = send(operation);
+        } catch (IOException e) {
+            status = -1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (this.recording) {
+            long latency = Math.min(System.nanoTime() - intendedStart, HIGHEST_LATENCY_NANOS);
+            this.latencies.get(operation).recordValue(latency);
+            this.statuses.get(operation).computeIfAbsent(status, s -> new LongAdder()).increment();
+        }
+    }
+
+    int send(String operation) throws IOException, InterruptedException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        switch (operation) {
+            case "register": {
+                String username = "load-" + System.nanoTime() + "-" + this.usernames.incrementAndGet();
+                HttpResponse<String> response = post("/register", "{\"username\":\"" + username + "\",\"password\":\"password\"}");
+                if (response.statusCode() == 200) {
+                    this.accountIds.add(this.objectMapper.readValue(response.body(), Account.class).getAccountId());
+                }
+                return response.statusCode();
+            }
+            case "login":
+                // Only the data.sql accounts have known usernames
+                return post("/login", "{\"username\":\"testuser" + (1 + random.nextInt(4)) + "\",\"password\":\"password\"}").statusCode();
+            case "post": {
+                HttpResponse<String> response = post("/messages", "{\"postedBy\":" + this.accountIds.pick(random)
+                        + ",\"messageText\":\"load test message\",\"timePostedEpoch\":" + (System.currentTimeMillis() / 1000) + "}");
+                if (response.statusCode() == 200) {
+                    this.messageIds.add(this.objectMapper.readValue(response.body(), Message.class).getMessageId());
+                }
+                return response.statusCode();
+            }
+            case "read":
+                return send(HttpRequest.newBuilder(uri("/messages/" + this.messageIds.pick(random))).GET()).statusCode();
+            case "patch":
+                return send(HttpRequest.newBuilder(uri("/messages/" + this.messageIds.pick(random)))
+                        .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"messageText\":\"patched by load test\"}"))
+                        .header("Content-Type", "application/json")).statusCode();
+            case "delete":
+                return send(HttpRequest.newBuilder(uri("/messages/" + this.messageIds.pick(random))).DELETE()).statusCode();
+            default:
+                throw new IllegalArgumentException("Unknown operation " + operation);
+        }
+    }
+
+    HttpResponse<String> post(String path, String json) throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder(uri(path))
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json"));
+    }
+
+    HttpResponse<String> send(HttpRequest.Builder request) throws IOException, InterruptedException {
+        return this.webClient.send(request.timeout(REQUEST_TIMEOUT).build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    URI uri(String path) {
+        return URI.create(this.baseUrl + path);
+    }
+
+    String report(String load, int duration, ExecutorService executor) {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("Target: %s, %s for %d s, %s%n", this.baseUrl, load, duration,
+                executor.getClass().getSimpleName()));
+        report.append(String.format("%-9s %8s %9s %9s %9s %9s %9s %9s  %s%n",
+                "endpoint", "count", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms", "statuses"));
+        long total = 0;
+        for (Map.Entry<String, Histogram> entry : this.latencies.entrySet()) {
+            Histogram histogram = entry.getValue();
+            long count = histogram.getTotalCount();
+            total += count;
+            Map<Integer, Long> statusCounts = new TreeMap<Integer, Long>();
+            this.statuses.get(entry.getKey()).forEach((status, adder) -> statusCounts.put(status, adder.sum()));
+            report.append(String.format("%-9s %8d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f  %s%n",
+                    entry.getKey(), count, (double) count / duration,
+                    millis(histogram.getValueAtPercentile(50)), millis(histogram.getValueAtPercentile(90)),
+                    millis(histogram.getValueAtPercentile(99)), millis(histogram.getValueAtPercentile(99.9)),
+                    millis(histogram.getMaxValue()), statusCounts));
+        }
+        report.append(String.format("Total: %d requests, %.1f req/s achieved%n", total, (double) total / duration));
+        return report.toString();
+    }
+
+    static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    static ExecutorService newExecutor(int platformThreads) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(platformThreads);
+        }
+    }
+
+    static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new LinkedHashMap<String, String>();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (equals < 1) {
+                throw new IllegalArgumentException("Expected name=value, got " + arg);
+            }
+            options.put(arg.substring(0, equals), arg.substring(equals + 1));
+        }
+        return options;
+    }
+
+    static int[] parseMix(String mix) {
+        int[] weights = new int[OPERATIONS.length];
+        for (String part : mix.split(",")) {
+            String[] nameAndWeight = part.split(":");
+            int operation = -1;
+            for (int i = 0; i < OPERATIONS.length; i++) {
+                if (OPERATIONS[i].equals(nameAndWeight[0].trim())) {
+                    operation = i;
+                }
+            }
+            if (operation < 0 || nameAndWeight.length != 2) {
+                throw new IllegalArgumentException("Bad mix entry " + part);
+            }
+            weights[operation] = Integer.parseInt(nameAndWeight[1].trim());
+        }
+        return weights;
+    }
+
+    /**
+     * Fixed-size ring of recently seen ids, safe for concurrent use, that
+     * requests pick their target ids from.
+     */
+    static class IdPool {
+        static final int CAPACITY = 1 << 16;
+
+        final AtomicIntegerArray ids = new AtomicIntegerArray(CAPACITY);
+        final AtomicLong added = new AtomicLong();
+
+        void add(int id) {
+            this.ids.set((int) (this.added.getAndIncrement() & (CAPACITY - 1)), id);
+        }
+
+        int pick(ThreadLocalRandom random) {
+            int size = (int) Math.min(this.added.get(), CAPACITY);
+            return this.ids.get(random.nextInt(size));
+        }
+    }
+}
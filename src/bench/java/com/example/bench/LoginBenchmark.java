@@ -0,0 +1,93 @@
+package com.example.bench;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.ResponseEntity;
+
+import com.example.entity.Account;
+import com.example.security.PasswordHasher;
+import com.example.service.AccountService;
+
+/**
+ * JMH benchmark of login throughput at different password hashing costs
+ * ("app.security.password.iterations"), with as many benchmark threads as
+ * CPUs so the PasswordHasher's pool is saturated like in a login storm.
+ *
+ * "loginAccount" goes through AccountService (credential cache, hashing
+ * pool); "verify" is the bare PBKDF2 check on the calling thread, so the
+ * difference between the two is the service's overhead.
+ *
+ * Run with "mvn -P bench test-compile exec:exec -Djmh.include=LoginBenchmark".
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(Threads.MAX)
+public class LoginBenchmark {
+    static final int MESSAGES = 10_000;
+
+    @Param({"10000", "100000", "310000", "600000"})
+    public int iterations;
+
+    ConfigurableApplicationContext app;
+    AccountService accountService;
+    PasswordHasher passwordHasher;
+    String storedHash;
+    int accounts;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.app = BenchmarkData.startApp("--app.security.password.iterations=" + this.iterations);
+        BenchmarkData.seed(this.app, MESSAGES);
+        this.accountService = this.app.getBean(AccountService.class);
+        this.passwordHasher = this.app.getBean(PasswordHasher.class);
+        this.storedHash = this.passwordHasher.hash(BenchmarkData.PASSWORD);
+        this.accounts = BenchmarkData.accountCount(MESSAGES);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.app.close();
+    }
+
+    /**
+     * Per-thread source of random seeded usernames.
+     */
+    @State(Scope.Thread)
+    public static class Usernames {
+        SplittableRandom random = new SplittableRandom();
+
+        String next(LoginBenchmark benchmark) {
+            return "bench" + this.random.nextInt(benchmark.accounts);
+        }
+    }
+
+    @Benchmark
+    public ResponseEntity<Account> loginAccount(Usernames usernames) {
+        return this.accountService.loginAccount(new Account(usernames.next(this), BenchmarkData.PASSWORD)).join();
+    }
+
+    @Benchmark
+    public boolean verify() {
+        return this.passwordHasher.verify(BenchmarkData.PASSWORD, this.storedHash);
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.bench;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.cache.InvertedIndex;
+
+/**
+ * JMH benchmark of the query latency of the search index behind
+ * GET /messages/search, built directly (no database) over 1M and 10M
+ * generated messages of 10 words each, drawn from a skewed vocabulary so
+ * some words are in most messages and others in a handful.
+ *
+ * "commonTerm" ranks the top 20 of a word in almost half of the messages,
+ * "rareTerm" of a word in about 25 per million, and "twoTerms" of that
+ * common word and one in about 4000 per million together.
+ *
+ * Run with "mvn -P bench test-compile exec:exec -Djmh.include=SearchBenchmark".
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx8g"})
+public class SearchBenchmark {
+    static final int VOCABULARY = 100_000;
+    static final int WORDS_PER_MESSAGE = 10;
+    static final int PAGE = 20;
+
+    @Param({"1000000", "10000000"})
+    public int messages;
+
+    InvertedIndex index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.index = new InvertedIndex();
+        SplittableRandom random = new SplittableRandom(42);
+        StringBuilder text = new StringBuilder();
+        for (int id = 1; id <= this.messages; id++) {
+            text.setLength(0);
+            for (int i = 0; i < WORDS_PER_MESSAGE; i++) {
+                text.append(word(random)).append(' ');
+            }
+            this.index.add(id, text.toString());
+        }
+    }
+
+    /**
+     * Picks word "w<n>" with n skewed towards 0: "w0" is about 6% of all
+     * words, "w99999" about 0.0003%.
+     */
+    static String word(SplittableRandom random) {
+        double u = random.nextDouble();
+        return "w" + (int) (VOCABULARY * u * u * u * u);
+    }
+
+    @Benchmark
+    public int[] commonTerm() {
+        return this.index.search("w0", 0, PAGE);
+    }
+
+    @Benchmark
+    public int[] rareTerm() {
+        return this.index.search("w99999", 0, PAGE);
+    }
+
+    @Benchmark
+    public int[] twoTerms() {
+        return this.index.search("w0 w100", 0, PAGE);
+    }
+}
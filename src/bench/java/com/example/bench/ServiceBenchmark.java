@@ -0,0 +1,114 @@
+package com.example.bench;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.ResponseEntity;
+
+import com.example.entity.Account;
+import com.example.entity.Message;
+import com.example.service.AccountService;
+import com.example.service.MessageService;
+
+/**
+ * JMH benchmarks of the MessageService and AccountService hot paths, called
+ * in-process (no HTTP) against the embedded H2 database seeded by
+ * BenchmarkData with 10k, 1M and 10M messages.
+ *
+ * Run with "mvn -P bench test-compile exec:exec"; see the "bench" profile in
+ * pom.xml. Results are written to target/jmh-result.json.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx8g"})
+public class ServiceBenchmark {
+    @Param({"10000", "1000000", "10000000"})
+    public int messages;
+
+    ConfigurableApplicationContext app;
+    MessageService messageService;
+    AccountService accountService;
+    int accounts;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.app = BenchmarkData.startApp();
+        BenchmarkData.seed(this.app, this.messages);
+        this.messageService = this.app.getBean(MessageService.class);
+        this.accountService = this.app.getBean(AccountService.class);
+        this.accounts = BenchmarkData.accountCount(this.messages);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.app.close();
+    }
+
+    /**
+     * Per-thread source of random seeded ids.
+     */
+    @State(Scope.Thread)
+    public static class Keys {
+        SplittableRandom random = new SplittableRandom();
+
+        int accountId(ServiceBenchmark benchmark) {
+            return BenchmarkData.FIRST_ACCOUNT_ID + this.random.nextInt(benchmark.accounts);
+        }
+
+        int messageId(ServiceBenchmark benchmark) {
+            return BenchmarkData.FIRST_MESSAGE_ID + this.random.nextInt(benchmark.messages);
+        }
+    }
+
+    @Benchmark
+    public ResponseEntity<Message> createMessage(Keys keys) {
+        return this.messageService.createMessage(
+                new Message(keys.accountId(this), "benchmark message", System.currentTimeMillis() / 1000));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Object getAllMessages() {
+        return this.messageService.getAllMessages();
+    }
+
+    @Benchmark
+    public Object getAllMessagesByAccount(Keys keys) {
+        return this.messageService.getAllMessagesByAccount(keys.accountId(this));
+    }
+
+    @Benchmark
+    public ResponseEntity<Message> getMessage(Keys keys) {
+        return this.messageService.getMessage(keys.messageId(this));
+    }
+
+    @Benchmark
+    public ResponseEntity<String> updateMessageText(Keys keys) {
+        return this.messageService.updateMessageText(keys.messageId(this), new Message(null, "updated text", null));
+    }
+
+    @Benchmark
+    public ResponseEntity<Account> loginAccount(Keys keys) {
+        int accountId = keys.accountId(this);
+        return this.accountService.loginAccount(
+                new Account("bench" + (accountId - BenchmarkData.FIRST_ACCOUNT_ID), BenchmarkData.PASSWORD)).join();
+    }
+}
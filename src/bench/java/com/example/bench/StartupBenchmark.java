@@ -0,0 +1,75 @@
+package com.example.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+/**
+ * JMH benchmark of the startup time in the "persistent" profile, from
+ * SpringApplication.run until the application is ready, on an H2 database
+ * file seeded by BenchmarkData with 100k and 1M messages, with and without
+ * the page cache warm-up (PageCacheWarmer). Ready includes the warm-up and
+ * the in-memory indexes loaded from the database; the difference between
+ * the two is what the warm-up costs at startup.
+ *
+ * Run with "mvn -P bench test-compile exec:exec -Djmh.include=StartupBenchmark".
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx8g"})
+public class StartupBenchmark {
+    @Param({"100000", "1000000"})
+    public int messages;
+
+    @Param({"false", "true"})
+    public boolean warmUp;
+
+    Path directory;
+    ConfigurableApplicationContext app;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        this.directory = Files.createTempDirectory("startup-bench");
+        BenchmarkData.seedPersistent(this.directory.resolve("socialmedia"), this.messages);
+    }
+
+    @Benchmark
+    public ConfigurableApplicationContext start() {
+        this.app = BenchmarkData.startPersistentApp(this.directory.resolve("socialmedia"),
+                "--app.storage.warm-up=" + this.warmUp);
+        return this.app;
+    }
+
+    @TearDown(Level.Invocation)
+    public void stop() {
+        if (this.app != null) {
+            this.app.close();
+            this.app = null;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FileSystemUtils.deleteRecursively(this.directory);
+    }
+}
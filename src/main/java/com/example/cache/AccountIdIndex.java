@@ -0,0 +1,94 @@
+package com.example.cache;
+
+import java.util.concurrent.locks.StampedLock;
+import java.util.stream.Stream;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.repository.AccountRepository;
+
+/**
+ * This is an in-memory index of every existing accountId, so that checking
+ * whether a message poster exists doesn't need a database round trip.
+ *
+ * It is warmed from the "account" table once the application is ready, and
+ * kept current by AccountService.registerAccount. Accounts inserted by other
+ * means (or before warm-up finishes) are simply not in the index yet, so a
+ * miss is not proof that an account doesn't exist: callers must fall back to
+ * the database on a miss.
+ */
+@Component
+public class AccountIdIndex {
+    private final StampedLock lock = new StampedLock();
+    private final IntHashSet accountIds = new IntHashSet(1024);
+
+    AccountRepository accountRepository;
+    TransactionTemplate readOnlyTransaction;
+
+    public AccountIdIndex(AccountRepository accountRepository, PlatformTransactionManager transactionManager) {
+        this.accountRepository = accountRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * Loads every accountId from the database into the index.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warm() {
+        this.readOnlyTransaction.executeWithoutResult(status -> {
+            try (Stream<Integer> accountIds = this.accountRepository.streamAllAccountIds()) {
+                accountIds.forEach(this::add);
+            }
+        });
+    }
+
+    /**
+     * @param accountId
+     * @return	true if the account is known to exist; false if it may or may
+     *			not exist
+     */
+    public boolean contains(int accountId) {
+        // Lock-free read; retried under the read lock if a write overlapped
+        long stamp = this.lock.tryOptimisticRead();
+        boolean contains = this.accountIds.contains(accountId);
+        if (this.lock.validate(stamp)) {
+            return contains;
+        }
+        stamp = this.lock.readLock();
+        try {
+            return this.accountIds.contains(accountId);
+        } finally {
+            this.lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Records that an account exists.
+     * @param accountId
+     */
+    public void add(int accountId) {
+        long stamp = this.lock.writeLock();
+        try {
+            this.accountIds.add(accountId);
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @return	number of accountIds in the index
+     */
+    public int size() {
+        long stamp = this.lock.readLock();
+        try {
+            return this.accountIds.size();
+        } finally {
+            this.lock.unlockRead(stamp);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.cache;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This is a Bloom filter of strings: {@link #mightContain} never answers
+ * false for a string that was added, and answers true for a string that
+ * wasn't with a probability close to the false positive rate it was sized
+ * for, as long as no more than the expected number of strings are added.
+ * Beyond that the false positive rate degrades gradually.
+ *
+ * Bits are set with atomic operations, so adds and lookups are lock-free and
+ * safe to run concurrently. A lookup racing with the add of the same string
+ * may still miss it.
+ */
+public class BloomFilter {
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashCount;
+
+    /**
+     * @param expectedInsertions	number of strings the filter is sized for
+     * @param falsePositiveRate	wanted false positive rate at that size,
+     *							between 0 and 1
+     */
+    public BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        if (expectedInsertions < 1 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Expected insertions must be positive and the false positive rate in (0, 1)");
+        }
+        // Optimal sizes: m = -n ln(p) / ln(2)^2 bits and k = m/n ln(2) hashes
+        long bits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.min(Integer.MAX_VALUE - 8, (bits + 63) / 64);
+        this.bits = new AtomicLongArray(words);
+        this.bitCount = (long) words * 64;
+        this.hashCount = Math.max(1, (int) Math.round((double) this.bitCount / expectedInsertions * Math.log(2)));
+    }
+
+    /**
+     * Adds the string to the filter.
+     * @param value
+     */
+    public void add(String value) {
+        long hash1 = hash(value);
+        long hash2 = mix(hash1 + 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < this.hashCount; i++) {
+            long bit = Long.remainderUnsigned(hash1 + i * hash2, this.bitCount);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current = this.bits.get(word);
+            while ((current & mask) == 0 && !this.bits.compareAndSet(word, current, current | mask)) {
+                current = this.bits.get(word);
+            }
+        }
+    }
+
+    /**
+     * @param value
+     * @return	false if the string was definitely never added; true if it may
+     *			have been
+     */
+    public boolean mightContain(String value) {
+        long hash1 = hash(value);
+        long hash2 = mix(hash1 + 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < this.hashCount; i++) {
+            long bit = Long.remainderUnsigned(hash1 + i * hash2, this.bitCount);
+            if ((this.bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return	number of hash functions (bits set per string)
+     */
+    public int getHashCount() {
+        return this.hashCount;
+    }
+
+    /**
+     * @return	size of the filter in bits
+     */
+    public long getBitCount() {
+        return this.bitCount;
+    }
+
+    /**
+     * 64-bit FNV-1a over the UTF-16 chars, finished with a MurmurHash3 mix so
+     * every bit of the result depends on every char.
+     */
+    private static long hash(String value) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001B3L;
+        }
+        return mix(hash);
+    }
+
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.cache;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.entity.Account;
+
+/**
+ * This is the cache of recently verified credentials by username used by
+ * AccountService.loginAccount, so repeated logins skip the database. Values
+ * are accounts holding the stored password hash (never the plaintext
+ * password), and the password is still verified against it on every login.
+ * Writes to an account's password must invalidate its entry.
+ *
+ * Sized by "app.cache.credentials.max-size" and expired after
+ * "app.cache.credentials.ttl-seconds".
+ */
+@Component
+public class CredentialCache extends LruCache<String, Account> {
+    public CredentialCache(@Value("${app.cache.credentials.max-size:10000}") int maxSize,
+            @Value("${app.cache.credentials.ttl-seconds:300}") long ttlSeconds) {
+        super("credentials", maxSize, ttlSeconds);
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.cache;
+
+import java.util.Arrays;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * This is the cache of precomputed home feeds used by
+ * MessageService.getFeed: for each accountId, the sorted ids of the newest
+ * messages (at most "app.feed.max-length") posted by the accounts it follows,
+ * and the ids of the followed accounts whose messages are instead merged in
+ * when the feed is read (see FollowService).
+ *
+ * Feeds are built on a miss and then kept current by {@link #addMessage} as
+ * FollowService fans new messages out. A fan-out racing with a build can't be
+ * recorded in the feed being built, so builds are bracketed by
+ * {@link #beginLoad} and {@link #putLoaded}, which drops the build if the
+ * feed changed meanwhile. Changes are recorded with the cache's per-key
+ * invalidation stamps (see LruCache), under the lock of the feed's segment,
+ * so fan-outs and builds of other feeds never wait for each other. The
+ * cache is bounded by the total number of ids it holds
+ * ("app.cache.feeds.max-entries").
+ */
+@Component
+public class FeedCache extends LruCache<Integer, FeedCache.Feed> {
+    private final int maxLength;
+
+    public FeedCache(@Value("${app.cache.feeds.max-entries:1000000}") long maxEntries,
+            @Value("${app.feed.max-length:800}") int maxLength,
+            @Value("${app.cache.feeds.ttl-seconds:300}") long ttlSeconds) {
+        super("feeds", maxEntries, ttlSeconds);
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * @return	most message ids kept in a feed
+     */
+    public int getMaxLength() {
+        return maxLength;
+    }
+
+    @Override
+    protected int weigh(Feed feed) {
+        return feed.messageIds.length + feed.mergedAccountIds.length + 1;
+    }
+
+    /**
+     * Records that a feed is about to be built from the database.
+     * @param accountId
+     * @return	stamp to pass to {@link #putLoaded}
+     */
+    public long beginLoad(int accountId) {
+        return stamp();
+    }
+
+    /**
+     * Caches a feed built since {@link #beginLoad}, unless it changed
+     * meanwhile.
+     * @param accountId
+     * @param stamp	what {@link #beginLoad} returned
+     * @param feed
+     * @return	true if the feed was cached
+     */
+    public boolean putLoaded(int accountId, long stamp, Feed feed) {
+        return putIfNotInvalidated(accountId, feed, stamp);
+    }
+
+    /**
+     * Adds a new message to a follower's feed, if that feed is cached, dropping
+     * the oldest message once it is full. Builds of the feed in progress are
+     * dropped either way.
+     * @param followerId
+     * @param messageId
+     */
+    public void addMessage(int followerId, int messageId) {
+        updateIfPresent(followerId, feed -> feed.withMessage(messageId, this.maxLength));
+    }
+
+    /**
+     * A precomputed feed.
+     */
+    public static final class Feed {
+        private final int[] messageIds;
+        private final int[] mergedAccountIds;
+        private final boolean truncated;
+
+        /**
+         * @param messageIds	sorted ids of the newest fanned-out messages
+         * @param mergedAccountIds	ids of the followed accounts to merge in on
+         *							read
+         * @param truncated	whether older fanned-out messages were left out
+         */
+        public Feed(int[] messageIds, int[] mergedAccountIds, boolean truncated) {
+            this.messageIds = messageIds;
+            this.mergedAccountIds = mergedAccountIds;
+            this.truncated = truncated;
+        }
+
+        /**
+         * @return	sorted ids of the newest fanned-out messages
+         */
+        public int[] getMessageIds() {
+            return messageIds;
+        }
+
+        /**
+         * @return	ids of the followed accounts to merge in on read
+         */
+        public int[] getMergedAccountIds() {
+            return mergedAccountIds;
+        }
+
+        /**
+         * @return	true if older fanned-out messages than the first of
+         *			{@link #getMessageIds()} were left out
+         */
+        public boolean isTruncated() {
+            return truncated;
+        }
+
+        Feed withMessage(int messageId, int maxLength) {
+            int index = Arrays.binarySearch(this.messageIds, messageId);
+            if (index >= 0) {
+                return this;
+            }
+            int insertAt = -index - 1;
+            int drop = this.messageIds.length >= maxLength ? 1 : 0;
+            if (insertAt < drop) { // Older than everything in a full feed
+                return this.truncated ? this : new Feed(this.messageIds, this.mergedAccountIds, true);
+            }
+            int[] updated = new int[this.messageIds.length + 1 - drop];
+            System.arraycopy(this.messageIds, drop, updated, 0, insertAt - drop);
+            updated[insertAt - drop] = messageId;
+            System.arraycopy(this.messageIds, insertAt, updated, insertAt - drop + 1, this.messageIds.length - insertAt);
+            return new Feed(updated, this.mergedAccountIds, this.truncated || drop == 1);
+        }
+    }
+}
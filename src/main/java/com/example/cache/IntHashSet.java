@@ -0,0 +1,109 @@
+package com.example.cache;
+
+import java.util.Arrays;
+
+/**
+ * This is a set of primitive ints, stored in a single open-addressing
+ * (linear probing) array, so it takes about 4 to 8 bytes per element instead
+ * of the ~50 of a HashSet of Integers. Elements can't be removed.
+ *
+ * It is not thread-safe; callers must synchronize access.
+ */
+public class IntHashSet {
+    private static final int FREE = 0;
+
+    private int[] table;
+    private int size;
+    private boolean containsFree;
+
+    /**
+     * @param expectedSize	number of elements to size the table for
+     */
+    public IntHashSet(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, expectedSize * 2 - 1)) << 1;
+        this.table = new int[capacity];
+    }
+
+    /**
+     * @param value
+     * @return	true if the value is in the set
+     */
+    public boolean contains(int value) {
+        if (value == FREE) {
+            return containsFree;
+        }
+        int[] table = this.table;
+        int mask = table.length - 1;
+        for (int i = mix(value) & mask; ; i = (i + 1) & mask) {
+            int slot = table[i];
+            if (slot == value) {
+                return true;
+            }
+            if (slot == FREE) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * @param value
+     * @return	true if the value wasn't already in the set
+     */
+    public boolean add(int value) {
+        if (value == FREE) {
+            boolean added = !containsFree;
+            containsFree = true;
+            return added;
+        }
+        if (!insert(this.table, value)) {
+            return false;
+        }
+        size++;
+        // Keep the load factor at or below 1/2
+        if (size * 2 > this.table.length) {
+            int[] grown = new int[this.table.length * 2];
+            for (int slot : this.table) {
+                if (slot != FREE) {
+                    insert(grown, slot);
+                }
+            }
+            this.table = grown;
+        }
+        return true;
+    }
+
+    /**
+     * @return	number of elements in the set
+     */
+    public int size() {
+        return containsFree ? size + 1 : size;
+    }
+
+    /**
+     * Removes every element from the set.
+     */
+    public void clear() {
+        Arrays.fill(this.table, FREE);
+        size = 0;
+        containsFree = false;
+    }
+
+    private static boolean insert(int[] table, int value) {
+        int mask = table.length - 1;
+        for (int i = mix(value) & mask; ; i = (i + 1) & mask) {
+            int slot = table[i];
+            if (slot == value) {
+                return false;
+            }
+            if (slot == FREE) {
+                table[i] = value;
+                return true;
+            }
+        }
+    }
+
+    private static int mix(int value) {
+        int h = value * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,434 @@
+package com.example.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * This is an inverted index of short texts by int ID, answering ranked
+ * queries for the documents containing every term of the query.
+ *
+ * Texts are split into lowercase terms on anything that isn't a letter or a
+ * digit. Each term maps to its postings: the IDs of the documents containing
+ * it, sorted, with the term's frequency and the document's length packed
+ * next to each, so a query is an intersection of sorted int arrays (starting
+ * from the rarest term) scored with BM25, and a document costs about 6 bytes
+ * per distinct term. Term frequencies and lengths above 255 are capped.
+ * Each document also keeps references to its terms' postings (4 or 8 bytes
+ * per distinct term), so it can be removed by ID alone, without its text.
+ *
+ * Postings are split in blocks of 128 with an upper bound of their scores,
+ * so once a query has enough good matches it skips the blocks that can't
+ * beat them. The BM25 weight of every (frequency, length) pair is kept in a
+ * table, rebuilt whenever the average document length drifts by more than
+ * 1%.
+ *
+ * Adding an ID that is already indexed, or removing one that isn't, does
+ * nothing. It is not thread-safe; callers must synchronize access.
+ */
+public class InvertedIndex {
+    /** BM25 term frequency saturation */
+    static final double K1 = 1.2;
+    /** BM25 document length normalization */
+    static final double B = 0.75;
+    private static final int MAX_STAT = 0xFF;
+    static final int BLOCK_SHIFT = 7;
+    private static final double WEIGHTS_DRIFT = 0.01;
+
+    private final Map<String, Postings> postings = new HashMap<String, Postings>();
+    /** Forward index: the postings of each document's terms, and its length */
+    private final Map<Integer, Document> documents = new HashMap<Integer, Document>();
+    private int documentCount;
+    private long totalLength;
+    /** BM25 weight (without IDF) by packed term frequency and document length */
+    private float[] weights = new float[0];
+    private double weightsAverageLength;
+
+    /**
+     * Indexes a document.
+     * @param id
+     * @param text
+     */
+    public void add(int id, String text) {
+        Map<String, Integer> terms = termFrequencies(text);
+        if (terms.isEmpty() || this.documents.containsKey(id)) {
+            return;
+        }
+        int length = length(terms);
+        Postings[] termPostings = new Postings[terms.size()];
+        int i = 0;
+        for (Map.Entry<String, Integer> term : terms.entrySet()) {
+            Postings postings = this.postings.computeIfAbsent(term.getKey(), Postings::new);
+            postings.add(id, term.getValue(), length);
+            termPostings[i++] = postings;
+        }
+        this.documents.put(id, new Document(termPostings, length));
+        this.documentCount++;
+        this.totalLength += length;
+        updateWeights();
+    }
+
+    /**
+     * Removes a document.
+     * @param id
+     */
+    public void remove(int id) {
+        Document document = this.documents.remove(id);
+        if (document == null) {
+            return;
+        }
+        for (Postings postings : document.postings) {
+            if (postings.remove(id) && postings.size == 0) {
+                this.postings.remove(postings.term);
+            }
+        }
+        this.documentCount--;
+        this.totalLength -= document.length;
+        updateWeights();
+    }
+
+    /**
+     * Finds the documents containing every term of the query, best match
+     * first (ties broken by highest ID, i.e. newest first).
+     * @param query
+     * @param offset	number of best matches to skip
+     * @param count	maximum number of IDs to return
+     * @return	IDs of the matching documents ranked "offset" to
+     *			"offset + count"; empty if the query has no terms
+     */
+    public int[] search(String query, int offset, int count) {
+        List<String> terms = terms(query);
+        if (terms.isEmpty() || count <= 0) {
+            return new int[0];
+        }
+        Postings[] lists = new Postings[terms.size()];
+        for (int i = 0; i < lists.length; i++) {
+            lists[i] = this.postings.get(terms.get(i));
+            if (lists[i] == null) {
+                return new int[0];
+            }
+        }
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+
+        float[] idfs = new float[lists.length];
+        // Best score any document can get from the terms other than the rarest
+        float othersBound = 0;
+        for (int i = 0; i < lists.length; i++) {
+            idfs[i] = (float) Math.log(1 + (this.documentCount - lists[i].size + 0.5) / (lists[i].size + 0.5));
+            if (i > 0) {
+                othersBound += idfs[i] * this.weights[lists[i].bound];
+            }
+        }
+        float[] weights = this.weights;
+
+        // Walk the rarest list, galloping through the others
+        TopScores top = new TopScores(offset + count);
+        int[] positions = new int[lists.length];
+        Postings rarest = lists[0];
+        candidates:
+        for (int i = 0; i < rarest.size; i++) {
+            if ((i & ((1 << BLOCK_SHIFT) - 1)) == 0 && top.isFull()) { // Skip blocks that can't make it
+                float bound = idfs[0] * weights[rarest.blockBounds[i >>> BLOCK_SHIFT]] + othersBound;
+                if (bound * (1 + 1e-6f) < top.minScore()) {
+                    i += (1 << BLOCK_SHIFT) - 1;
+                    continue;
+                }
+            }
+            int id = rarest.ids[i];
+            float score = idfs[0] * weights[rarest.stats[i]];
+            for (int j = 1; j < lists.length; j++) {
+                int position = lists[j].seek(id, positions[j]);
+                positions[j] = position;
+                if (position == lists[j].size) {
+                    break candidates;
+                }
+                if (lists[j].ids[position] != id) {
+                    continue candidates;
+                }
+                score += idfs[j] * weights[lists[j].stats[position]];
+            }
+            top.offer(score, id);
+        }
+        return top.ranked(offset);
+    }
+
+    /**
+     * @param text
+     * @param query
+     * @return	true if the text contains every term of the query
+     */
+    public static boolean matches(String text, String query) {
+        List<String> terms = terms(query);
+        return !terms.isEmpty() && termFrequencies(text).keySet().containsAll(terms);
+    }
+
+    /**
+     * Splits a text into its distinct lowercase terms, in order of first
+     * appearance.
+     * @param text
+     * @return	distinct terms
+     */
+    public static List<String> terms(String text) {
+        return new ArrayList<String>(termFrequencies(text).keySet());
+    }
+
+    /**
+     * @return	number of documents in the index
+     */
+    public int size() {
+        return this.documentCount;
+    }
+
+    /**
+     * @return	number of distinct terms in the index
+     */
+    public int termCount() {
+        return this.postings.size();
+    }
+
+    /**
+     * Rebuilds the weight table if the average document length drifted.
+     */
+    private void updateWeights() {
+        double averageLength = this.documentCount == 0 ? 1 : (double) this.totalLength / this.documentCount;
+        if (this.weights.length > 0 && Math.abs(averageLength - this.weightsAverageLength) <= this.weightsAverageLength * WEIGHTS_DRIFT) {
+            return;
+        }
+        float[] weights = new float[(MAX_STAT + 1) << 8];
+        for (int frequency = 0; frequency <= MAX_STAT; frequency++) {
+            for (int length = 0; length <= MAX_STAT; length++) {
+                weights[frequency << 8 | length] = (float) (frequency * (K1 + 1)
+                        / (frequency + K1 * (1 - B + B * length / averageLength)));
+            }
+        }
+        this.weights = weights;
+        this.weightsAverageLength = averageLength;
+    }
+
+    private static int length(Map<String, Integer> terms) {
+        int length = 0;
+        for (int frequency : terms.values()) {
+            length += frequency;
+        }
+        return length;
+    }
+
+    private static Map<String, Integer> termFrequencies(String text) {
+        Map<String, Integer> terms = new LinkedHashMap<String, Integer>();
+        if (text == null) {
+            return terms;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean termChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (termChar && start < 0) {
+                start = i;
+            } else if (!termChar && start >= 0) {
+                terms.merge(text.substring(start, i).toLowerCase(Locale.ROOT), 1, Integer::sum);
+                start = -1;
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Postings of the terms of an indexed document, and its length.
+     */
+    private static final class Document {
+        final Postings[] postings;
+        final int length;
+
+        Document(Postings[] postings, int length) {
+            this.postings = postings;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Sorted IDs of the documents containing one term, each with the term's
+     * frequency in the high byte and the document's length in the low byte
+     * of the parallel "stats" array.
+     *
+     * "blockBounds" holds, for each block of 128 postings, the highest
+     * frequency and the lowest length in the block packed the same way,
+     * which weighs at least as much as any posting of the block. Shifting
+     * postings across blocks only ever loosens the bounds.
+     */
+    static final class Postings {
+        final String term;
+        int[] ids = new int[2];
+        char[] stats = new char[2];
+        char[] blockBounds = new char[1];
+        /** Bound of all the postings ever added */
+        char bound;
+        int size;
+
+        Postings(String term) {
+            this.term = term;
+        }
+
+        void add(int id, int frequency, int length) {
+            int position;
+            if (this.size == 0 || this.ids[this.size - 1] < id) { // IDs mostly arrive in order
+                position = this.size;
+            } else {
+                position = Arrays.binarySearch(this.ids, 0, this.size, id);
+                if (position >= 0) {
+                    return;
+                }
+                position = -position - 1;
+            }
+            if (this.size == this.ids.length) {
+                int capacity = this.size + (this.size >> 1) + 1;
+                this.ids = Arrays.copyOf(this.ids, capacity);
+                this.stats = Arrays.copyOf(this.stats, capacity);
+            }
+            System.arraycopy(this.ids, position, this.ids, position + 1, this.size - position);
+            System.arraycopy(this.stats, position, this.stats, position + 1, this.size - position);
+            this.ids[position] = id;
+            this.stats[position] = (char) (Math.min(frequency, MAX_STAT) << 8 | Math.min(length, MAX_STAT));
+            this.bound = this.size == 0 ? this.stats[position] : merge(this.bound, this.stats[position]);
+            this.size++;
+
+            int blocks = ((this.size - 1) >>> BLOCK_SHIFT) + 1;
+            if (blocks > this.blockBounds.length) {
+                this.blockBounds = Arrays.copyOf(this.blockBounds, blocks + (blocks >> 1));
+            }
+            if (position == this.size - 1 && (position & ((1 << BLOCK_SHIFT) - 1)) == 0) {
+                this.blockBounds[position >>> BLOCK_SHIFT] = this.stats[position];
+            } else {
+                mergeBounds(position, position);
+                // Every later block gained the last posting of the block before it
+                for (int block = (position >>> BLOCK_SHIFT) + 1; block < blocks; block++) {
+                    if (block << BLOCK_SHIFT == this.size - 1) { // New block
+                        this.blockBounds[block] = this.stats[this.size - 1];
+                    } else {
+                        mergeBounds(block << BLOCK_SHIFT, block << BLOCK_SHIFT);
+                    }
+                }
+            }
+        }
+
+        boolean remove(int id) {
+            int position = indexOf(id);
+            if (position < 0) {
+                return false;
+            }
+            System.arraycopy(this.ids, position + 1, this.ids, position, this.size - position - 1);
+            System.arraycopy(this.stats, position + 1, this.stats, position, this.size - position - 1);
+            this.size--;
+            // Every block from this one on gained the first posting of the block after it
+            for (int block = position >>> BLOCK_SHIFT; block << BLOCK_SHIFT < this.size; block++) {
+                int last = Math.min(((block + 1) << BLOCK_SHIFT) - 1, this.size - 1);
+                mergeBounds(block << BLOCK_SHIFT, last);
+            }
+            if (this.size < this.ids.length >> 2 && this.ids.length > 16) {
+                this.ids = Arrays.copyOf(this.ids, this.ids.length >> 1);
+                this.stats = Arrays.copyOf(this.stats, this.stats.length >> 1);
+            }
+            return true;
+        }
+
+        /**
+         * Loosens the bound of the block of "blockPosition" to cover the
+         * posting at "position".
+         */
+        private void mergeBounds(int blockPosition, int position) {
+            int block = blockPosition >>> BLOCK_SHIFT;
+            this.blockBounds[block] = merge(this.blockBounds[block], this.stats[position]);
+        }
+
+        /**
+         * @return	highest frequency and lowest length of the two
+         */
+        private static char merge(char bound, char stat) {
+            return (char) (Math.max(bound & 0xFF00, stat & 0xFF00) | Math.min(bound & MAX_STAT, stat & MAX_STAT));
+        }
+
+        int indexOf(int id) {
+            return Arrays.binarySearch(this.ids, 0, this.size, id);
+        }
+
+        /**
+         * Position of the first ID not less than "id", searching from
+         * "from" with exponentially growing steps; "size" if there is none.
+         */
+        int seek(int id, int from) {
+            int step = 1;
+            int high = from;
+            while (high < this.size && this.ids[high] < id) {
+                from = high + 1;
+                high += step;
+                step <<= 1;
+            }
+            int position = Arrays.binarySearch(this.ids, from, Math.min(high + 1, this.size), id);
+            return position >= 0 ? position : -position - 1;
+        }
+    }
+
+    /**
+     * Bounded min-heap of the best (score, ID) pairs seen, packed into longs
+     * so they compare as one number.
+     */
+    static final class TopScores {
+        private final long[] heap;
+        private int size;
+
+        TopScores(int capacity) {
+            this.heap = new long[capacity];
+        }
+
+        boolean isFull() {
+            return this.size == this.heap.length;
+        }
+
+        float minScore() {
+            return Float.intBitsToFloat((int) (this.heap[0] >>> 32));
+        }
+
+        void offer(float score, int id) {
+            // Non-negative floats order like their bits
+            long entry = (long) Float.floatToIntBits(score) << 32 | (id & 0xFFFFFFFFL);
+            if (this.size < this.heap.length) {
+                int i = this.size++;
+                while (i > 0 && this.heap[(i - 1) >> 1] > entry) {
+                    this.heap[i] = this.heap[(i - 1) >> 1];
+                    i = (i - 1) >> 1;
+                }
+                this.heap[i] = entry;
+            } else if (entry > this.heap[0]) {
+                int i = 0;
+                while (true) {
+                    int child = 2 * i + 1;
+                    if (child >= this.size) {
+                        break;
+                    }
+                    if (child + 1 < this.size && this.heap[child + 1] < this.heap[child]) {
+                        child++;
+                    }
+                    if (this.heap[child] >= entry) {
+                        break;
+                    }
+                    this.heap[i] = this.heap[child];
+                    i = child;
+                }
+                this.heap[i] = entry;
+            }
+        }
+
+        int[] ranked(int offset) {
+            long[] entries = Arrays.copyOf(this.heap, this.size);
+            Arrays.sort(entries);
+            int count = Math.max(0, entries.length - offset);
+            int[] ids = new int[count];
+            for (int i = 0; i < count; i++) {
+                ids[i] = (int) entries[entries.length - 1 - offset - i];
+            }
+            return ids;
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package com.example.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.UnaryOperator;
+
+import com.example.dto.CacheStats;
+
+/**
+ * This is a size-bounded, in-process cache that evicts the least recently
+ * used entries once the total weight of its entries exceeds "maxSize", and
+ * expires entries "ttlSeconds" after they were written (0 disables expiry).
+ * Every entry weighs 1 unless {@link #weigh} is overridden, so by default
+ * "maxSize" is the maximum number of entries.
+ *
+ * The keys are split across segments by hash, each an access-ordered map
+ * with its own lock and an equal share of "maxSize", so threads reading or
+ * writing different keys rarely wait for each other. Eviction is least
+ * recently used within a segment.
+ *
+ * Read-through callers should take a {@link #stamp()} before loading a value
+ * from the database and store it with {@link #putIfNotInvalidated}: if the
+ * key was invalidated or updated in the meantime the load may have raced
+ * with a write, so the value is not cached. This keeps reads from ever going
+ * stale. Invalidations are recorded per key hash (in 1024 slots), so a
+ * write only turns away the loads of its own key, and rarely those of a key
+ * sharing its slot.
+ *
+ * @param <K>	key type
+ * @param <V>	value type
+ */
+public class LruCache<K, V> {
+    private static final int MAX_SEGMENTS = 16;
+    private static final int STAMP_STRIPES = 1024;
+
+    private final String name;
+    private final long maxSize;
+    private final long ttlNanos;
+    private final Segment<K, V>[] segments;
+    /** Sequence of invalidations, which stamps are taken from */
+    private final AtomicLong invalidations = new AtomicLong();
+    /** Last invalidation of the keys hashing to each stripe */
+    private final AtomicLongArray invalidatedAt = new AtomicLongArray(STAMP_STRIPES);
+    /** Last invalidation of every key */
+    private volatile long allInvalidatedAt;
+
+    /**
+     * @param name	name reported in the cache statistics
+     * @param maxSize	maximum total weight of the entries
+     * @param ttlSeconds	seconds an entry stays valid after being written, or
+     *					0 for no expiry
+     */
+    @SuppressWarnings("unchecked")
+    public LruCache(String name, long maxSize, long ttlSeconds) {
+        this.name = name;
+        this.maxSize = maxSize;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        int segmentCount = 1;
+        while (segmentCount < MAX_SEGMENTS && segmentCount * 2 <= maxSize) {
+            segmentCount *= 2;
+        }
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            this.segments[i] = new Segment<K, V>((maxSize + segmentCount - 1) / segmentCount);
+        }
+    }
+
+    /**
+     * @return	name of this cache
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the weight of a value, counted against "maxSize".
+     * @param value
+     * @return	weight of the value (1 by default)
+     */
+    protected int weigh(V value) {
+        return 1;
+    }
+
+    /**
+     * Returns the cached value for the key, or "null" if it isn't cached or
+     * has expired.
+     * @param key
+     * @return	cached value, or "null"
+     */
+    public V get(K key) {
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment) {
+            Entry<V> entry = segment.entries.get(key);
+            if (entry == null) {
+                segment.misses++;
+                return null;
+            }
+            if (isExpired(entry, System.nanoTime())) {
+                segment.remove(key);
+                segment.evictions++;
+                segment.misses++;
+                return null;
+            }
+            segment.hits++;
+            return entry.value;
+        }
+    }
+
+    /**
+     * Returns whether the key is cached and hasn't expired, without counting
+     * a hit or a miss.
+     * @param key
+     * @return	true if the key is cached
+     */
+    public boolean containsKey(K key) {
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment) {
+            Entry<V> entry = segment.entries.get(key);
+            return entry != null && !isExpired(entry, System.nanoTime());
+        }
+    }
+
+    /**
+     * Caches the value for the key, replacing any previous value.
+     * @param key
+     * @param value
+     */
+    public void put(K key, V value) {
+        Entry<V> entry = new Entry<V>(value, weigh(value), System.nanoTime());
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment) {
+            segment.put(key, entry);
+        }
+    }
+
+    /**
+     * Returns the current invalidation stamp, to be passed to
+     * {@link #putIfNotInvalidated} after loading a value. One stamp may be
+     * used for every key loaded together.
+     * @return	invalidation stamp
+     */
+    public long stamp() {
+        return this.invalidations.get();
+    }
+
+    /**
+     * Caches the value for the key only if the key wasn't invalidated or
+     * updated since the stamp was taken.
+     * @param key
+     * @param value
+     * @param stamp	value of {@link #stamp()} taken before loading the value
+     * @return	true if the value was cached
+     */
+    public boolean putIfNotInvalidated(K key, V value, long stamp) {
+        Entry<V> entry = new Entry<V>(value, weigh(value), System.nanoTime());
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment) {
+            if (this.invalidatedAt.get(stripeOf(key)) > stamp || this.allInvalidatedAt > stamp) {
+                return false;
+            }
+            segment.put(key, entry);
+            return true;
+        }
+    }
+
+    /**
+     * Replaces the cached value for the key with the result of the update
+     * function, if the key is cached. A "null" result removes the entry. The
+     * entry keeps its original write time, so it still expires on schedule.
+     * @param key
+     * @param update	function from the cached value to its new value
+     */
+    public void updateIfPresent(K key, UnaryOperator<V> update) {
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment) {
+            invalidated(key);
+            Entry<V> entry = segment.entries.get(key);
+            if (entry == null) {
+                return;
+            }
+            V value = update.apply(entry.value);
+            if (value == null) {
+                segment.remove(key);
+                return;
+            }
+            segment.put(key, new Entry<V>(value, weigh(value), entry.writtenAt));
+        }
+    }
+
+    /**
+     * Removes the key from the cache.
+     * @param key
+     */
+    public void invalidate(K key) {
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment) {
+            invalidated(key);
+            segment.remove(key);
+        }
+    }
+
+    /**
+     * Removes every entry from the cache.
+     */
+    public void invalidateAll() {
+        this.allInvalidatedAt = this.invalidations.incrementAndGet();
+        for (Segment<K, V> segment : this.segments) {
+            synchronized (segment) {
+                segment.entries.clear();
+                segment.weight = 0;
+            }
+        }
+    }
+
+    /**
+     * @return	snapshot of the hit/miss/eviction counters of this cache
+     */
+    public CacheStats stats() {
+        int size = 0;
+        long weight = 0;
+        long hits = 0;
+        long misses = 0;
+        long evictions = 0;
+        for (Segment<K, V> segment : this.segments) {
+            synchronized (segment) {
+                size += segment.entries.size();
+                weight += segment.weight;
+                hits += segment.hits;
+                misses += segment.misses;
+                evictions += segment.evictions;
+            }
+        }
+        return new CacheStats(name, size, weight, maxSize, hits, misses, evictions);
+    }
+
+    /**
+     * Records an invalidation of the key, so loads stamped before it aren't
+     * cached. Called with the key's segment locked, before its entry changes.
+     */
+    private void invalidated(K key) {
+        long invalidation = this.invalidations.incrementAndGet();
+        this.invalidatedAt.accumulateAndGet(stripeOf(key), invalidation, Math::max);
+    }
+
+    private Segment<K, V> segmentFor(K key) {
+        return this.segments[spread(key) & (this.segments.length - 1)];
+    }
+
+    private static int stripeOf(Object key) {
+        return spread(key) & (STAMP_STRIPES - 1);
+    }
+
+    private static int spread(Object key) {
+        int h = key == null ? 0 : key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private boolean isExpired(Entry<V> entry, long now) {
+        return ttlNanos > 0 && now - entry.writtenAt > ttlNanos;
+    }
+
+    /**
+     * Access-ordered share of the entries, guarded by its own monitor.
+     */
+    private static final class Segment<K, V> {
+        final long maxSize;
+        final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true);
+        long weight;
+        long hits;
+        long misses;
+        long evictions;
+
+        Segment(long maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        void put(K key, Entry<V> entry) {
+            Entry<V> previous = this.entries.put(key, entry);
+            if (previous != null) {
+                weight -= previous.weight;
+            }
+            weight += entry.weight;
+            evictToMaxSize();
+        }
+
+        void remove(K key) {
+            Entry<V> entry = this.entries.remove(key);
+            if (entry != null) {
+                weight -= entry.weight;
+            }
+        }
+
+        private void evictToMaxSize() {
+            Iterator<Entry<V>> eldest = this.entries.values().iterator();
+            while (weight > maxSize && eldest.hasNext()) {
+                weight -= eldest.next().weight;
+                eldest.remove();
+                evictions++;
+            }
+        }
+    }
+
+    private static final class Entry<V> {
+        final V value;
+        final int weight;
+        final long writtenAt;
+
+        Entry(V value, int weight, long writtenAt) {
+            this.value = value;
+            this.weight = weight;
+            this.writtenAt = writtenAt;
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package com.example.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.hibernate.boot.spi.SessionFactoryOptions;
+import org.hibernate.cache.cfg.spi.DomainDataRegionBuildingContext;
+import org.hibernate.cache.cfg.spi.DomainDataRegionConfig;
+import org.hibernate.cache.internal.SimpleCacheKeysFactory;
+import org.hibernate.cache.spi.CacheKeysFactory;
+import org.hibernate.cache.spi.support.DomainDataStorageAccess;
+import org.hibernate.cache.spi.support.RegionFactoryTemplate;
+import org.hibernate.cache.spi.support.StorageAccess;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import com.example.dto.CacheStats;
+
+/**
+ * This is the provider of Hibernate's second-level and query caches, storing
+ * every region in its own ConcurrentHashMap, so they are bounded, expire and
+ * report their statistics (GET /admin/caches, as "hibernate:{region}") like
+ * the application's own caches. Every entity load and query result goes
+ * through these regions, so they take no lock on reads: entries past the
+ * maximum size are evicted by a CLOCK sweep (a recently read entry gets a
+ * second chance), which approximates least-recently-used eviction.
+ *
+ * Each region is sized by "app.cache.hibernate.{region}.max-size" and
+ * expired after "app.cache.hibernate.{region}.ttl-seconds", defaulting to
+ * "app.cache.hibernate.max-size" and "app.cache.hibernate.ttl-seconds". The
+ * update timestamps region, which tells Hibernate whether a cached query
+ * result is still current, holds one entry per table and is never evicted:
+ * losing an entry would make stale results look current.
+ *
+ * Entity regions hold a single entity class each, so their keys are the bare
+ * IDs (SimpleCacheKeysFactory). Hibernate only sees its own writes: code
+ * writing with plain JDBC must report them (see
+ * com.example.repository.JdbcWrites).
+ */
+@Component
+public class LruRegionFactory extends RegionFactoryTemplate implements HibernatePropertiesCustomizer {
+    private static final long serialVersionUID = 1L;
+
+    private final transient Environment environment;
+    private final transient Map<String, RegionStorageAccess> regions = new ConcurrentHashMap<String, RegionStorageAccess>();
+
+    public LruRegionFactory(Environment environment) {
+        this.environment = environment;
+    }
+
+    /**
+     * Has Hibernate use this instance as its region factory.
+     */
+    @Override
+    public void customize(Map<String, Object> hibernateProperties) {
+        hibernateProperties.put(AvailableSettings.CACHE_REGION_FACTORY, this);
+    }
+
+    /**
+     * @return	snapshot of the counters of every entity and query region
+     */
+    public List<CacheStats> stats() {
+        List<CacheStats> stats = new ArrayList<CacheStats>();
+        for (RegionStorageAccess region : this.regions.values()) {
+            stats.add(region.stats());
+        }
+        stats.sort((a, b) -> a.getName().compareTo(b.getName()));
+        return stats;
+    }
+
+    @Override
+    protected CacheKeysFactory getImplicitCacheKeysFactory() {
+        return SimpleCacheKeysFactory.INSTANCE;
+    }
+
+    @Override
+    protected DomainDataStorageAccess createDomainDataStorageAccess(DomainDataRegionConfig regionConfig,
+            DomainDataRegionBuildingContext buildingContext) {
+        return region(regionConfig.getRegionName());
+    }
+
+    @Override
+    protected StorageAccess createQueryResultsRegionStorageAccess(String regionName, SessionFactoryImplementor sessionFactory) {
+        return region(regionName);
+    }
+
+    @Override
+    protected StorageAccess createTimestampsRegionStorageAccess(String regionName, SessionFactoryImplementor sessionFactory) {
+        return new TimestampsStorageAccess();
+    }
+
+    @Override
+    protected void prepareForUse(SessionFactoryOptions settings, @SuppressWarnings("rawtypes") Map configValues) {
+    }
+
+    @Override
+    protected void releaseFromUse() {
+        this.regions.clear();
+    }
+
+    private RegionStorageAccess region(String regionName) {
+        return this.regions.computeIfAbsent(regionName, name -> {
+            String prefix = "app.cache.hibernate.";
+            long maxSize = this.environment.getProperty(prefix + name + ".max-size", Long.class,
+                    this.environment.getProperty(prefix + "max-size", Long.class, 10000L));
+            long ttlSeconds = this.environment.getProperty(prefix + name + ".ttl-seconds", Long.class,
+                    this.environment.getProperty(prefix + "ttl-seconds", Long.class, 300L));
+            return new RegionStorageAccess("hibernate:" + name, maxSize, ttlSeconds);
+        });
+    }
+
+    /**
+     * Entity or query region stored in a ConcurrentHashMap. Reads only mark
+     * the entry as referenced; writes append new entries to the clock queue
+     * and sweep it while the region is over its maximum size, evicting the
+     * first entry not referenced since the previous sweep. The queue also
+     * holds entries already removed, which the sweep drops when it meets
+     * them, and which are swept early should they outnumber the live ones.
+     */
+    private static final class RegionStorageAccess implements DomainDataStorageAccess {
+        private final String name;
+        private final long maxSize;
+        private final long ttlNanos;
+        private final ConcurrentHashMap<Object, Entry> entries = new ConcurrentHashMap<Object, Entry>();
+        private final ConcurrentLinkedQueue<Entry> clock = new ConcurrentLinkedQueue<Entry>();
+        private final AtomicInteger queued = new AtomicInteger();
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder evictions = new LongAdder();
+
+        RegionStorageAccess(String name, long maxSize, long ttlSeconds) {
+            this.name = name;
+            this.maxSize = maxSize;
+            this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        }
+
+        CacheStats stats() {
+            int size = this.entries.size();
+            return new CacheStats(this.name, size, size, this.maxSize, this.hits.sum(), this.misses.sum(),
+                    this.evictions.sum());
+        }
+
+        @Override
+        public Object getFromCache(Object key, SharedSessionContractImplementor session) {
+            Entry entry = this.entries.get(key);
+            if (entry == null) {
+                this.misses.increment();
+                return null;
+            }
+            if (this.ttlNanos > 0 && System.nanoTime() - entry.writtenAt > this.ttlNanos) {
+                if (this.entries.remove(key, entry)) {
+                    this.evictions.increment();
+                }
+                this.misses.increment();
+                return null;
+            }
+            entry.referenced = true;
+            this.hits.increment();
+            return entry.value;
+        }
+
+        @Override
+        public void putIntoCache(Object key, Object value, SharedSessionContractImplementor session) {
+            Entry entry = new Entry(key, value, System.nanoTime());
+            this.entries.put(key, entry);
+            this.clock.offer(entry);
+            this.queued.incrementAndGet();
+            sweep();
+        }
+
+        @Override
+        public boolean contains(Object key) {
+            Entry entry = this.entries.get(key);
+            return entry != null && !(this.ttlNanos > 0 && System.nanoTime() - entry.writtenAt > this.ttlNanos);
+        }
+
+        @Override
+        public void evictData() {
+            this.entries.clear();
+            this.clock.clear();
+            this.queued.set(0);
+        }
+
+        @Override
+        public void evictData(Object key) {
+            this.entries.remove(key);
+        }
+
+        @Override
+        public void release() {
+            evictData();
+        }
+
+        private void sweep() {
+            while (this.entries.size() > this.maxSize || this.queued.get() > 2 * this.maxSize) {
+                Entry entry = this.clock.poll();
+                if (entry == null) {
+                    return;
+                }
+                this.queued.decrementAndGet();
+                if (this.entries.get(entry.key) != entry) { // Replaced or removed since
+                    continue;
+                }
+                if (entry.referenced || this.entries.size() <= this.maxSize) { // Second chance
+                    entry.referenced = false;
+                    this.clock.offer(entry);
+                    this.queued.incrementAndGet();
+                } else if (this.entries.remove(entry.key, entry)) {
+                    this.evictions.increment();
+                }
+            }
+        }
+
+        private static final class Entry {
+            final Object key;
+            final Object value;
+            final long writtenAt;
+            volatile boolean referenced;
+
+            Entry(Object key, Object value, long writtenAt) {
+                this.key = key;
+                this.value = value;
+                this.writtenAt = writtenAt;
+            }
+        }
+    }
+
+    /**
+     * Update timestamps region: last write time of each table, never evicted.
+     */
+    private static final class TimestampsStorageAccess implements StorageAccess {
+        private final Map<Object, Object> timestamps = new ConcurrentHashMap<Object, Object>();
+
+        @Override
+        public Object getFromCache(Object key, SharedSessionContractImplementor session) {
+            return this.timestamps.get(key);
+        }
+
+        @Override
+        public void putIntoCache(Object key, Object value, SharedSessionContractImplementor session) {
+            this.timestamps.put(key, value);
+        }
+
+        @Override
+        public boolean contains(Object key) {
+            return this.timestamps.containsKey(key);
+        }
+
+        @Override
+        public void evictData() {
+            this.timestamps.clear();
+        }
+
+        @Override
+        public void evictData(Object key) {
+            this.timestamps.remove(key);
+        }
+
+        @Override
+        public void release() {
+            this.timestamps.clear();
+        }
+    }
+}
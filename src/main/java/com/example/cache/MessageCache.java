@@ -0,0 +1,21 @@
+package com.example.cache;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.entity.Message;
+
+/**
+ * This is the read-through cache of messages by messageId used by
+ * MessageService.getMessage. Writes to a message must invalidate its entry.
+ *
+ * Sized by "app.cache.messages.max-size" and expired after
+ * "app.cache.messages.ttl-seconds".
+ */
+@Component
+public class MessageCache extends LruCache<Integer, Message> {
+    public MessageCache(@Value("${app.cache.messages.max-size:10000}") int maxSize,
+            @Value("${app.cache.messages.ttl-seconds:300}") long ttlSeconds) {
+        super("messages", maxSize, ttlSeconds);
+    }
+}
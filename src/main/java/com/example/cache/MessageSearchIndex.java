@@ -0,0 +1,162 @@
+package com.example.cache;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.locks.StampedLock;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.entity.Message;
+import com.example.repository.MessageStore;
+
+/**
+ * This is the in-memory full-text index of message texts behind
+ * GET /messages/search (see InvertedIndex), so searching never scans the
+ * "message" table.
+ *
+ * It is warmed from the "message" table once the application is ready
+ * ("app.search.warm-fetch-size" rows per round trip), and kept current by
+ * MessageService's create, update and delete operations after they commit.
+ * Messages written before warm-up completes are remembered, and the rows
+ * warm-up read for them are skipped, since those may predate the write: a
+ * message deleted meanwhile is not indexed again. Between a write's commit
+ * and its re-index the index can still return a message that no longer
+ * matches, so callers must check the texts they load.
+ */
+@Component
+public class MessageSearchIndex {
+    private final StampedLock lock = new StampedLock();
+    private final InvertedIndex index = new InvertedIndex();
+    /** IDs of the messages written until warm-up completes, then "null" */
+    private Set<Integer> writtenBeforeWarm = new HashSet<Integer>();
+
+    MessageStore messageRepository;
+    TransactionTemplate readOnlyTransaction;
+    int warmFetchSize;
+
+    public MessageSearchIndex(MessageStore messageRepository, PlatformTransactionManager transactionManager,
+            @Value("${app.search.warm-fetch-size:1000}") int warmFetchSize) {
+        this.messageRepository = messageRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.warmFetchSize = warmFetchSize;
+    }
+
+    /**
+     * Loads every message from the database into the index, except those
+     * written through this index in the meantime.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warm() {
+        try {
+            this.readOnlyTransaction.executeWithoutResult(status -> {
+                try (Stream<Message> messages = this.messageRepository.streamAll(this.warmFetchSize)) {
+                    messages.forEach(message -> {
+                        long stamp = this.lock.writeLock();
+                        try {
+                            if (!this.writtenBeforeWarm.contains(message.getMessageId())) {
+                                this.index.add(message.getMessageId(), message.getMessageText());
+                            }
+                        } finally {
+                            this.lock.unlockWrite(stamp);
+                        }
+                    });
+                }
+            });
+        } finally {
+            long stamp = this.lock.writeLock();
+            this.writtenBeforeWarm = null;
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Finds the messages containing every term of the query, best match
+     * first.
+     * @param query
+     * @param offset	number of best matches to skip
+     * @param count	maximum number of IDs to return
+     * @return	IDs of the matching messages
+     */
+    public int[] search(String query, int offset, int count) {
+        long stamp = this.lock.readLock();
+        try {
+            return this.index.search(query, offset, count);
+        } finally {
+            this.lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Indexes a new message.
+     * @param messageId
+     * @param messageText
+     */
+    public void add(int messageId, String messageText) {
+        long stamp = this.lock.writeLock();
+        try {
+            written(messageId);
+            this.index.add(messageId, messageText);
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Re-indexes a message whose text changed.
+     * @param messageId
+     * @param messageText	new text of the message
+     */
+    public void update(int messageId, String messageText) {
+        long stamp = this.lock.writeLock();
+        try {
+            written(messageId);
+            this.index.remove(messageId);
+            this.index.add(messageId, messageText);
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes a deleted message.
+     * @param messageId
+     */
+    public void remove(int messageId) {
+        long stamp = this.lock.writeLock();
+        try {
+            written(messageId);
+            this.index.remove(messageId);
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Remembers a written message until warm-up completes. Must hold the
+     * write lock.
+     */
+    private void written(int messageId) {
+        if (this.writtenBeforeWarm != null) {
+            this.writtenBeforeWarm.add(messageId);
+        }
+    }
+
+    /**
+     * @return	number of messages in the index
+     */
+    public int size() {
+        long stamp = this.lock.readLock();
+        try {
+            return this.index.size();
+        } finally {
+            this.lock.unlockRead(stamp);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.cache;
+
+import java.util.Arrays;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * This is the cache of per-account timelines used by
+ * MessageService.getAllMessagesByAccount: for each accountId, the sorted ids
+ * of every message posted by that account. The messages themselves are read
+ * through the MessageCache.
+ *
+ * Timelines are kept current incrementally by {@link #addMessage} and
+ * {@link #removeMessage} rather than being dropped on every write. The cache
+ * is bounded by the total number of ids it holds
+ * ("app.cache.timelines.max-entries"), and timelines longer than
+ * "app.cache.timelines.max-length" are not cached at all.
+ */
+@Component
+public class TimelineCache extends LruCache<Integer, int[]> {
+    private final int maxLength;
+
+    public TimelineCache(@Value("${app.cache.timelines.max-entries:1000000}") long maxEntries,
+            @Value("${app.cache.timelines.max-length:10000}") int maxLength,
+            @Value("${app.cache.timelines.ttl-seconds:300}") long ttlSeconds) {
+        super("timelines", maxEntries, ttlSeconds);
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * @return	longest timeline that will be cached
+     */
+    public int getMaxLength() {
+        return maxLength;
+    }
+
+    @Override
+    protected int weigh(int[] messageIds) {
+        return messageIds.length + 1;
+    }
+
+    /**
+     * Adds a new message to its poster's timeline, if that timeline is cached.
+     * A timeline that grows past the maximum length is dropped.
+     * @param postedBy
+     * @param messageId
+     */
+    public void addMessage(int postedBy, int messageId) {
+        updateIfPresent(postedBy, messageIds -> {
+            int index = Arrays.binarySearch(messageIds, messageId);
+            if (index >= 0) {
+                return messageIds;
+            }
+            if (messageIds.length >= maxLength) {
+                return null;
+            }
+            int insertAt = -index - 1;
+            int[] updated = new int[messageIds.length + 1];
+            System.arraycopy(messageIds, 0, updated, 0, insertAt);
+            updated[insertAt] = messageId;
+            System.arraycopy(messageIds, insertAt, updated, insertAt + 1, messageIds.length - insertAt);
+            return updated;
+        });
+    }
+
+    /**
+     * Removes a deleted message from its poster's timeline, if that timeline
+     * is cached.
+     * @param postedBy
+     * @param messageId
+     */
+    public void removeMessage(int postedBy, int messageId) {
+        updateIfPresent(postedBy, messageIds -> {
+            int index = Arrays.binarySearch(messageIds, messageId);
+            if (index < 0) {
+                return messageIds;
+            }
+            int[] updated = new int[messageIds.length - 1];
+            System.arraycopy(messageIds, 0, updated, 0, index);
+            System.arraycopy(messageIds, index + 1, updated, index, messageIds.length - index - 1);
+            return updated;
+        });
+    }
+}
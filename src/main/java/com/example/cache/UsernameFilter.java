@@ -0,0 +1,73 @@
+package com.example.cache;
+
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.repository.AccountRepository;
+
+/**
+ * This is a Bloom filter of every existing username, so that registering a
+ * new username doesn't need a database round trip to check it's free: a
+ * username the filter has never seen goes straight to the insert, and only
+ * possible hits are looked up.
+ *
+ * It is warmed from the "account" table once the application is ready, and
+ * kept current by AccountService.registerAccount. Accounts inserted by other
+ * means (or before warm-up finishes) are missing from the filter, so a miss
+ * is not proof that a username is free: callers must still rely on the
+ * unique constraint on "account.username".
+ *
+ * Sized by "app.cache.usernames.expected-insertions" and
+ * "app.cache.usernames.false-positive-rate".
+ */
+@Component
+public class UsernameFilter {
+    private final BloomFilter usernames;
+
+    AccountRepository accountRepository;
+    TransactionTemplate readOnlyTransaction;
+
+    public UsernameFilter(AccountRepository accountRepository, PlatformTransactionManager transactionManager,
+            @Value("${app.cache.usernames.expected-insertions:1000000}") long expectedInsertions,
+            @Value("${app.cache.usernames.false-positive-rate:0.01}") double falsePositiveRate) {
+        this.usernames = new BloomFilter(expectedInsertions, falsePositiveRate);
+        this.accountRepository = accountRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * Loads every username from the database into the filter.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warm() {
+        this.readOnlyTransaction.executeWithoutResult(status -> {
+            try (Stream<String> usernames = this.accountRepository.streamAllUsernames()) {
+                usernames.forEach(this::add);
+            }
+        });
+    }
+
+    /**
+     * @param username
+     * @return	false if the username is known to be unused by the accounts
+     *			in the filter; true if it may be taken
+     */
+    public boolean mightContain(String username) {
+        return this.usernames.mightContain(username);
+    }
+
+    /**
+     * Records that a username is taken.
+     * @param username
+     */
+    public void add(String username) {
+        this.usernames.add(username);
+    }
+}
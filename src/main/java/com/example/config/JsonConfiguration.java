@@ -0,0 +1,79 @@
+package com.example.config;
+
+import java.io.IOException;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.example.entity.Message;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+/**
+ * JSON settings of the application's ObjectMapper, which Spring Boot applies
+ * to every Module bean.
+ *
+ * Messages are the bulk of every list response, so they are written by a
+ * hand-written serializer instead of Jackson's reflective BeanSerializer:
+ * no getter lookups through reflection, and the property names are encoded
+ * once. The output is byte for byte what the BeanSerializer writes (the
+ * properties in declaration order, nulls included), so clients and the
+ * write-behind journal see no difference. Keep it in step with Message if
+ * fields are added.
+ */
+@Configuration(proxyBeanMethods = false)
+public class JsonConfiguration {
+    /**
+     * @return	module registering MessageSerializer
+     */
+    @Bean
+    public Module messageJsonModule() {
+        return new SimpleModule("message-json").addSerializer(Message.class, new MessageSerializer());
+    }
+
+    /**
+     * Writes a Message as {"messageId":..,"postedBy":..,"messageText":..,"timePostedEpoch":..}.
+     */
+    public static class MessageSerializer extends StdSerializer<Message> {
+        private static final long serialVersionUID = 1L;
+
+        private static final SerializedString MESSAGE_ID = new SerializedString("messageId");
+        private static final SerializedString POSTED_BY = new SerializedString("postedBy");
+        private static final SerializedString MESSAGE_TEXT = new SerializedString("messageText");
+        private static final SerializedString TIME_POSTED_EPOCH = new SerializedString("timePostedEpoch");
+
+        public MessageSerializer() {
+            super(Message.class);
+        }
+
+        @Override
+        public void serialize(Message message, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            generator.writeStartObject(message);
+            generator.writeFieldName(MESSAGE_ID);
+            if (message.getMessageId() == null) {
+                generator.writeNull();
+            } else {
+                generator.writeNumber(message.getMessageId().intValue());
+            }
+            generator.writeFieldName(POSTED_BY);
+            if (message.getPostedBy() == null) {
+                generator.writeNull();
+            } else {
+                generator.writeNumber(message.getPostedBy().intValue());
+            }
+            generator.writeFieldName(MESSAGE_TEXT);
+            generator.writeString(message.getMessageText()); // Writes null for null
+            generator.writeFieldName(TIME_POSTED_EPOCH);
+            if (message.getTimePostedEpoch() == null) {
+                generator.writeNull();
+            } else {
+                generator.writeNumber(message.getTimePostedEpoch().longValue());
+            }
+            generator.writeEndObject();
+        }
+    }
+}
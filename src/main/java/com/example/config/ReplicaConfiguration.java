@@ -0,0 +1,87 @@
+package com.example.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.util.StringUtils;
+
+import com.example.repository.ReplicaRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * Opt-in mode that sends read-only transactions to read replicas of the
+ * primary database (see ReplicaRoutingDataSource), listed as comma-separated
+ * JDBC URLs in "app.datasource.replicas.urls". Every replica has its own
+ * connection pool, configured like the primary's (spring.datasource.hikari.*)
+ * but with read-only connections and a short
+ * "app.datasource.replicas.connection-timeout-ms", so that reads fail over
+ * to the primary quickly when a replica stops answering.
+ *
+ * Replicas lag behind the primary, so for "app.datasource.replicas.
+ * read-your-writes-ms" after an account posts or edits a message (or
+ * registers), the reads of that account's messages (or username) go to the
+ * primary (see ReadYourWrites). Other reads, such as GET /messages, may miss
+ * writes for as long as the replicas lag.
+ *
+ * Sharding routes messages to its own databases and can't be combined with
+ * replicas.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnExpression("!'${app.datasource.replicas.urls:}'.trim().isEmpty()")
+public class ReplicaConfiguration {
+    /**
+     * @return	DataSource routing connections to the primary database or to
+     *			the replicas
+     */
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(DataSourceProperties properties, Environment environment,
+            @Value("${app.datasource.replicas.urls}") String replicaUrls,
+            @Value("${app.datasource.replicas.connection-timeout-ms:250}") long connectionTimeoutMs,
+            @Value("${app.datasource.replicas.health-check-interval-ms:5000}") long healthCheckIntervalMs,
+            @Value("${app.messages.shards.count:1}") int shardCount) {
+        if (shardCount > 1) {
+            throw new IllegalStateException("app.datasource.replicas.urls can't be combined with app.messages.shards.count > 1");
+        }
+        Binder binder = Binder.get(environment);
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        binder.bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+        List<DataSource> replicas = new ArrayList<DataSource>();
+        for (String replicaUrl : StringUtils.commaDelimitedListToStringArray(replicaUrls)) {
+            if (replicaUrl.trim().isEmpty()) {
+                continue;
+            }
+            HikariDataSource replica = properties.initializeDataSourceBuilder().type(HikariDataSource.class)
+                    .url(replicaUrl.trim())
+                    .build();
+            binder.bind("spring.datasource.hikari", Bindable.ofInstance(replica));
+            replica.setPoolName("replica-" + (replicas.size() + 1));
+            replica.setReadOnly(true);
+            replica.setConnectionTimeout(connectionTimeoutMs);
+            replicas.add(replica);
+        }
+        int validationTimeoutSeconds = (int) Math.max(1, (connectionTimeoutMs + 999) / 1000);
+        return new ReplicaRoutingDataSource(primary, replicas, healthCheckIntervalMs, validationTimeoutSeconds);
+    }
+
+    /**
+     * @return	the routing DataSource, acquiring connections on their first
+     *			statement, once the transaction is known to be read-only
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.example.repository.MessageRepository;
+import com.example.repository.ShardRoutingDataSource;
+import com.example.repository.ShardedMessageRepository;
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * Opt-in mode that partitions the "message" table across
+ * "app.messages.shards.count" databases, hashed on "postedBy", so that
+ * message writes and per-account reads are spread over several databases
+ * (see ShardedMessageRepository). The primary database (spring.datasource.*)
+ * is shard 0 and keeps every other table; the other shards are reached with
+ * "app.messages.shards.url", in which "{shard}" is replaced with the shard
+ * number (for example jdbc:h2:file:./data/shard{shard}), and get their
+ * "message" table from shard-schema.sql when it doesn't exist yet. Every
+ * shard has its own connection pool, configured like the primary's
+ * (spring.datasource.hikari.*).
+ *
+ * Messages on other shards can't reference the "account" table, so their
+ * posters are only checked by MessageService. The write-behind mode inserts
+ * straight into the primary database and can't be combined with sharding.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnExpression("${app.messages.shards.count:1} > 1")
+public class ShardingConfiguration {
+    /**
+     * @return	DataSource routing connections to the primary database, or to
+     *			a shard inside ShardRoutingDataSource.onShard
+     */
+    @Bean
+    public ShardRoutingDataSource dataSource(DataSourceProperties properties, Environment environment,
+            @Value("${app.messages.shards.count}") int shardCount,
+            @Value("${app.messages.shards.url}") String shardUrl,
+            @Value("${app.messages.write-behind.enabled:false}") boolean writeBehind) {
+        if (writeBehind) {
+            throw new IllegalStateException("app.messages.write-behind.enabled can't be combined with app.messages.shards.count > 1");
+        }
+        Binder binder = Binder.get(environment);
+        List<DataSource> shards = new ArrayList<DataSource>(shardCount);
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        binder.bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+        shards.add(primary);
+        for (int shard = 1; shard < shardCount; shard++) {
+            HikariDataSource shardDataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class)
+                    .url(shardUrl.replace("{shard}", String.valueOf(shard)))
+                    .build();
+            binder.bind("spring.datasource.hikari", Bindable.ofInstance(shardDataSource));
+            shardDataSource.setPoolName("shard-" + shard);
+            shards.add(shardDataSource);
+        }
+        return new ShardRoutingDataSource(shards);
+    }
+
+    /**
+     * @return	MessageStore running the JPA MessageRepository on the right
+     *			shards
+     */
+    @Bean
+    @Primary
+    public ShardedMessageRepository shardedMessageRepository(@Qualifier("messageRepository") MessageRepository messageRepository,
+            ShardRoutingDataSource dataSource, PlatformTransactionManager transactionManager,
+            EntityManagerFactory entityManagerFactory, @Value("${app.messages.shards.query-threads}") int queryThreads) {
+        // Not when the DataSource is created, which would start the pools
+        // before their metrics are set up
+        ResourceDatabasePopulator schema = new ResourceDatabasePopulator(new ClassPathResource("shard-schema.sql"));
+        for (int shard = 1; shard < dataSource.getShardCount(); shard++) {
+            schema.execute(dataSource.getShard(shard));
+        }
+        return new ShardedMessageRepository(messageRepository, dataSource, transactionManager, entityManagerFactory,
+                queryThreads);
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.config;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.EntityManagerFactoryDependsOnPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.example.repository.PageCacheWarmer;
+import com.example.repository.SchemaMigrator;
+
+/**
+ * Durable storage support, enabled by the "persistent" profile
+ * (application-persistent.properties), which keeps the database in an H2
+ * file instead of memory:
+ *
+ * - "app.storage.migrate": the schema comes from the migration scripts (see
+ *   SchemaMigrator), run before JPA starts and validates it, instead of from
+ *   Hibernate and data.sql.
+ * - "app.storage.warm-up": the database is read into the page cache once the
+ *   application is ready (see PageCacheWarmer), for at most
+ *   "app.storage.warm-up-budget-ms".
+ */
+@Configuration(proxyBeanMethods = false)
+public class StorageConfiguration {
+    /**
+     * @return	SchemaMigrator, which has migrated the database
+     */
+    @Bean(initMethod = "migrate")
+    @ConditionalOnProperty(name = "app.storage.migrate", havingValue = "true")
+    public SchemaMigrator schemaMigrator(DataSource dataSource) {
+        return new SchemaMigrator(dataSource);
+    }
+
+    /**
+     * @return	post-processor making JPA wait for the migrations
+     */
+    @Bean
+    @ConditionalOnProperty(name = "app.storage.migrate", havingValue = "true")
+    public static EntityManagerFactoryDependsOnPostProcessor entityManagerFactoryDependsOnSchemaMigrator() {
+        return new EntityManagerFactoryDependsOnPostProcessor("schemaMigrator");
+    }
+
+    /**
+     * @return	PageCacheWarmer, which warms the page cache once the
+     *			application is ready
+     */
+    @Bean
+    @ConditionalOnProperty(name = "app.storage.warm-up", havingValue = "true")
+    public PageCacheWarmer pageCacheWarmer(DataSource dataSource,
+            @Value("${app.storage.warm-up-budget-ms:30000}") long budgetMs) {
+        return new PageCacheWarmer(dataSource, budgetMs);
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.controller;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import com.example.cache.LruCache;
+import com.example.cache.LruRegionFactory;
+import com.example.dto.CacheStats;
+import com.example.metrics.MetricsRegistry;
+
+/**
+ * This is a controller for operational endpoints (cache statistics and the
+ * like) that are not part of the social media API itself.
+ */
+@Controller
+public class AdminController {
+    List<LruCache<?, ?>> caches;
+    LruRegionFactory regionFactory;
+    MetricsRegistry metrics;
+
+    // CONSTRUCTORS //
+    @Autowired
+    public AdminController(List<LruCache<?, ?>> caches, LruRegionFactory regionFactory, MetricsRegistry metrics) {
+        this.caches = caches;
+        this.regionFactory = regionFactory;
+        this.metrics = metrics;
+    }
+
+	/**
+	 * Handler to retrieve the hit/miss/eviction counters of every in-process
+	 * cache, used to size them, followed by the regions of Hibernate's
+	 * second-level and query caches ("hibernate:{region}").
+	 *
+	 * @return	statistics of every cache
+	 */
+	@GetMapping(value = "/admin/caches")
+	public @ResponseBody ResponseEntity<List<CacheStats>> getCacheStatsHandler() {
+		List<CacheStats> stats = new ArrayList<CacheStats>();
+		for (LruCache<?, ?> cache : this.caches) {
+			stats.add(cache.stats());
+		}
+		stats.addAll(this.regionFactory.stats());
+		return ResponseEntity.status(200).body(stats);
+	}
+
+	/**
+	 * Handler to scrape the request, service, repository and connection pool
+	 * metrics in the Prometheus text format. It is served at Actuator's path
+	 * so scrape configs don't change if the app moves to Actuator.
+	 *
+	 * @return	every metric of the MetricsRegistry
+	 */
+	@GetMapping(value = "/actuator/prometheus", produces = "text/plain; version=0.0.4; charset=utf-8")
+	public @ResponseBody ResponseEntity<String> getMetricsHandler() {
+		return ResponseEntity.status(200).body(this.metrics.scrape());
+	}
+}
@@ -1,8 +1,10 @@
 package com.example.controller;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -11,11 +13,20 @@ import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.example.dto.FeedPage;
+import com.example.dto.MessageBatchResult;
+import com.example.dto.MessagePage;
+import com.example.dto.MessageSearchPage;
 import com.example.entity.Account;
 import com.example.entity.Message;
+import com.example.security.TokenService;
 import com.example.service.AccountService;
+import com.example.service.FollowService;
 import com.example.service.MessageService;
 
 /**
@@ -28,12 +39,23 @@ import com.example.service.MessageService;
 public class SocialMediaController {
     AccountService accountService;
     MessageService messageService;
+    FollowService followService;
+    TokenService tokenService;
+    boolean streamAllMessages;
+    boolean tokenRequired;
 
     // CONSTRUCTORS //
     @Autowired
-    public SocialMediaController(AccountService accountService, MessageService messageService) {
+    public SocialMediaController(AccountService accountService, MessageService messageService,
+            FollowService followService, TokenService tokenService,
+            @Value("${app.messages.get-all.streaming:false}") boolean streamAllMessages,
+            @Value("${app.security.token.required:false}") boolean tokenRequired) {
         this.accountService = accountService;
         this.messageService = messageService;
+        this.followService = followService;
+        this.tokenService = tokenService;
+        this.streamAllMessages = streamAllMessages;
+        this.tokenRequired = tokenRequired;
     }
 
 
@@ -53,13 +75,17 @@ public class SocialMediaController {
 	 * If AccountService returns a null account (meaning posting an Account was 
 	 * unsuccessful), the API will also return a 400 message (client error).
 	 *  
+	 * The password is hashed off the request thread; if too many are already 
+	 * waiting to be hashed the API will return a 503 message (service 
+	 * unavailable). 
+	 *  
 	 * @param account	the new account trying to be registered
 	 * 
 	 * @return			the new register account, or "null" if registration
 	 * 					failed
 	 */
     @PostMapping(value = "/register")
-	public @ResponseBody ResponseEntity<Account> postRegisterAccountHandler(@RequestBody Account account) { 
+	public @ResponseBody CompletableFuture<ResponseEntity<Account>> postRegisterAccountHandler(@RequestBody Account account) { 
 		return this.accountService.registerAccount(account);
 	}
 
@@ -70,18 +96,137 @@ public class SocialMediaController {
 	 * unsuccessful, such as due to an invalid username or password), the API 
 	 * will return a 401 message (unauthorized error). 
 	 *  
+	 * A successful login returns a session token in the "X-Auth-Token" 
+	 * header, to be sent back as "Authorization: Bearer <token>" when posting 
+	 * messages instead of the credentials. 
+	 *  
+	 * The password is verified off the request thread; if too many are 
+	 * already waiting to be verified the API will return a 503 message 
+	 * (service unavailable). 
+	 *  
 	 * @param account	the account credintials being used to log in
 	 *
 	 * @return			the logged in account, or "null" if
 	 * 					login/authorization failed
 	 */
 	@PostMapping(value = "/login")
-	public @ResponseBody ResponseEntity<Account> postLoginAccountHandler(@RequestBody Account account) { 
+	public @ResponseBody CompletableFuture<ResponseEntity<Account>> postLoginAccountHandler(@RequestBody Account account) { 
 		return this.accountService.loginAccount(account);
 	} 
  
  
  
+	// FOLLOW HANDLERS //
+	/**
+	 * Handler for making an account follow another.
+	 *
+	 * Both accounts must exist and be different. Failing to meet these
+	 * requirements will cancel the POST and the API will return a 400
+	 * message (client error).
+	 *
+	 * With an "Authorization: Bearer <token>" header from POST /login (or
+	 * when "app.security.token.required" is set), the token must be the
+	 * following account's: an invalid token returns a 401 message
+	 * (unauthorized error), another account's a 403 message (forbidden).
+	 *
+	 * @param accountId	ID of the account following
+	 * @param followeeId	ID of the account to follow
+	 * @param authorization	"Authorization" header, if any
+	 *
+	 * @return	the number of follows created (0 if already following)
+	 */
+	@PostMapping(value = "/accounts/{accountId}/following/{followeeId}")
+	public @ResponseBody ResponseEntity<String> postFollowHandler(@PathVariable int accountId, @PathVariable int followeeId,
+			@RequestHeader(value = "Authorization", required = false) String authorization) {
+		ResponseEntity<String> denied = checkActingAs(accountId, authorization);
+		if (denied != null) {
+			return denied;
+		}
+		return this.followService.follow(accountId, followeeId);
+	}
+
+	/**
+	 * Handler for making an account stop following another.
+	 *
+	 * Response message should always be 200 (OK), even if the account wasn't
+	 * following the other. A session token is checked like in a POST.
+	 *
+	 * @param accountId	ID of the account following
+	 * @param followeeId	ID of the followed account
+	 * @param authorization	"Authorization" header, if any
+	 *
+	 * @return	the number of follows removed, or an empty string if there
+	 *			was none
+	 */
+	@DeleteMapping(value = "/accounts/{accountId}/following/{followeeId}")
+	public @ResponseBody ResponseEntity<String> deleteFollowHandler(@PathVariable int accountId, @PathVariable int followeeId,
+			@RequestHeader(value = "Authorization", required = false) String authorization) {
+		ResponseEntity<String> denied = checkActingAs(accountId, authorization);
+		if (denied != null) {
+			return denied;
+		}
+		return this.followService.unfollow(accountId, followeeId);
+	}
+
+	/**
+	 * Handler to retrieve the IDs of the accounts an account follows.
+	 *
+	 * Response message should always be 200 (OK), even if the account
+	 * follows no one.
+	 *
+	 * @param accountId	ID of the account following
+	 *
+	 * @return	IDs of the followed accounts, ascending
+	 */
+	@GetMapping(value = "/accounts/{accountId}/following")
+	public @ResponseBody ResponseEntity<List<Integer>> getFollowingHandler(@PathVariable int accountId) {
+		return this.followService.getFollowing(accountId);
+	}
+
+	/**
+	 * Handler to retrieve one page of an account's home feed: the messages
+	 * of the accounts it follows, newest first.
+	 *
+	 * The returned page carries a "nextCursor" that should be passed back as
+	 * "after" to read the following page; it is null once the last page has
+	 * been reached. An invalid cursor or a limit outside 1..1000 returns a
+	 * 400 message (client error).
+	 *
+	 * @param accountId	ID of the account whose feed to read
+	 * @param after	cursor of the previous page, if any
+	 * @param limit	maximum number of messages on the page (default 20)
+	 *
+	 * @return	page of the feed
+	 */
+	@GetMapping(value = "/accounts/{accountId}/feed")
+	public @ResponseBody ResponseEntity<FeedPage> getFeedHandler(@PathVariable int accountId,
+			@RequestParam(required = false) String after, @RequestParam(defaultValue = "20") int limit) {
+		return this.messageService.getFeed(accountId, after, limit);
+	}
+
+	/**
+	 * Checks that the request may act as the account: always, without a
+	 * session token (unless tokens are required), else only with a valid
+	 * token of that account.
+	 *
+	 * @return	"null" if it may, else the 401 or 403 response to send
+	 */
+	private ResponseEntity<String> checkActingAs(int accountId, String authorization) {
+		if (authorization == null && !this.tokenRequired) {
+			return null;
+		}
+		Integer tokenAccountId = this.tokenService.verify(TokenService.bearerToken(authorization));
+		if (tokenAccountId == null) {
+			return ResponseEntity.status(401).body(null);
+		}
+		if (tokenAccountId != accountId) {
+			return ResponseEntity.status(403).body(null);
+		}
+		return null;
+	}
+
+
+
 	// MESSAGE HANDLERS // 
 	/** 
 	 * Handler for posting a new message. 
@@ -96,17 +241,67 @@ public class SocialMediaController {
 	 * database. Failing to meet this requirement will cancel the POST and the
 	 * API will return a 400 message (client error).
 	 *  
+	 * With an "Authorization: Bearer <token>" header from POST /login, the 
+	 * poster is the token's account instead of the body's "postedBy". An 
+	 * invalid or expired token returns a 401 message (unauthorized error), as 
+	 * does a missing one when "app.security.token.required" is set. 
+	 *  
 	 * If MessageService returns a null message (meaning posting an Message was 
 	 * unsuccessful), the API will return a 400 message (client error). 
 	 *  
+	 * With "app.messages.write-behind.enabled" set, a valid message is queued 
+	 * for insertion and returned with its assigned ID and a 202 message 
+	 * (accepted); while the queue is full the API returns a 503 message 
+	 * (service unavailable). 
+	 *  
 	 * @param message	the message to be created 
+	 * @param authorization	"Authorization" header, if any
 	 * 
 	 * @return			the newly created message, or "null" if message
 	 * 					creation failed
 	 */
 	@PostMapping(value = "/messages")
-	public @ResponseBody ResponseEntity<Message> postCreateMessageHandler(@RequestBody Message message) { 
-		return this.messageService.createMessage(message);
+	public @ResponseBody ResponseEntity<Message> postCreateMessageHandler(@RequestBody Message message,
+			@RequestHeader(value = "Authorization", required = false) String authorization) { 
+		if (authorization == null && !this.tokenRequired) {
+			return this.messageService.createMessage(message);
+		}
+		Integer accountId = this.tokenService.verify(TokenService.bearerToken(authorization));
+		if (accountId == null) {
+			return ResponseEntity.status(401).body(null);
+		}
+		return this.messageService.createMessageAs(accountId, message);
+	}
+
+	/**
+	 * Handler for posting a batch of new messages in one request.
+	 *
+	 * Each message is validated with the same rules as a single POST
+	 * /messages, and the outcome of each one is returned in the same order as
+	 * the request: status 200 with the created message, or status 400 if it
+	 * was rejected. Rejected messages don't prevent the others from being
+	 * created. An empty batch, or one of more than 1000 messages, returns a
+	 * 400 message (client error).
+	 *
+	 * A session token is handled like in a single POST /messages: with one,
+	 * every message is posted by the token's account.
+	 *
+	 * @param messages	the messages to be created
+	 * @param authorization	"Authorization" header, if any
+	 *
+	 * @return	the outcome of each message
+	 */
+	@PostMapping(value = "/messages/batch")
+	public @ResponseBody ResponseEntity<List<MessageBatchResult>> postCreateMessagesHandler(@RequestBody List<Message> messages,
+			@RequestHeader(value = "Authorization", required = false) String authorization) {
+		if (authorization == null && !this.tokenRequired) {
+			return this.messageService.createMessages(messages);
+		}
+		Integer accountId = this.tokenService.verify(TokenService.bearerToken(authorization));
+		if (accountId == null) {
+			return ResponseEntity.status(401).body(null);
+		}
+		return this.messageService.createMessagesAs(accountId, messages);
 	}
 
 	/** 
@@ -115,12 +310,96 @@ public class SocialMediaController {
 	 * Response message should always be 200 (OK), even if no messages are
 	 * returned.
 	 *  
+	 * With the "streaming" profile the messages are read page by page while
+	 * the response is written instead of being loaded into a List first; the
+	 * response body is the same.
+	 *  
+	 * With "since" and/or "until" (epoch seconds, inclusive) only the 
+	 * messages posted in that range are returned, ordered by 
+	 * (timePostedEpoch, messageId); a range with "since" after "until" 
+	 * returns a 400 message (client error). 
+	 *  
+	 * @param since	earliest timePostedEpoch, if any
+	 * @param until	latest timePostedEpoch, if any
+	 *  
 	 * @return	list of all messages
 	 */
 	@GetMapping(value = "/messages")
-	public @ResponseBody ResponseEntity<List<Message>> getAllMessagesHandler() { 
+	public @ResponseBody ResponseEntity<? extends Iterable<Message>> getAllMessagesHandler(
+			@RequestParam(required = false) Long since, @RequestParam(required = false) Long until) { 
+		if (since != null || until != null) {
+			return this.messageService.getMessagesPostedBetween(since, until);
+		}
+		if (this.streamAllMessages) {
+			return this.messageService.streamAllMessages();
+		}
 		return this.messageService.getAllMessages();
 	} 
+
+	/**
+	 * Handler to retrieve one page of messages, selected when the "limit"
+	 * query parameter is present (e.g. GET /messages?limit=100).
+	 *
+	 * Messages are ordered by (timePostedEpoch, messageId). The returned page
+	 * carries a "nextCursor" that should be passed back as "after" to read the
+	 * following page; it is null once the last page has been reached. An
+	 * invalid cursor or a limit outside 1..1000 returns a 400 message (client
+	 * error), and so does a "since" or "until" with it: pages aren't bounded
+	 * by time, and the range would otherwise be silently ignored.
+	 *
+	 * @param after	cursor of the last message of the previous page, if any
+	 * @param limit	maximum number of messages on the page
+	 * @param since	must be absent
+	 * @param until	must be absent
+	 *
+	 * @return	page of messages
+	 */
+	@GetMapping(value = "/messages", params = "limit")
+	public @ResponseBody ResponseEntity<MessagePage> getMessagesPageHandler(@RequestParam(required = false) String after, @RequestParam int limit,
+			@RequestParam(required = false) Long since, @RequestParam(required = false) Long until) {
+		if (since != null || until != null) {
+			return ResponseEntity.status(400).body(null);
+		}
+		return this.messageService.getMessagesPage(after, limit);
+	}
+
+	/**
+	 * Handler to search messages by text (e.g. GET /messages/search?q=hello).
+	 *
+	 * Returns the messages containing every word of "q", ignoring case and
+	 * punctuation, best match first, one page of at most "limit" (default 20)
+	 * messages at a time. The returned page carries a "nextCursor" that
+	 * should be passed back as "after" to read the following page; it is
+	 * null once the last page has been reached. A query without any word, an
+	 * invalid cursor, a limit outside 1..1000 or a page beyond the first
+	 * 10000 results returns a 400 message (client error).
+	 *
+	 * @param q	words to search for
+	 * @param after	cursor of the previous page, if any
+	 * @param limit	maximum number of messages on the page
+	 *
+	 * @return	page of matching messages
+	 */
+	@GetMapping(value = "/messages/search")
+	public @ResponseBody ResponseEntity<MessageSearchPage> searchMessagesHandler(@RequestParam String q,
+			@RequestParam(required = false) String after, @RequestParam(defaultValue = "20") int limit) {
+		return this.messageService.searchMessages(q, after, limit);
+	}
+
+	/**
+	 * Handler to export all messages as newline-delimited JSON
+	 * (application/x-ndjson), one message per line.
+	 *
+	 * Messages are streamed to the client as they are read from the database,
+	 * so memory use doesn't grow with the size of the table. Response message
+	 * should always be 200 (OK), even if no messages are returned.
+	 *
+	 * @return	stream of all messages
+	 */
+	@GetMapping(value = "/messages/export")
+	public ResponseEntity<StreamingResponseBody> exportMessagesHandler() {
+		return this.messageService.exportMessages();
+	}
  
 	/** 
 	 * Handler to retrieve all messages by a single account.
@@ -128,12 +407,23 @@ public class SocialMediaController {
 	 * Response message should always be 200 (OK), even if no messages by
 	 * specified account are returned.
 	 * 
+	 * With "since" and/or "until" (epoch seconds, inclusive) only the 
+	 * account's messages posted in that range are returned, ordered by 
+	 * (timePostedEpoch, messageId); a range with "since" after "until" 
+	 * returns a 400 message (client error). 
+	 * 
 	 * @param accountId	ID of the account to retrieve all messages of
+	 * @param since	earliest timePostedEpoch, if any
+	 * @param until	latest timePostedEpoch, if any
 	 *  
 	 * @return	list of all messages by the specified account
 	 */
 	@GetMapping(value = "/accounts/{accountId}/messages")
-	public @ResponseBody ResponseEntity<List<Message>> AllMessagesByAccountHandler(@PathVariable int accountId) { 
+	public @ResponseBody ResponseEntity<List<Message>> AllMessagesByAccountHandler(@PathVariable int accountId,
+			@RequestParam(required = false) Long since, @RequestParam(required = false) Long until) { 
+		if (since != null || until != null) {
+			return this.messageService.getMessagesByAccountPostedBetween(accountId, since, until);
+		}
 		return this.messageService.getAllMessagesByAccount(accountId);
 	} 
  
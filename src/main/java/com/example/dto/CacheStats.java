@@ -0,0 +1,161 @@
+package com.example.dto;
+
+/**
+ * This is a class that models a snapshot of the counters of one in-process
+ * cache, returned by "GET /admin/caches".
+ */
+public class CacheStats {
+    private String name;
+    private int size;
+    private long weight;
+    private long maxSize;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * A default, no-args constructor, as well as correctly formatted getters and setters, are needed for
+     * Jackson Objectmapper to work.
+     */
+    public CacheStats() {
+    }
+
+    /**
+     * @param name
+     * @param size
+     * @param weight
+     * @param maxSize
+     * @param hits
+     * @param misses
+     * @param evictions
+     */
+    public CacheStats(String name, int size, long weight, long maxSize, long hits, long misses, long evictions) {
+        this.name = name;
+        this.size = size;
+        this.weight = weight;
+        this.maxSize = maxSize;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+    }
+
+    /**
+     * @return name of the cache
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @param name
+     */
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return current number of entries
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @param size
+     */
+    public void setSize(int size) {
+        this.size = size;
+    }
+
+    /**
+     * @return total weight of the entries (equal to size unless the cache
+     *         weighs its entries)
+     */
+    public long getWeight() {
+        return weight;
+    }
+
+    /**
+     * @param weight
+     */
+    public void setWeight(long weight) {
+        this.weight = weight;
+    }
+
+    /**
+     * @return maximum total weight of the entries
+     */
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @param maxSize
+     */
+    public void setMaxSize(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return number of lookups that found a value
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * @param hits
+     */
+    public void setHits(long hits) {
+        this.hits = hits;
+    }
+
+    /**
+     * @return number of lookups that didn't find a value
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @param misses
+     */
+    public void setMisses(long misses) {
+        this.misses = misses;
+    }
+
+    /**
+     * @return number of entries dropped for size or expiry
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @param evictions
+     */
+    public void setEvictions(long evictions) {
+        this.evictions = evictions;
+    }
+
+    /**
+     * @return hits / (hits + misses), or 0 if the cache was never read
+     */
+    public double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{" +
+                "name='" + name + '\'' +
+                ", size=" + size +
+                ", weight=" + weight +
+                ", maxSize=" + maxSize +
+                ", hits=" + hits +
+                ", misses=" + misses +
+                ", evictions=" + evictions +
+                '}';
+    }
+}
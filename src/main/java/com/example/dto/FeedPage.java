@@ -0,0 +1,77 @@
+package com.example.dto;
+
+import java.util.List;
+
+import com.example.entity.Message;
+
+/**
+ * This is a class that models one page of a home feed, returned by the
+ * "GET /accounts/{accountId}/feed" endpoint.
+ *
+ * Messages are ordered newest (highest messageId) first. The "nextCursor"
+ * should be passed back as the "after" parameter to retrieve the following
+ * page. It is null once the last page has been reached.
+ */
+public class FeedPage {
+    /**
+     * The messages on this page, newest first.
+     */
+    private List<Message> messages;
+    /**
+     * Cursor (messageId of the last message of this page) of the following
+     * page, or null if there are no more pages.
+     */
+    private String nextCursor;
+
+    /**
+     * A default, no-args constructor, as well as correctly formatted getters and setters, are needed for
+     * Jackson Objectmapper to work.
+     */
+    public FeedPage() {
+    }
+
+    /**
+     * @param messages
+     * @param nextCursor
+     */
+    public FeedPage(List<Message> messages, String nextCursor) {
+        this.messages = messages;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * @return messages
+     */
+    public List<Message> getMessages() {
+        return messages;
+    }
+
+    /**
+     * @param messages
+     */
+    public void setMessages(List<Message> messages) {
+        this.messages = messages;
+    }
+
+    /**
+     * @return nextCursor
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    /**
+     * @param nextCursor
+     */
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    @Override
+    public String toString() {
+        return "FeedPage{" +
+                "messages=" + messages +
+                ", nextCursor='" + nextCursor + '\'' +
+                '}';
+    }
+}
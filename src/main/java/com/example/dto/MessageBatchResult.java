@@ -0,0 +1,73 @@
+package com.example.dto;
+
+import com.example.entity.Message;
+
+/**
+ * This is a class that models the outcome of one message of a
+ * "POST /messages/batch" request. Results are returned in the same order as
+ * the messages of the request.
+ */
+public class MessageBatchResult {
+    /**
+     * Status of this message, using the same codes as "POST /messages": 200
+     * if it was created, 400 if it was rejected.
+     */
+    private int status;
+    /**
+     * The created message, including its messageId, or null if it was
+     * rejected.
+     */
+    private Message message;
+
+    /**
+     * A default, no-args constructor, as well as correctly formatted getters and setters, are needed for
+     * Jackson Objectmapper to work.
+     */
+    public MessageBatchResult() {
+    }
+
+    /**
+     * @param status
+     * @param message
+     */
+    public MessageBatchResult(int status, Message message) {
+        this.status = status;
+        this.message = message;
+    }
+
+    /**
+     * @return status
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * @param status
+     */
+    public void setStatus(int status) {
+        this.status = status;
+    }
+
+    /**
+     * @return message
+     */
+    public Message getMessage() {
+        return message;
+    }
+
+    /**
+     * @param message
+     */
+    public void setMessage(Message message) {
+        this.message = message;
+    }
+
+    @Override
+    public String toString() {
+        return "MessageBatchResult{" +
+                "status=" + status +
+                ", message=" + message +
+                '}';
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.dto;
+
+import java.util.List;
+
+import com.example.entity.Message;
+
+/**
+ * This is a class that models one page of messages, returned by the
+ * keyset-paginated "GET /messages?limit=" endpoint.
+ *
+ * Messages are ordered by (timePostedEpoch, messageId). The "nextCursor" is
+ * the key of the last message on this page, and should be passed back as the
+ * "after" parameter to retrieve the following page. It is null once the last
+ * page has been reached.
+ */
+public class MessagePage {
+    /**
+     * The messages on this page, in (timePostedEpoch, messageId) order.
+     */
+    private List<Message> messages;
+    /**
+     * Cursor of the form "timePostedEpoch:messageId" pointing at the last
+     * message of this page, or null if there are no more pages.
+     */
+    private String nextCursor;
+
+    /**
+     * A default, no-args constructor, as well as correctly formatted getters and setters, are needed for
+     * Jackson Objectmapper to work.
+     */
+    public MessagePage() {
+    }
+
+    /**
+     * @param messages
+     * @param nextCursor
+     */
+    public MessagePage(List<Message> messages, String nextCursor) {
+        this.messages = messages;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * @return messages
+     */
+    public List<Message> getMessages() {
+        return messages;
+    }
+
+    /**
+     * @param messages
+     */
+    public void setMessages(List<Message> messages) {
+        this.messages = messages;
+    }
+
+    /**
+     * @return nextCursor
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    /**
+     * @param nextCursor
+     */
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Builds the cursor pointing at the given message. Messages without a
+     * time sort first, so their time is written as Long.MIN_VALUE.
+     * @param message
+     * @return  cursor of the form "timePostedEpoch:messageId"
+     */
+    public static String cursorOf(Message message) {
+        Long time = message.getTimePostedEpoch();
+        return (time == null ? Long.MIN_VALUE : time) + ":" + message.getMessageId();
+    }
+
+    @Override
+    public String toString() {
+        return "MessagePage{" +
+                "messages=" + messages +
+                ", nextCursor='" + nextCursor + '\'' +
+                '}';
+    }
+}
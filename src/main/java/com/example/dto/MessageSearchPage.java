@@ -0,0 +1,77 @@
+package com.example.dto;
+
+import java.util.List;
+
+import com.example.entity.Message;
+
+/**
+ * This is a class that models one page of search results, returned by the
+ * "GET /messages/search?q=" endpoint.
+ *
+ * Messages are ranked by relevance to the query, best match first. The
+ * "nextCursor" should be passed back as the "after" parameter to retrieve
+ * the following page. It is null once the last page has been reached.
+ */
+public class MessageSearchPage {
+    /**
+     * The messages on this page, best match first.
+     */
+    private List<Message> messages;
+    /**
+     * Opaque cursor of the following page, or null if there are no more
+     * pages.
+     */
+    private String nextCursor;
+
+    /**
+     * A default, no-args constructor, as well as correctly formatted getters and setters, are needed for
+     * Jackson Objectmapper to work.
+     */
+    public MessageSearchPage() {
+    }
+
+    /**
+     * @param messages
+     * @param nextCursor
+     */
+    public MessageSearchPage(List<Message> messages, String nextCursor) {
+        this.messages = messages;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * @return messages
+     */
+    public List<Message> getMessages() {
+        return messages;
+    }
+
+    /**
+     * @param messages
+     */
+    public void setMessages(List<Message> messages) {
+        this.messages = messages;
+    }
+
+    /**
+     * @return nextCursor
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    /**
+     * @param nextCursor
+     */
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    @Override
+    public String toString() {
+        return "MessageSearchPage{" +
+                "messages=" + messages +
+                ", nextCursor='" + nextCursor + '\'' +
+                '}';
+    }
+}
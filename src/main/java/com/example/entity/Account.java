@@ -2,20 +2,33 @@ package com.example.entity;
 
 import javax.persistence.*;
 
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+
 /**
  * This is a class that models an Account.
  *
+ * Accounts are kept in the "account" region of Hibernate's second-level cache (see LruRegionFactory). They are
+ * read far more often than written, so the cache isn't locked during writes, an account is only evicted after them.
+ *
  * You should NOT make any modifications to this class.
  */
 @Entity
 @Table(name="account")
+@Cacheable
+@org.hibernate.annotations.Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE, region = "account")
 public class Account {
     /**
-     * An id for this Account. You should use this as the Entity's ID.
+     * An id for this Account. You should use this as the Entity's ID. Ids are handed out by the "account_seq"
+     * sequence in blocks of 50, or assigned in memory with "app.ids.strategy=counter" (see NodeCounterIdGenerator).
      */
     @Column(name="accountId")
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(generator = "account_seq")
+    @GenericGenerator(name = "account_seq", strategy = "com.example.id.NodeCounterIdGenerator", parameters = {
+            @Parameter(name = "sequence_name", value = "account_seq"),
+            @Parameter(name = "increment_size", value = "50")})
     private Integer accountId;
     /**
      * A username for this Account (must be unique and not blank)
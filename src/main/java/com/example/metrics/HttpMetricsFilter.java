@@ -0,0 +1,94 @@
+package com.example.metrics;
+
+import java.io.IOException;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * Times every HTTP request as "http_server_requests_seconds", tagged with
+ * the method, the response status and the matched handler's URI template.
+ * The time covers the whole exchange, including writing the response body,
+ * so comparing it with "service_method_seconds" shows how long request
+ * binding and JSON serialization take.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+public class HttpMetricsFilter extends OncePerRequestFilter {
+    MetricsRegistry metrics;
+
+    // CONSTRUCTORS //
+    @Autowired
+    public HttpMetricsFilter(MetricsRegistry metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        long start = System.nanoTime();
+        try {
+            filterChain.doFilter(request, response);
+        } catch (IOException | ServletException | RuntimeException e) {
+            record(request, 500, start);
+            throw e;
+        }
+        if (request.isAsyncStarted()) {
+            // Streaming responses (GET /messages/export) finish on another thread
+            request.getAsyncContext().addListener(new AsyncListener() {
+                @Override
+                public void onComplete(AsyncEvent event) {
+                    record(request, response.getStatus(), start);
+                }
+
+                @Override
+                public void onTimeout(AsyncEvent event) {
+                }
+
+                @Override
+                public void onError(AsyncEvent event) {
+                }
+
+                @Override
+                public void onStartAsync(AsyncEvent event) {
+                }
+            });
+        } else {
+            record(request, response.getStatus(), start);
+        }
+    }
+
+    private void record(HttpServletRequest request, int status, long start) {
+        long elapsed = System.nanoTime() - start;
+        this.metrics.timer("http_server_requests_seconds",
+                "method", request.getMethod(),
+                "status", Integer.toString(status),
+                "uri", uri(request, status)).record(elapsed);
+    }
+
+    /**
+     * Returns the URI template of the handler that served the request, so
+     * that every message id doesn't get its own time series.
+     */
+    private static String uri(HttpServletRequest request, int status) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        if (pattern != null) {
+            return pattern.toString();
+        }
+        if (status == 404) {
+            return "NOT_FOUND";
+        }
+        return "UNKNOWN";
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+import org.springframework.data.repository.core.support.RepositoryMethodInvocationListener;
+import org.springframework.stereotype.Component;
+
+import com.example.repository.ReplicaRoutingDataSource;
+import com.example.repository.ShardRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+/**
+ * Hooks the infrastructure beans into the {@link MetricsRegistry} as they are
+ * created:
+ *
+ * - every Spring Data repository method call is timed as
+ *   "spring_data_repository_invocations_seconds", tagged with the repository,
+ *   the method and whether it succeeded. This is the time spent in
+ *   Hibernate and the database.
+ * - the Hikari pool reports its connection counts as "hikaricp_connections*"
+ *   gauges, and times connection checkouts and usage. So do the pools of
+ *   the shards and replicas, and each replica reports whether it is up as
+ *   the "datasource_replica_up" gauge.
+ *
+ * The registry is looked up lazily because post-processors are created before
+ * regular beans.
+ */
+@Component
+public class MetricsBeanPostProcessor implements BeanPostProcessor {
+    ObjectProvider<MetricsRegistry> metrics;
+
+    // CONSTRUCTORS //
+    public MetricsBeanPostProcessor(ObjectProvider<MetricsRegistry> metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) throws BeansException {
+        // The repository is built when the factory bean initializes, so the
+        // listener has to be added before that
+        if (bean instanceof RepositoryFactoryBeanSupport) {
+            RepositoryMethodInvocationListener listener = invocation -> this.metrics.getObject()
+                    .timer("spring_data_repository_invocations_seconds",
+                            "method", invocation.getMethod().getName(),
+                            "repository", invocation.getRepositoryInterface().getSimpleName(),
+                            "state", invocation.getResult().getState().name())
+                    .record(invocation.getDuration(TimeUnit.NANOSECONDS));
+            ((RepositoryFactoryBeanSupport<?, ?, ?>) bean)
+                    .addRepositoryFactoryCustomizer(factory -> factory.addInvocationListener(listener));
+        }
+        return bean;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+        // The pool starts on the first getConnection(), after this
+        if (bean instanceof HikariDataSource) {
+            track((HikariDataSource) bean);
+        } else if (bean instanceof ShardRoutingDataSource) {
+            ShardRoutingDataSource shards = (ShardRoutingDataSource) bean;
+            for (int shard = 0; shard < shards.getShardCount(); shard++) {
+                if (shards.getShard(shard) instanceof HikariDataSource) {
+                    track((HikariDataSource) shards.getShard(shard));
+                }
+            }
+        } else if (bean instanceof ReplicaRoutingDataSource) {
+            ReplicaRoutingDataSource replicas = (ReplicaRoutingDataSource) bean;
+            if (replicas.getPrimary() instanceof HikariDataSource) {
+                track((HikariDataSource) replicas.getPrimary());
+            }
+            for (int replica = 0; replica < replicas.getReplicaCount(); replica++) {
+                if (replicas.getReplica(replica) instanceof HikariDataSource) {
+                    track((HikariDataSource) replicas.getReplica(replica));
+                }
+                int index = replica;
+                this.metrics.getObject().gauge("datasource_replica_up", () -> replicas.isReplicaUp(index) ? 1 : 0,
+                        "replica", String.valueOf(replica + 1));
+            }
+        }
+        return bean;
+    }
+
+    private void track(HikariDataSource dataSource) {
+        if (dataSource.getMetricsTrackerFactory() == null && dataSource.getMetricRegistry() == null) {
+            dataSource.setMetricsTrackerFactory(this::createTracker);
+        }
+    }
+
+    private IMetricsTracker createTracker(String pool, PoolStats stats) {
+        MetricsRegistry registry = this.metrics.getObject();
+        registry.gauge("hikaricp_connections", stats::getTotalConnections, "pool", pool);
+        registry.gauge("hikaricp_connections_active", stats::getActiveConnections, "pool", pool);
+        registry.gauge("hikaricp_connections_idle", stats::getIdleConnections, "pool", pool);
+        registry.gauge("hikaricp_connections_pending", stats::getPendingThreads, "pool", pool);
+        registry.gauge("hikaricp_connections_max", stats::getMaxConnections, "pool", pool);
+        registry.gauge("hikaricp_connections_min", stats::getMinConnections, "pool", pool);
+        Timer acquire = registry.timer("hikaricp_connections_acquire_seconds", "pool", pool);
+        Timer usage = registry.timer("hikaricp_connections_usage_seconds", "pool", pool);
+        LongAdder timeouts = registry.counter("hikaricp_connections_timeout_total", "pool", pool);
+        return new IMetricsTracker() {
+            @Override
+            public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+                acquire.record(elapsedAcquiredNanos);
+            }
+
+            @Override
+            public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+                usage.record(TimeUnit.MILLISECONDS.toNanos(elapsedBorrowedMillis));
+            }
+
+            @Override
+            public void recordConnectionTimeout() {
+                timeouts.increment();
+            }
+        };
+    }
+}
@@ -0,0 +1,216 @@
+package com.example.metrics;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * This is the in-process registry of the application's timers, counters and
+ * gauges, rendered in the Prometheus text exposition format by
+ * {@link #scrape()}. Metric names and tags follow Micrometer's conventions
+ * ("http_server_requests_seconds", "hikaricp_connections_active", ...) so
+ * dashboards keep working if the app moves to Actuator later.
+ *
+ * Meters are identified by their name and tags, given as alternating
+ * key/value pairs. Callers should always pass the tag keys of a metric in
+ * the same order.
+ */
+@Component
+public class MetricsRegistry {
+    private final Map<MeterId, Timer> timers = new ConcurrentHashMap<MeterId, Timer>();
+    private final Map<MeterId, LongAdder> counters = new ConcurrentHashMap<MeterId, LongAdder>();
+    private final Map<MeterId, DoubleSupplier> gauges = new ConcurrentHashMap<MeterId, DoubleSupplier>();
+
+    /**
+     * Returns the timer with the given name and tags, creating it on first
+     * use. Timer names should end in "_seconds".
+     * @param name
+     * @param tags	alternating tag keys and values
+     * @return	timer
+     */
+    public Timer timer(String name, String... tags) {
+        MeterId id = new MeterId(name, tags);
+        Timer timer = this.timers.get(id);
+        if (timer == null) {
+            timer = this.timers.computeIfAbsent(id, key -> new Timer());
+        }
+        return timer;
+    }
+
+    /**
+     * Returns the counter with the given name and tags, creating it on first
+     * use. Counter names should end in "_total".
+     * @param name
+     * @param tags	alternating tag keys and values
+     * @return	counter
+     */
+    public LongAdder counter(String name, String... tags) {
+        MeterId id = new MeterId(name, tags);
+        LongAdder counter = this.counters.get(id);
+        if (counter == null) {
+            counter = this.counters.computeIfAbsent(id, key -> new LongAdder());
+        }
+        return counter;
+    }
+
+    /**
+     * Registers a gauge whose value is read from the supplier on every
+     * scrape, replacing any gauge with the same name and tags.
+     * @param name
+     * @param value	supplier of the current value
+     * @param tags	alternating tag keys and values
+     */
+    public void gauge(String name, DoubleSupplier value, String... tags) {
+        this.gauges.put(new MeterId(name, tags), value);
+    }
+
+    /**
+     * @return	every meter in the Prometheus text exposition format (0.0.4)
+     */
+    public String scrape() {
+        StringBuilder out = new StringBuilder();
+        Map<String, Map<String, Timer>> timersByName = byName(this.timers);
+        for (Map.Entry<String, Map<String, Timer>> family : timersByName.entrySet()) {
+            String name = family.getKey();
+            out.append("# TYPE ").append(name).append(" histogram\n");
+            for (Map.Entry<String, Timer> meter : family.getValue().entrySet()) {
+                writeHistogram(out, name, meter.getKey(), meter.getValue());
+            }
+        }
+        for (Map.Entry<String, Map<String, Timer>> family : timersByName.entrySet()) {
+            String name = family.getKey() + "_max";
+            out.append("# TYPE ").append(name).append(" gauge\n");
+            for (Map.Entry<String, Timer> meter : family.getValue().entrySet()) {
+                writeSample(out, name, meter.getKey(), seconds(meter.getValue().maxNanos()));
+            }
+        }
+        for (Map.Entry<String, Map<String, LongAdder>> family : byName(this.counters).entrySet()) {
+            out.append("# TYPE ").append(family.getKey()).append(" counter\n");
+            for (Map.Entry<String, LongAdder> meter : family.getValue().entrySet()) {
+                writeSample(out, family.getKey(), meter.getKey(), meter.getValue().sum());
+            }
+        }
+        for (Map.Entry<String, Map<String, DoubleSupplier>> family : byName(this.gauges).entrySet()) {
+            out.append("# TYPE ").append(family.getKey()).append(" gauge\n");
+            for (Map.Entry<String, DoubleSupplier> meter : family.getValue().entrySet()) {
+                writeSample(out, family.getKey(), meter.getKey(), meter.getValue().getAsDouble());
+            }
+        }
+        return out.toString();
+    }
+
+    private static void writeHistogram(StringBuilder out, String name, String labels, Timer timer) {
+        long[] counts = timer.bucketCounts();
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+            String le = i < Timer.BUCKET_BOUNDS_NANOS.length ? format(seconds(Timer.BUCKET_BOUNDS_NANOS[i])) : "+Inf";
+            String bucketLabels = labels.isEmpty()
+                    ? "{le=\"" + le + "\"}"
+                    : labels.substring(0, labels.length() - 1) + ",le=\"" + le + "\"}";
+            writeSample(out, name + "_bucket", bucketLabels, cumulative);
+        }
+        // Derived from the buckets so that _count always equals the +Inf bucket
+        writeSample(out, name + "_count", labels, cumulative);
+        writeSample(out, name + "_sum", labels, seconds(timer.totalNanos()));
+    }
+
+    private static void writeSample(StringBuilder out, String name, String labels, double value) {
+        out.append(name).append(labels).append(' ').append(format(value)).append('\n');
+    }
+
+    private static String format(double value) {
+        if (Double.isNaN(value)) {
+            return "NaN";
+        }
+        if (value == (long) value) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+
+    private static double seconds(long nanos) {
+        return (double) nanos / TimeUnit.SECONDS.toNanos(1);
+    }
+
+    /**
+     * Groups meters by name, each group keyed by its rendered labels, both in
+     * sorted order so scrapes are stable.
+     */
+    private static <M> Map<String, Map<String, M>> byName(Map<MeterId, M> meters) {
+        Map<String, Map<String, M>> families = new TreeMap<String, Map<String, M>>();
+        for (Map.Entry<MeterId, M> meter : meters.entrySet()) {
+            families.computeIfAbsent(meter.getKey().name, name -> new TreeMap<String, M>())
+                    .put(meter.getKey().labels(), meter.getValue());
+        }
+        return families;
+    }
+
+    private static final class MeterId {
+        final String name;
+        final String[] tags;
+        final int hash;
+
+        MeterId(String name, String[] tags) {
+            if (tags.length % 2 != 0) {
+                throw new IllegalArgumentException("Tags must be key/value pairs: " + Arrays.toString(tags));
+            }
+            this.name = name;
+            this.tags = tags;
+            this.hash = 31 * name.hashCode() + Arrays.hashCode(tags);
+        }
+
+        /**
+         * @return	tags in Prometheus label syntax, e.g. {method="GET"}, or an
+         *			empty string if there are none
+         */
+        String labels() {
+            if (this.tags.length == 0) {
+                return "";
+            }
+            StringBuilder labels = new StringBuilder("{");
+            for (int i = 0; i < this.tags.length; i += 2) {
+                if (i > 0) {
+                    labels.append(',');
+                }
+                labels.append(this.tags[i]).append("=\"");
+                String value = this.tags[i + 1] == null ? "" : this.tags[i + 1];
+                for (int c = 0; c < value.length(); c++) {
+                    char ch = value.charAt(c);
+                    if (ch == '\\' || ch == '"') {
+                        labels.append('\\').append(ch);
+                    } else if (ch == '\n') {
+                        labels.append("\\n");
+                    } else {
+                        labels.append(ch);
+                    }
+                }
+                labels.append('"');
+            }
+            return labels.append('}').toString();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof MeterId)) {
+                return false;
+            }
+            MeterId other = (MeterId) obj;
+            return this.hash == other.hash && this.name.equals(other.name) && Arrays.equals(this.tags, other.tags);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+    }
+}
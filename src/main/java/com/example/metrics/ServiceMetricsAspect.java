@@ -0,0 +1,68 @@
+package com.example.metrics;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+/**
+ * Times every public method of the services as "service_method_seconds",
+ * tagged with the status of the ResponseEntity it returned, so the 400, 401
+ * and 409 branches are counted separately from the successful ones.
+ *
+ * It is ordered just outside the transaction interceptor, so the time
+ * includes validation, the repository calls and the commit.
+ */
+@Aspect
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE - 1)
+public class ServiceMetricsAspect {
+    MetricsRegistry metrics;
+
+    // CONSTRUCTORS //
+    @Autowired
+    public ServiceMetricsAspect(MetricsRegistry metrics) {
+        this.metrics = metrics;
+    }
+
+    @Around("execution(public * com.example.service.*Service.*(..))")
+    public Object time(ProceedingJoinPoint joinPoint) throws Throwable {
+        long start = System.nanoTime();
+        Object result;
+        try {
+            result = joinPoint.proceed();
+        } catch (Throwable e) {
+            record(joinPoint, start, null, e);
+            throw e;
+        }
+        if (result instanceof CompletionStage) { // Async calls are timed until they complete
+            ((CompletionStage<?>) result).whenComplete((value, e) -> record(joinPoint, start, value, e));
+        } else {
+            record(joinPoint, start, result, null);
+        }
+        return result;
+    }
+
+    private void record(ProceedingJoinPoint joinPoint, long start, Object result, Throwable exception) {
+        long elapsed = System.nanoTime() - start;
+        if (exception instanceof CompletionException && exception.getCause() != null) {
+            exception = exception.getCause();
+        }
+        String status = "none";
+        if (result instanceof ResponseEntity) {
+            status = Integer.toString(((ResponseEntity<?>) result).getStatusCodeValue());
+        }
+        this.metrics.timer("service_method_seconds",
+                "class", joinPoint.getSignature().getDeclaringType().getSimpleName(),
+                "exception", exception == null ? "none" : exception.getClass().getSimpleName(),
+                "method", joinPoint.getSignature().getName(),
+                "status", status).record(elapsed);
+    }
+}
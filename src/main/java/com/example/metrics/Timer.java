@@ -0,0 +1,79 @@
+package com.example.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This is a latency histogram with fixed bucket bounds, exported in
+ * Prometheus "histogram" format (plus a "_max" gauge) by the
+ * {@link MetricsRegistry}. Recording is lock-free, so timers can sit on every
+ * request path.
+ */
+public final class Timer {
+    /**
+     * Upper bounds of the buckets in nanoseconds, from 1ms up to 10s. Slower
+     * recordings land in the implicit "+Inf" bucket.
+     */
+    static final long[] BUCKET_BOUNDS_NANOS = {
+            millis(1), millis(2.5), millis(5), millis(10), millis(25), millis(50), millis(100),
+            millis(250), millis(500), millis(1000), millis(2500), millis(5000), millis(10000)
+    };
+
+    private final LongAdder[] buckets = new LongAdder[BUCKET_BOUNDS_NANOS.length + 1];
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    Timer() {
+        for (int i = 0; i < this.buckets.length; i++) {
+            this.buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records one event that took the given time.
+     * @param nanos	duration in nanoseconds
+     */
+    public void record(long nanos) {
+        int bucket = 0;
+        while (bucket < BUCKET_BOUNDS_NANOS.length && nanos > BUCKET_BOUNDS_NANOS[bucket]) {
+            bucket++;
+        }
+        this.buckets[bucket].increment();
+        this.totalNanos.add(nanos);
+        long max;
+        while (nanos > (max = this.maxNanos.get()) && !this.maxNanos.compareAndSet(max, nanos)) {
+            // lost a race with another recording, retry against the new max
+        }
+    }
+
+    /**
+     * @return	number of events per bucket, not cumulative; the last entry is
+     *			the "+Inf" bucket
+     */
+    long[] bucketCounts() {
+        long[] counts = new long[this.buckets.length];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = this.buckets[i].sum();
+        }
+        return counts;
+    }
+
+    /**
+     * @return	total recorded time in nanoseconds
+     */
+    long totalNanos() {
+        return this.totalNanos.sum();
+    }
+
+    /**
+     * @return	longest recorded time in nanoseconds
+     */
+    long maxNanos() {
+        return this.maxNanos.get();
+    }
+
+    private static long millis(double millis) {
+        return (long) (millis * TimeUnit.MILLISECONDS.toNanos(1));
+    }
+}
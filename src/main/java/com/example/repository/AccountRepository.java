@@ -2,8 +2,19 @@ package com.example.repository;
 
 import com.example.entity.Account;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+import javax.persistence.QueryHint;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 /** 
  * This is a data access repository that manages the interactions Java objects
@@ -13,29 +24,76 @@ import org.springframework.stereotype.Repository;
  * account_id   int             Primary key, and unique identifiers for
  *                              accounts
  * username     varchar(255)	Name for account, is unique 
- * password     varchar(255)	Login for account 
+ * password     varchar(255)	Salted hash of the account's password (see
+ *                              PasswordHasher) 
  */
 @Repository
 public interface AccountRepository extends JpaRepository<Account, Long>{
     /** 
-     * Returns account with the specified ID. 
+     * Returns account with the specified ID. Cached in the
+     * "account-queries" region until an account is written. 
      * @param accountId 
      * @return  account with the specified ID 
      */ 
+     @QueryHints({@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_CACHEABLE, value = "true"),
+             @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_CACHE_REGION, value = "account-queries")})
      Account findByAccountId(int accountId); 
 
+    /** 
+     * Returns whether an account with the specified ID exists, without
+     * loading it. 
+     * @param accountId 
+     * @return  true if the account exists 
+     */ 
+     boolean existsByAccountId(int accountId); 
+
      /** 
-      * Returns account with the specified username. 
+      * Returns account with the specified username. Cached in the
+      * "account-queries" region until an account is written. 
       * @param username 
       * @return  account with the specified username 
       */ 
+      @QueryHints({@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_CACHEABLE, value = "true"),
+              @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_CACHE_REGION, value = "account-queries")})
       Account findByUsername(String username); 
 
-     /** 
-      * Returns account with the specified username and password. 
-      * @param username 
-      * @param password 
-      * @return  account with the specified username and password 
-      */ 
-      Account findByUsernameAndPassword(String username, String password);
+     /**
+      * Replaces an account's stored password hash, unless it was changed
+      * since "oldPassword" was read.
+      * @param accountId
+      * @param oldPassword   stored hash the new one replaces
+      * @param newPassword   new stored hash
+      * @return  number of accounts updated (0 or 1)
+      */
+      @Modifying
+      @Transactional
+      @Query("UPDATE Account a SET a.password = :newPassword WHERE a.accountId = :accountId AND a.password = :oldPassword")
+      int updatePassword(@Param("accountId") int accountId, @Param("oldPassword") String oldPassword,
+              @Param("newPassword") String newPassword);
+
+     /**
+      * Returns which of the specified account IDs exist, in a single query.
+      * @param accountIds
+      * @return  IDs of the specified accounts that exist
+      */
+      @Query("SELECT a.accountId FROM Account a WHERE a.accountId IN :accountIds")
+      List<Integer> findExistingAccountIds(@Param("accountIds") Collection<Integer> accountIds);
+
+     /**
+      * Streams the IDs of every account. Must be called inside a transaction,
+      * and the returned stream must be closed.
+      * @return  IDs of every account
+      */
+      @Query("SELECT a.accountId FROM Account a")
+      @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "1000"))
+      Stream<Integer> streamAllAccountIds();
+
+     /**
+      * Streams the usernames of every account. Must be called inside a
+      * transaction, and the returned stream must be closed.
+      * @return  usernames of every account
+      */
+      @Query("SELECT a.username FROM Account a")
+      @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "1000"))
+      Stream<String> streamAllUsernames();
 }
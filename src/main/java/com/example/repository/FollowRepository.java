@@ -0,0 +1,128 @@
+package com.example.repository;
+
+import java.util.List;
+
+import javax.persistence.QueryHint;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.entity.Follow;
+
+/** 
+ * This is a data access repository that manages the interactions Java objects
+ * of the class "Follow" and the SQL database table "follow". 
+ *  
+ * The database table "follow" has the columns: 
+ * followerId   int     Foreign key to "account" table, ID of the following
+ *                      account 
+ * followeeId   int     Foreign key to "account" table, ID of the followed
+ *                      account 
+ * The primary key is (followerId, followeeId), and the "follow_followee_idx"
+ * index serves lookups by followee. 
+ *  
+ * The table "follower_count" (accountId, followers) holds the number of
+ * followers of each followed account, kept by FollowService. Native writes
+ * name the tables they touch, so Hibernate doesn't evict every second-level
+ * cache region after them. 
+ */
+@Repository
+public interface FollowRepository extends JpaRepository<Follow, Follow.Key> {
+    /**
+     * Records that an account follows another, unless it already does.
+     * @param followerId
+     * @param followeeId
+     * @return  number of follows created (0 if it already existed, else 1)
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO follow (followerId, followeeId) SELECT :followerId, :followeeId"
+            + " WHERE NOT EXISTS (SELECT 1 FROM follow WHERE followerId = :followerId AND followeeId = :followeeId)",
+            nativeQuery = true)
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_NATIVE_SPACES, value = "follow"))
+    int follow(@Param("followerId") int followerId, @Param("followeeId") int followeeId);
+
+    /**
+     * Creates the follower count of an account, at 0, unless it exists.
+     * Concurrent calls for the same account may fail with a unique
+     * violation, meaning it exists.
+     * @param accountId
+     * @return  number of counts created (0 if it already existed, else 1)
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO follower_count (accountId, followers) SELECT :accountId, 0"
+            + " WHERE NOT EXISTS (SELECT 1 FROM follower_count WHERE accountId = :accountId)",
+            nativeQuery = true)
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_NATIVE_SPACES, value = "follower_count"))
+    int createFollowerCount(@Param("accountId") int accountId);
+
+    /**
+     * Adds to the follower count of an account, which must exist (see
+     * {@link #createFollowerCount}).
+     * @param accountId
+     * @param delta number of followers gained (negative if lost)
+     * @return  number of counts updated (0 if it doesn't exist, else 1)
+     */
+    @Modifying
+    @Query(value = "UPDATE follower_count SET followers = followers + :delta WHERE accountId = :accountId",
+            nativeQuery = true)
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_NATIVE_SPACES, value = "follower_count"))
+    int addFollowers(@Param("accountId") int accountId, @Param("delta") int delta);
+
+    /**
+     * Returns the number of followers of an account.
+     * @param accountId
+     * @return  number of followers, or null if the account was never followed
+     */
+    @Query(value = "SELECT followers FROM follower_count WHERE accountId = :accountId", nativeQuery = true)
+    Integer findFollowerCount(@Param("accountId") int accountId);
+
+    /**
+     * Removes a follow relationship.
+     * @param followerId
+     * @param followeeId
+     * @return  number of follows removed (0 if it didn't exist, else 1)
+     */
+    @Modifying
+    @Query("DELETE FROM Follow f WHERE f.followerId = :followerId AND f.followeeId = :followeeId")
+    int unfollow(@Param("followerId") int followerId, @Param("followeeId") int followeeId);
+
+    /**
+     * Returns the IDs of the accounts the specified account follows, in
+     * ascending order.
+     * @param followerId
+     * @return  IDs of the followed accounts
+     */
+    @Query("SELECT f.followeeId FROM Follow f WHERE f.followerId = :followerId ORDER BY f.followeeId")
+    List<Integer> findFolloweeIds(@Param("followerId") int followerId);
+
+    /**
+     * Returns the IDs of (a page of) the accounts following the specified
+     * account, in no particular order.
+     * @param followeeId
+     * @param pageable  maximum number of followers to return
+     * @return  IDs of the following accounts
+     */
+    @Query("SELECT f.followerId FROM Follow f WHERE f.followeeId = :followeeId")
+    List<Integer> findFollowerIds(@Param("followeeId") int followeeId, Pageable pageable);
+
+    /**
+     * Returns which of the accounts followed by the specified account have
+     * more than "threshold" followers, from their follower counts: one
+     * primary key lookup per followed account.
+     * @param followerId
+     * @param threshold
+     * @return  IDs of the followed accounts over the threshold
+     */
+    @Query(value = "SELECT c.accountId FROM follow f JOIN follower_count c ON c.accountId = f.followeeId"
+            + " WHERE f.followerId = :followerId AND c.followers > :threshold", nativeQuery = true)
+    List<Integer> findFolloweesWithMoreFollowersThan(@Param("followerId") int followerId,
+            @Param("threshold") long threshold);
+}
@@ -0,0 +1,94 @@
+package com.example.repository;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import org.hibernate.StatelessSession;
+import org.hibernate.cache.spi.access.EntityDataAccess;
+import org.hibernate.cache.spi.access.SoftLock;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Tells Hibernate about rows written with plain JDBC, which it can't see:
+ * the query cache would otherwise keep serving results from before the
+ * write. Inserts (or rows moved between shards unchanged) need nothing more;
+ * updates and deletes of existing rows also lock the rows' entries in the
+ * entity region, which a bulk JPQL statement can't do: Hibernate evicts the
+ * whole region after one.
+ */
+public final class JdbcWrites {
+    private JdbcWrites() {
+    }
+
+    /**
+     * Locks the entity's entry in its second-level cache region before the
+     * row is updated or deleted with plain JDBC, and unlocks it once the
+     * current transaction has completed (committed or not). While it is
+     * locked, and afterwards for sessions that began before the unlock, no
+     * load can cache the row again, so the region never keeps the old row.
+     * Other entries of the region are left alone.
+     * @param session	session whose transaction writes the row
+     * @param entityClass
+     * @param id	ID of the row being written
+     */
+    public static void lockEntity(SharedSessionContractImplementor session, Class<?> entityClass, Object id) {
+        SessionFactoryImplementor sessionFactory = session.getFactory();
+        EntityPersister persister = sessionFactory.getMetamodel().entityPersister(entityClass);
+        EntityDataAccess access = persister.getCacheAccessStrategy();
+        if (access == null) {
+            return;
+        }
+        Object key = access.generateCacheKey(id, persister, sessionFactory, session.getTenantIdentifier());
+        SoftLock lock = access.lockItem(session, key, null);
+        Runnable unlock = () -> {
+            try (StatelessSession unlocking = sessionFactory.openStatelessSession()) {
+                access.unlockItem((SharedSessionContractImplementor) unlocking, key, lock);
+            }
+        };
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            access.remove(session, key);
+            unlock.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                unlock.run();
+            }
+        });
+    }
+
+    /**
+     * Invalidates the cached query results that read the entity's tables,
+     * once the current transaction has committed (immediately outside of a
+     * transaction), so no query re-caches the rows from before the commit.
+     * @param sessionFactory
+     * @param entityClass	entity whose table was written
+     */
+    public static void invalidateQueries(SessionFactoryImplementor sessionFactory, Class<?> entityClass) {
+        if (!sessionFactory.getSessionFactoryOptions().isQueryCacheEnabled()) {
+            return;
+        }
+        Serializable[] querySpaces = sessionFactory.getMetamodel().entityPersister(entityClass).getQuerySpaces();
+        String[] spaces = Arrays.copyOf(querySpaces, querySpaces.length, String[].class);
+        Runnable invalidate = () -> {
+            try (StatelessSession session = sessionFactory.openStatelessSession()) {
+                sessionFactory.getCache().getTimestampsCache().invalidate(spaces, (SharedSessionContractImplementor) session);
+            }
+        };
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            invalidate.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                invalidate.run();
+            }
+        });
+    }
+}
@@ -4,7 +4,13 @@ import com.example.entity.Message;
 
 import java.util.List;
 
+import javax.persistence.QueryHint;
+
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 /** 
@@ -18,27 +24,114 @@ import org.springframework.stereotype.Repository;
  *						                of account who posted message 
  * message_text         varchar(255)    Text of message 
  * time_posted_epoch	bigint		    Time message was posted 
+ *  
+ * Queries selecting "new Message(...)" are projections: they return plain,
+ * unmanaged Message objects, which the persistence context doesn't track
+ * (no entity entry, no snapshot for dirty checking). They are used where
+ * whole lists of messages are only read and serialized. 
  */
 @Repository
-public interface MessageRepository extends JpaRepository<Message, Long> {
+public interface MessageRepository extends JpaRepository<Message, Long>, MessageRepositoryCustom, MessageStore {
     /**
-     * Returns the message with the specified ID.
-     * @param messageId
-     * @return  message with the specified ID
+     * Returns a list of messages by the specified account, ordered by ID.
+     * Backed by the "message_posted_by_idx" index. The IDs are kept in the
+     * "message-queries" query cache region until a message is written, and
+     * the messages themselves come from the "message" region. They are
+     * loaded read-only, so no snapshot is kept for dirty checking.
+     * @param postedBy
+     * @return  list of messages by the specified account
      */
-    Message findByMessageId(int messageId);
+    @Query("SELECT m FROM Message m WHERE m.postedBy = :postedBy ORDER BY m.messageId")
+    @QueryHints({@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_CACHE_REGION, value = "message-queries"),
+            @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_READONLY, value = "true")})
+    List<Message> findAllByPostedBy(@Param("postedBy") int postedBy);
 
     /**
-     * Returns a list of messages by the specified account.
+     * Returns every message, ordered by ID, as a projection.
+     * @return  list of all messages
+     */
+    @Query("SELECT new com.example.entity.Message(m.messageId, m.postedBy, m.messageText, m.timePostedEpoch)"
+            + " FROM Message m ORDER BY m.messageId")
+    List<Message> findAllMessages();
+
+    /**
+     * Returns the IDs of the newest messages by the specified account with an
+     * ID less than "before", newest first. Backed by the
+     * "message_posted_by_idx" index.
      * @param postedBy
-     * @return  list of messages by the specified account
+     * @param before    exclusive upper bound of the IDs
+     * @param pageable  maximum number of IDs to return
+     * @return  IDs of the newest messages before "before"
      */
-    List<Message> findAllByPostedBy(int postedBy);
+    @Query("SELECT m.messageId FROM Message m WHERE m.postedBy = :postedBy AND m.messageId < :before"
+            + " ORDER BY m.messageId DESC")
+    List<Integer> findMessageIdsByPostedByBefore(@Param("postedBy") int postedBy, @Param("before") int before,
+            Pageable pageable);
 
     /**
-     * Deletes the message with the specified ID.
+     * Returns the poster of the specified message, without loading the
+     * message.
      * @param messageId
-     * @return  deleted message with the specified ID
+     * @return  ID of the poster, or null if the message doesn't exist
+     */
+    @Query("SELECT m.postedBy FROM Message m WHERE m.messageId = :messageId")
+    Integer findPostedByByMessageId(@Param("messageId") int messageId);
+
+    /**
+     * Returns the first page of messages, ordered by (timePostedEpoch,
+     * messageId), messages without a time first. Backed by the
+     * "message_time_id_idx" index.
+     * @param pageable  page size (the page number should always be 0)
+     * @return  first page of messages
+     */
+    @Query("SELECT m FROM Message m ORDER BY m.timePostedEpoch NULLS FIRST, m.messageId")
+    List<Message> findFirstPage(Pageable pageable);
+
+    /**
+     * Returns the page of messages that come strictly after the given
+     * (timePostedEpoch, messageId) key, ordered by that same key, messages
+     * without a time first. The leading "timePostedEpoch >= :time" range
+     * keeps the predicate usable by the "message_time_id_idx" index. A time
+     * of Long.MIN_VALUE stands for a message without a time (see
+     * MessagePage.cursorOf): the page then starts with the remaining
+     * messages without a time.
+     * @param time  timePostedEpoch of the last message of the previous page
+     * @param id    messageId of the last message of the previous page
+     * @param pageable  page size (the page number should always be 0)
+     * @return  next page of messages
+     */
+    @Query("SELECT m FROM Message m WHERE (m.timePostedEpoch IS NULL AND :time < -9223372036854775807L"
+            + " AND m.messageId > :id)"
+            + " OR (m.timePostedEpoch >= :time AND (m.timePostedEpoch > :time OR m.messageId > :id))"
+            + " ORDER BY m.timePostedEpoch NULLS FIRST, m.messageId")
+    List<Message> findPageAfter(@Param("time") long time, @Param("id") int id, Pageable pageable);
+
+    /**
+     * Returns the messages posted between two times (inclusive), ordered by
+     * (timePostedEpoch, messageId), as a projection. Range scan of the
+     * "message_time_id_idx" index.
+     * @param since earliest timePostedEpoch
+     * @param until latest timePostedEpoch
+     * @return  messages posted in the range
+     */
+    @Query("SELECT new com.example.entity.Message(m.messageId, m.postedBy, m.messageText, m.timePostedEpoch)"
+            + " FROM Message m WHERE m.timePostedEpoch BETWEEN :since AND :until"
+            + " ORDER BY m.timePostedEpoch, m.messageId")
+    List<Message> findAllPostedBetween(@Param("since") long since, @Param("until") long until);
+
+    /**
+     * Returns the messages by the specified account posted between two times
+     * (inclusive), ordered by (timePostedEpoch, messageId), as a projection.
+     * Range scan of the "message_posted_by_time_idx" index.
+     * @param postedBy
+     * @param since earliest timePostedEpoch
+     * @param until latest timePostedEpoch
+     * @return  messages by the account posted in the range
      */
-    int deleteByMessageId(int messageId);
+    @Query("SELECT new com.example.entity.Message(m.messageId, m.postedBy, m.messageText, m.timePostedEpoch)"
+            + " FROM Message m WHERE m.postedBy = :postedBy AND m.timePostedEpoch BETWEEN :since AND :until"
+            + " ORDER BY m.timePostedEpoch, m.messageId")
+    List<Message> findAllByPostedByPostedBetween(@Param("postedBy") int postedBy, @Param("since") long since,
+            @Param("until") long until);
 }
@@ -0,0 +1,91 @@
+package com.example.repository;
+
+import com.example.entity.Message;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.springframework.data.domain.Pageable;
+
+/** 
+ * This is a repository fragment for "Message" queries that can't be expressed
+ * as Spring Data derived or @Query methods. It is implemented by
+ * MessageRepositoryCustomImpl and exposed through MessageRepository. 
+ */
+public interface MessageRepositoryCustom {
+    /**
+     * Returns the message with the specified ID, from the "message" region
+     * of the second-level cache if it's there.
+     * @param messageId
+     * @return  message with the specified ID, or null if it doesn't exist
+     */
+    Message findByMessageId(int messageId);
+
+    /**
+     * Returns the messages with the specified IDs, in no particular order.
+     * IDs of messages that don't exist are ignored. Messages in the
+     * "message" region of the second-level cache are taken from there, the
+     * others read in batches.
+     * @param messageIds
+     * @return  messages with the specified IDs
+     */
+    List<Message> findAllByMessageIdIn(Collection<Integer> messageIds);
+
+    /**
+     * Updates the text of the message with the specified ID in a single
+     * UPDATE statement, without loading the message first. It is run with
+     * plain JDBC rather than as bulk JPQL, after which Hibernate would evict
+     * the whole "message" region: only this message's entry is locked (see
+     * JdbcWrites).
+     * @param messageId
+     * @param messageText
+     * @return  number of messages updated (0 if it doesn't exist, else 1)
+     */
+    int updateMessageText(int messageId, String messageText);
+
+    /**
+     * Deletes the message with the specified ID in a single DELETE
+     * statement, so concurrent deletes of the same message simply delete 0
+     * rows instead of failing. Like {@link #updateMessageText}, it only locks
+     * this message's entry of the "message" region.
+     * @param messageId
+     * @return  number of messages deleted (0 if it doesn't exist, else 1)
+     */
+    int deleteByMessageId(int messageId);
+
+    /**
+     * Streams every message, ordered by (timePostedEpoch, messageId), off a
+     * forward-only JDBC cursor. Each message is detached from the persistence
+     * context as soon as it is read, so memory use stays flat no matter how
+     * many rows are streamed.
+     *
+     * Must be called inside a transaction, and the returned stream must be
+     * closed to release the cursor.
+     * @param fetchSize number of rows the JDBC driver fetches per round trip
+     * @return  stream of all messages
+     */
+    Stream<Message> streamAll(int fetchSize);
+
+    /**
+     * Returns the IDs of the newest messages by any of the specified
+     * accounts, newest (highest ID) first. Each poster's newest messages are
+     * read off the "message_posted_by_idx" index, only those newer than the
+     * IDs already found once there are enough, so it reads at most "page
+     * size" rows per poster, however many messages they posted.
+     * @param postedBy  IDs of the posters
+     * @param pageable  maximum number of IDs to return
+     * @return  IDs of the newest messages
+     */
+    List<Integer> findLatestMessageIdsByPostedByIn(Collection<Integer> postedBy, Pageable pageable);
+
+    /**
+     * Reads up to "limit" messages with an ID greater than "afterId", ordered
+     * by ID, as unmanaged Message objects (a projection) so that walking the
+     * whole table page by page doesn't accumulate entities.
+     * @param afterId   ID of the last message of the previous page, or 0
+     * @param limit     maximum number of messages to read
+     * @return  page of messages
+     */
+    List<Message> findPageAfterId(int afterId, int limit);
+}
@@ -0,0 +1,133 @@
+package com.example.repository;
+
+import com.example.entity.Message;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.TypedQuery;
+
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.jpa.QueryHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.annotation.Transactional;
+
+/** 
+ * This is the EntityManager-based implementation of MessageRepositoryCustom. 
+ */
+public class MessageRepositoryCustomImpl implements MessageRepositoryCustom {
+    private static final String UPDATE_TEXT_SQL = "UPDATE message SET messageText = ? WHERE messageId = ?";
+    private static final String DELETE_SQL = "DELETE FROM message WHERE messageId = ?";
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    @Override
+    @Transactional(readOnly = true)
+    public Message findByMessageId(int messageId) {
+        return this.entityManager.find(Message.class, messageId);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Message> findAllByMessageIdIn(Collection<Integer> messageIds) {
+        if (messageIds.isEmpty()) {
+            return new ArrayList<Message>();
+        }
+        List<Message> messages = this.entityManager.unwrap(Session.class)
+                .byMultipleIds(Message.class)
+                .with(CacheMode.NORMAL)
+                .multiLoad(new ArrayList<Integer>(new LinkedHashSet<Integer>(messageIds)));
+        return messages.stream().filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    @Override
+    @Transactional
+    public int updateMessageText(int messageId, String messageText) {
+        return writeMessage(messageId, UPDATE_TEXT_SQL, messageText, messageId);
+    }
+
+    @Override
+    @Transactional
+    public int deleteByMessageId(int messageId) {
+        return writeMessage(messageId, DELETE_SQL, messageId);
+    }
+
+    @Override
+    public Stream<Message> streamAll(int fetchSize) {
+        return this.entityManager
+                .createQuery("SELECT m FROM Message m ORDER BY m.timePostedEpoch NULLS FIRST, m.messageId", Message.class)
+                .setHint(QueryHints.HINT_FETCH_SIZE, fetchSize)
+                .setHint(QueryHints.HINT_READONLY, true)
+                .getResultStream()
+                .peek(this.entityManager::detach);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Integer> findLatestMessageIdsByPostedByIn(Collection<Integer> postedBy, Pageable pageable) {
+        int limit = pageable.getPageSize();
+        TypedQuery<Integer> newestQuery = this.entityManager
+                .createQuery("SELECT m.messageId FROM Message m WHERE m.postedBy = :postedBy AND m.messageId > :afterId"
+                        + " ORDER BY m.messageId DESC", Integer.class)
+                .setMaxResults(limit);
+        PriorityQueue<Integer> newest = new PriorityQueue<Integer>(limit + 1);
+        for (Integer poster : postedBy) {
+            int afterId = newest.size() < limit ? Integer.MIN_VALUE : newest.peek();
+            for (int messageId : newestQuery.setParameter("postedBy", poster).setParameter("afterId", afterId)
+                    .getResultList()) {
+                newest.add(messageId);
+                if (newest.size() > limit) {
+                    newest.poll();
+                }
+            }
+        }
+        List<Integer> messageIds = new ArrayList<Integer>(newest);
+        messageIds.sort(Comparator.reverseOrder());
+        return messageIds;
+    }
+
+    /**
+     * Runs a single UPDATE or DELETE of one message on the transaction's
+     * connection, locking only that message's entry of the "message" region
+     * and invalidating the message queries (see JdbcWrites).
+     */
+    private int writeMessage(int messageId, String sql, Object... parameters) {
+        SessionImplementor session = this.entityManager.unwrap(SessionImplementor.class);
+        JdbcWrites.lockEntity(session, Message.class, messageId);
+        int written = session.doReturningWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                for (int i = 0; i < parameters.length; i++) {
+                    statement.setObject(i + 1, parameters[i]);
+                }
+                return statement.executeUpdate();
+            }
+        });
+        if (written != 0) {
+            JdbcWrites.invalidateQueries(session.getFactory(), Message.class);
+        }
+        return written;
+    }
+
+    @Override
+    public List<Message> findPageAfterId(int afterId, int limit) {
+        return this.entityManager
+                .createQuery("SELECT new com.example.entity.Message(m.messageId, m.postedBy, m.messageText, m.timePostedEpoch)"
+                        + " FROM Message m WHERE m.messageId > :afterId ORDER BY m.messageId", Message.class)
+                .setParameter("afterId", afterId)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+}
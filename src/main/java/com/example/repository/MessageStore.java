@@ -0,0 +1,89 @@
+package com.example.repository;
+
+import com.example.entity.Message;
+
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+
+/**
+ * This is the storage of "Message" objects as the services use it: the JPA
+ * MessageRepository (see there for the queries), or the
+ * ShardedMessageRepository running it on the right shards when the
+ * "message" table is sharded. Only the operations both support are here.
+ */
+public interface MessageStore extends MessageRepositoryCustom {
+    /**
+     * Stores a new message, with a new ID.
+     * @param message
+     * @return  the stored message
+     */
+    <S extends Message> S save(S message);
+
+    /**
+     * Stores new messages, with new IDs, in JDBC batches.
+     * @param messages
+     * @return  the stored messages
+     */
+    <S extends Message> List<S> saveAll(Iterable<S> messages);
+
+    /**
+     * @param postedBy
+     * @return  list of messages by the specified account, ordered by ID
+     */
+    List<Message> findAllByPostedBy(int postedBy);
+
+    /**
+     * @return  list of all messages, ordered by ID
+     */
+    List<Message> findAllMessages();
+
+    /**
+     * @param postedBy
+     * @param before    exclusive upper bound of the IDs
+     * @param pageable  maximum number of IDs to return
+     * @return  IDs of the newest messages by the account before "before",
+     *          newest first
+     */
+    List<Integer> findMessageIdsByPostedByBefore(int postedBy, int before, Pageable pageable);
+
+    /**
+     * @param messageId
+     * @return  ID of the poster, or null if the message doesn't exist
+     */
+    Integer findPostedByByMessageId(int messageId);
+
+    /**
+     * @param pageable  page size (the page number should always be 0)
+     * @return  first page of messages, ordered by (timePostedEpoch,
+     *          messageId), messages without a time first
+     */
+    List<Message> findFirstPage(Pageable pageable);
+
+    /**
+     * @param time  timePostedEpoch of the last message of the previous page,
+     *              or Long.MIN_VALUE if it had none
+     * @param id    messageId of the last message of the previous page
+     * @param pageable  page size (the page number should always be 0)
+     * @return  next page of messages, ordered by (timePostedEpoch,
+     *          messageId), messages without a time first
+     */
+    List<Message> findPageAfter(long time, int id, Pageable pageable);
+
+    /**
+     * @param since earliest timePostedEpoch
+     * @param until latest timePostedEpoch
+     * @return  messages posted in the range, ordered by (timePostedEpoch,
+     *          messageId)
+     */
+    List<Message> findAllPostedBetween(long since, long until);
+
+    /**
+     * @param postedBy
+     * @param since earliest timePostedEpoch
+     * @param until latest timePostedEpoch
+     * @return  messages by the account posted in the range, ordered by
+     *          (timePostedEpoch, messageId)
+     */
+    List<Message> findAllByPostedByPostedBetween(int postedBy, long since, long until);
+}
@@ -0,0 +1,143 @@
+package com.example.repository;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Reads a file-backed H2 database once the application is ready, so that
+ * its pages are in H2's page cache (CACHE_SIZE) and the OS file cache before
+ * the first requests need them, instead of each first lookup paying for
+ * reads from disk.
+ *
+ * Every index is scanned first, as point lookups and timelines go through
+ * them, then the rows of every table. Each scan is a COUNT(*) pinned to one
+ * index with H2's USE INDEX, so no rows are sent back. Warming stops once
+ * its time budget is spent; past the size of the page cache it would only
+ * evict what it read first.
+ */
+public class PageCacheWarmer {
+    private static final Logger log = LoggerFactory.getLogger(PageCacheWarmer.class);
+
+    private final DataSource dataSource;
+    private final long budgetMs;
+    private volatile long entriesRead;
+
+    /**
+     * @param dataSource	DataSource of the H2 database
+     * @param budgetMs	time after which warming stops
+     */
+    public PageCacheWarmer(DataSource dataSource, long budgetMs) {
+        this.dataSource = dataSource;
+        this.budgetMs = budgetMs;
+    }
+
+    /**
+     * @return	index entries and rows read by the last warm-up
+     */
+    public long getEntriesRead() {
+        return this.entriesRead;
+    }
+
+    /**
+     * Scans every index and table, until the time budget is spent.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warm() {
+        long start = System.nanoTime();
+        try {
+            this.entriesRead = new JdbcTemplate(this.dataSource).execute((ConnectionCallback<Long>) this::warm);
+            log.info("Warmed the page cache with {} index entries and rows in {} ms", this.entriesRead,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (DataAccessException e) { // Only slower first requests
+            log.warn("Failed to warm the page cache", e);
+        }
+    }
+
+    private long warm(Connection connection) throws SQLException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.budgetMs);
+        long entries = 0;
+        try (Statement statement = connection.createStatement()) {
+            for (String scan : scans(connection.getMetaData())) {
+                long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remainingMs <= 0) {
+                    log.info("Page cache warm-up budget of {} ms spent, skipping the remaining scans", this.budgetMs);
+                    break;
+                }
+                statement.setQueryTimeout((int) Math.max(1, (remainingMs + 999) / 1000));
+                try (ResultSet count = statement.executeQuery(scan)) {
+                    count.next();
+                    entries += count.getLong(1);
+                } catch (SQLTimeoutException e) {
+                    log.info("Page cache warm-up budget of {} ms spent during {}", this.budgetMs, scan);
+                    break;
+                }
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * @return	a COUNT(*) query scanning each index of the user tables, then
+     *			one scanning each of their tables
+     */
+    private static List<String> scans(DatabaseMetaData metaData) throws SQLException {
+        List<String> indexScans = new ArrayList<String>();
+        List<String> tableScans = new ArrayList<String>();
+        try (ResultSet tables = metaData.getTables(null, null, "%", new String[] {"TABLE"})) {
+            while (tables.next()) {
+                String schema = tables.getString("TABLE_SCHEM");
+                String table = tables.getString("TABLE_NAME");
+                if ("INFORMATION_SCHEMA".equals(schema)) {
+                    continue;
+                }
+                String qualifiedTable = quote(schema) + "." + quote(table);
+
+                // First column of each index, which a scan of the index can test
+                Map<String, String> indexes = new LinkedHashMap<String, String>();
+                try (ResultSet columns = metaData.getIndexInfo(null, schema, table, false, true)) {
+                    while (columns.next()) {
+                        if (columns.getShort("ORDINAL_POSITION") == 1) {
+                            indexes.put(columns.getString("INDEX_NAME"), columns.getString("COLUMN_NAME"));
+                        }
+                    }
+                }
+                for (Map.Entry<String, String> index : indexes.entrySet()) {
+                    indexScans.add("SELECT COUNT(*) FROM " + qualifiedTable + " USE INDEX (" + quote(index.getKey())
+                            + ") WHERE " + quote(index.getValue()) + " IS NOT NULL");
+                }
+
+                try (ResultSet columns = metaData.getColumns(null, schema, table, "%")) {
+                    if (columns.next()) { // An empty USE INDEX is a table scan
+                        tableScans.add("SELECT COUNT(*) FROM " + qualifiedTable + " USE INDEX () WHERE "
+                                + quote(columns.getString("COLUMN_NAME")) + " IS NOT NULL");
+                    }
+                }
+            }
+        }
+        indexScans.addAll(tableScans);
+        return indexScans;
+    }
+
+    private static String quote(String identifier) {
+        return '"' + identifier.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,219 @@
+package com.example.repository;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Supplier;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * This is the application's DataSource when read replicas are configured:
+ * connections acquired inside a read-only transaction
+ * (@Transactional(readOnly = true)) come from the replicas, in turn, and all
+ * others from the primary database.
+ *
+ * The transaction is only known to be read-only once it has begun, while JPA
+ * acquires its connection when it begins, so this must be wrapped in a
+ * LazyConnectionDataSourceProxy, which acquires it on the first statement.
+ *
+ * Replicas are checked every "health-check interval" and skipped while they
+ * are down; a replica failing to hand out a connection is marked down on the
+ * spot. When no replica is up, read-only transactions use the primary.
+ *
+ * Reads that must see the calling thread's own recent writes, which the
+ * replicas may not have applied yet, go to the primary with {@link #onPrimary}
+ * or {@link #onPrimaryUntilCompletion}.
+ */
+public class ReplicaRoutingDataSource extends AbstractDataSource implements Closeable {
+    private static final ThreadLocal<Boolean> primaryOnly = new ThreadLocal<Boolean>();
+
+    private final DataSource primary;
+    private final List<DataSource> replicas;
+    /** 1 for each replica that is up, 0 for each that is down */
+    private final AtomicIntegerArray up;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private final int validationTimeoutSeconds;
+    private final ScheduledExecutorService healthCheck;
+
+    /**
+     * @param primary	DataSource of the primary database
+     * @param replicas	DataSources of the replicas
+     * @param healthCheckIntervalMs	time between two health checks of the
+     *								replicas
+     * @param validationTimeoutSeconds	time a replica has to validate a
+     *									connection during a health check
+     */
+    public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas, long healthCheckIntervalMs,
+            int validationTimeoutSeconds) {
+        this.primary = primary;
+        this.replicas = new ArrayList<DataSource>(replicas);
+        this.up = new AtomicIntegerArray(replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            this.up.set(i, 1);
+        }
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("replica-health-");
+        threadFactory.setDaemon(true);
+        this.healthCheck = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        // Not right away, which would start the pools before their metrics
+        // are set up
+        this.healthCheck.scheduleWithFixedDelay(this::checkHealth, healthCheckIntervalMs, healthCheckIntervalMs,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return	DataSource of the primary database, bypassing the routing
+     */
+    public DataSource getPrimary() {
+        return this.primary;
+    }
+
+    /**
+     * @return	number of replicas
+     */
+    public int getReplicaCount() {
+        return this.replicas.size();
+    }
+
+    /**
+     * @param replica
+     * @return	DataSource of the replica, bypassing the routing
+     */
+    public DataSource getReplica(int replica) {
+        return this.replicas.get(replica);
+    }
+
+    /**
+     * @param replica
+     * @return	whether the replica passed its last health check and hasn't
+     *			failed since
+     */
+    public boolean isReplicaUp(int replica) {
+        return this.up.get(replica) == 1;
+    }
+
+    /**
+     * Runs an action with the connections acquired by the calling thread
+     * coming from the primary database, even in read-only transactions.
+     * @param action
+     * @return	result of the action
+     */
+    public static <T> T onPrimary(Supplier<T> action) {
+        Boolean previous = primaryOnly.get();
+        primaryOnly.set(Boolean.TRUE);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                primaryOnly.remove();
+            }
+        }
+    }
+
+    /**
+     * Has the connections acquired by the calling thread come from the
+     * primary database until the current transaction (or the scope of a
+     * method with Propagation.SUPPORTS) completes. Connections the
+     * transaction already holds are kept.
+     * @return	false if there is no transaction synchronization to scope
+     *			this to, in which case nothing changes
+     */
+    public static boolean onPrimaryUntilCompletion() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return false;
+        }
+        if (primaryOnly.get() == null) {
+            primaryOnly.set(Boolean.TRUE);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    primaryOnly.remove();
+                }
+            });
+        }
+        return true;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly() || primaryOnly.get() != null) {
+            return this.primary.getConnection();
+        }
+        int replicaCount = this.replicas.size();
+        for (int attempt = 0; attempt < replicaCount; attempt++) {
+            int replica = Math.floorMod(this.nextReplica.getAndIncrement(), replicaCount);
+            if (!isReplicaUp(replica)) {
+                continue;
+            }
+            try {
+                return this.replicas.get(replica).getConnection();
+            } catch (SQLException | RuntimeException e) { // Including a pool failing to start
+                if (this.up.compareAndSet(replica, 1, 0)) {
+                    logger.warn("Replica " + (replica + 1) + " is down, reading from the primary until it recovers", e);
+                }
+            }
+        }
+        return this.primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    /**
+     * Validates a connection of each replica, and marks it up or down
+     * accordingly.
+     */
+    void checkHealth() {
+        for (int replica = 0; replica < this.replicas.size(); replica++) {
+            boolean healthy;
+            try (Connection connection = this.replicas.get(replica).getConnection()) {
+                healthy = connection.isValid(this.validationTimeoutSeconds);
+            } catch (SQLException | RuntimeException e) {
+                healthy = false;
+            }
+            int previous = this.up.getAndSet(replica, healthy ? 1 : 0);
+            if (healthy && previous == 0) {
+                logger.info("Replica " + (replica + 1) + " is back up");
+            } else if (!healthy && previous == 1) {
+                logger.warn("Replica " + (replica + 1) + " failed its health check, reading from the primary until it recovers");
+            }
+        }
+    }
+
+    /**
+     * Stops the health checks and closes the connection pools of the primary
+     * database and of every replica.
+     */
+    @Override
+    public void close() {
+        this.healthCheck.shutdownNow();
+        List<DataSource> dataSources = new ArrayList<DataSource>(this.replicas);
+        dataSources.add(0, this.primary);
+        for (DataSource dataSource : dataSources) {
+            if (dataSource instanceof Closeable) {
+                try {
+                    ((Closeable) dataSource).close();
+                } catch (IOException e) {
+                    logger.warn("Failed to close DataSource", e);
+                }
+            }
+        }
+    }
+}
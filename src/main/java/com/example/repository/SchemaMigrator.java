@@ -0,0 +1,118 @@
+package com.example.repository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.core.io.support.ResourcePatternResolver;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+/**
+ * Brings a durable database's schema up to date, in the manner of Flyway:
+ * the scripts "db/migration/V{version}__{description}.sql" on the classpath
+ * run once each, in version order, and are recorded in the "schema_version"
+ * table. A new database gets every script; an existing one only the scripts
+ * added since it was last migrated.
+ *
+ * Scripts are never edited once released; a schema change is a new script
+ * with the next version. H2 commits each DDL statement on its own, so a
+ * script that fails halfway is not rolled back: write them with
+ * "IF NOT EXISTS" so they can simply run again once fixed.
+ */
+public class SchemaMigrator {
+    public static final String LOCATION = "classpath*:db/migration/V*__*.sql";
+
+    private static final Logger log = LoggerFactory.getLogger(SchemaMigrator.class);
+    private static final Pattern SCRIPT_NAME = Pattern.compile("V(\\d+)__(.+)\\.sql");
+
+    private final DataSource dataSource;
+    private final ResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
+
+    /**
+     * @param dataSource	DataSource of the database to migrate
+     */
+    public SchemaMigrator(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Runs the scripts the database hasn't seen yet.
+     * @return	number of scripts run
+     * @throws IllegalStateException	if the database was migrated by a newer
+     *									build, which has scripts this one lacks
+     */
+    public int migrate() {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(this.dataSource);
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS schema_version ("
+                + "version INT PRIMARY KEY, "
+                + "description VARCHAR(255) NOT NULL, "
+                + "installed_on TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL)");
+        Set<Integer> applied = new HashSet<Integer>(
+                jdbcTemplate.queryForList("SELECT version FROM schema_version", Integer.class));
+
+        Map<Integer, Resource> scripts = findScripts();
+        for (int version : applied) {
+            if (!scripts.containsKey(version)) {
+                throw new IllegalStateException("Database schema version " + version
+                        + " is unknown to this build, which only has migrations " + scripts.keySet());
+            }
+        }
+
+        int run = 0;
+        for (Map.Entry<Integer, Resource> script : scripts.entrySet()) {
+            int version = script.getKey();
+            if (applied.contains(version)) {
+                continue;
+            }
+            String description = describe(script.getValue());
+            log.info("Migrating database schema to version {} ({})", version, description);
+            new ResourceDatabasePopulator(script.getValue()).execute(this.dataSource);
+            jdbcTemplate.update("INSERT INTO schema_version (version, description) VALUES (?, ?)", version, description);
+            run++;
+        }
+        return run;
+    }
+
+    /**
+     * @return	the migration scripts by version
+     */
+    private Map<Integer, Resource> findScripts() {
+        Resource[] resources;
+        try {
+            resources = this.resolver.getResources(LOCATION);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Map<Integer, Resource> scripts = new TreeMap<Integer, Resource>();
+        for (Resource resource : resources) {
+            Matcher name = SCRIPT_NAME.matcher(resource.getFilename());
+            if (!name.matches()) {
+                continue;
+            }
+            Resource duplicate = scripts.put(Integer.valueOf(name.group(1)), resource);
+            if (duplicate != null) {
+                throw new IllegalStateException("Two migrations with version " + name.group(1) + ": "
+                        + duplicate.getFilename() + " and " + resource.getFilename());
+            }
+        }
+        return scripts;
+    }
+
+    private static String describe(Resource script) {
+        Matcher name = SCRIPT_NAME.matcher(script.getFilename());
+        name.matches();
+        return name.group(2).replace('_', ' ');
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.repository;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+/**
+ * This is the application's DataSource when the "message" table is sharded
+ * (see ShardedMessageRepository): connections come from the primary
+ * database (shard 0, which also holds every other table) unless the calling
+ * thread is inside {@link #onShard}.
+ *
+ * The shard is read when a connection is acquired, which for JPA is when a
+ * transaction begins, so code running on another shard must start its own
+ * transaction there.
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+    private static final ThreadLocal<Integer> currentShard = new ThreadLocal<Integer>();
+
+    private final List<DataSource> shards;
+
+    /**
+     * @param shards	DataSource of each shard, the primary database first
+     */
+    public ShardRoutingDataSource(List<DataSource> shards) {
+        this.shards = new ArrayList<DataSource>(shards);
+        Map<Object, Object> targets = new HashMap<Object, Object>();
+        for (int i = 1; i < shards.size(); i++) {
+            targets.put(i, shards.get(i));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(shards.get(0));
+        afterPropertiesSet();
+    }
+
+    /**
+     * @return	number of shards, including the primary database
+     */
+    public int getShardCount() {
+        return this.shards.size();
+    }
+
+    /**
+     * @param shard
+     * @return	DataSource of the shard, bypassing the routing
+     */
+    public DataSource getShard(int shard) {
+        return this.shards.get(shard);
+    }
+
+    /**
+     * Runs an action with the connections acquired by the calling thread
+     * coming from a shard.
+     * @param shard
+     * @param action
+     * @return	result of the action
+     */
+    public static <T> T onShard(int shard, Supplier<T> action) {
+        Integer previousShard = currentShard.get();
+        currentShard.set(shard);
+        try {
+            return action.get();
+        } finally {
+            if (previousShard == null) {
+                currentShard.remove();
+            } else {
+                currentShard.set(previousShard);
+            }
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        Integer shard = currentShard.get();
+        return shard == null || shard == 0 ? null : shard;
+    }
+
+    /**
+     * Closes the connection pools of every shard.
+     */
+    @Override
+    public void close() {
+        for (DataSource shard : this.shards) {
+            if (shard instanceof Closeable) {
+                try {
+                    ((Closeable) shard).close();
+                } catch (IOException e) {
+                    logger.warn("Failed to close shard DataSource", e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,615 @@
+package com.example.repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.StatelessSession;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.entity.Message;
+
+/**
+ * This is the MessageStore used when the "message" table is
+ * partitioned across "app.messages.shards.count" databases (see
+ * ShardingConfiguration): the primary database is shard 0, and each message
+ * is stored on the shard its poster hashes to. It runs the queries of the
+ * JPA MessageRepository on the shards that can hold matching messages:
+ *
+ * - Queries by poster run on that poster's shard only.
+ * - New messages get IDs encoding their shard (ID mod shard count), so
+ *   queries by message ID go to that shard first, and only look at the
+ *   others for messages stored before sharding was enabled.
+ * - Every other query runs on all shards in parallel, and the results are
+ *   merged in the order (and up to the limit) of the original query.
+ *
+ * Messages stored on the primary database before sharding was enabled are
+ * moved to their shard at startup.
+ *
+ * Shards other than the primary run their queries in their own
+ * transactions, so writes there commit independently of the caller's
+ * transaction. New messages on other shards are deleted again if a later
+ * shard of the same batch fails, or the caller's transaction rolls back, so
+ * batches are all or nothing unless that undo fails too (the shard being
+ * down, or the process dying in between): those messages are then logged
+ * and stay stored, without being in the caches and indexes until restart.
+ *
+ * Queries on several shards run on the "message-shard-" threads, at most
+ * "app.messages.shards.query-threads" of them; when they are all busy, the
+ * calling thread runs the query itself rather than wait for one.
+ */
+public class ShardedMessageRepository implements MessageStore {
+    private static final Logger log = LoggerFactory.getLogger(ShardedMessageRepository.class);
+
+    private static final String INSERT_SQL = "INSERT INTO message (messageId, postedBy, messageText, timePostedEpoch)"
+            + " VALUES (?, ?, ?, ?)";
+    private static final String DELETE_SQL = "DELETE FROM message WHERE messageId = ?";
+    private static final int REBALANCE_PAGE_SIZE = 1000;
+    private static final Comparator<Message> BY_ID = Comparator.comparing(Message::getMessageId);
+    private static final Comparator<Message> BY_TIME_AND_ID = Comparator
+            .comparing(Message::getTimePostedEpoch, Comparator.nullsFirst(Comparator.<Long>naturalOrder()))
+            .thenComparing(Message::getMessageId);
+
+    private final int shardCount;
+    private final ExecutorService executor;
+
+    MessageRepository shardRepository;
+    JdbcTemplate jdbcTemplate;
+    TransactionTemplate newTransaction;
+    TransactionTemplate newReadOnlyTransaction;
+    SessionFactoryImplementor sessionFactory;
+    IdentifierGenerator idGenerator;
+
+    // CONSTRUCTORS //
+    /**
+     * @param shardRepository	the JPA MessageRepository, run on one shard at
+     *							a time
+     * @param dataSource
+     * @param transactionManager
+     * @param entityManagerFactory
+     * @param queryThreads	maximum number of threads querying shards for
+     *						all requests together
+     */
+    public ShardedMessageRepository(MessageRepository shardRepository, ShardRoutingDataSource dataSource,
+            PlatformTransactionManager transactionManager, EntityManagerFactory entityManagerFactory, int queryThreads) {
+        this.shardCount = dataSource.getShardCount();
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("message-shard-");
+        threadFactory.setDaemon(true);
+        // No queue: a query never waits behind other requests' queries
+        this.executor = new ThreadPoolExecutor(0, Math.max(1, queryThreads), 60, TimeUnit.SECONDS,
+                new SynchronousQueue<Runnable>(), threadFactory, new ThreadPoolExecutor.CallerRunsPolicy());
+        this.shardRepository = shardRepository;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.newReadOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.newReadOnlyTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.newReadOnlyTransaction.setReadOnly(true);
+        this.sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        this.idGenerator = this.sessionFactory.getMetamodel().entityPersister(Message.class).getIdentifierGenerator();
+    }
+
+    /**
+     * Moves the messages of the primary database that belong to other shards
+     * (because they were stored before sharding was enabled, or loaded by
+     * data.sql) to their shard. Runs before the listeners warming caches and
+     * indexes from the database. A message already on its shard with the
+     * same content was copied by an interrupted run, and is only deleted
+     * from the primary; one whose ID a different message holds stops the
+     * application.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void rebalance() {
+        int moved = 0;
+        int afterId = Integer.MIN_VALUE;
+        List<Message> page;
+        do {
+            int pageAfterId = afterId;
+            page = inNewTransaction(0, true, () -> this.shardRepository.findPageAfterId(pageAfterId, REBALANCE_PAGE_SIZE));
+            Map<Integer, List<Message>> misplaced = new LinkedHashMap<Integer, List<Message>>();
+            for (Message message : page) {
+                int shard = shardOf(message.getPostedBy());
+                if (shard != 0) {
+                    misplaced.computeIfAbsent(shard, key -> new ArrayList<Message>()).add(message);
+                }
+                afterId = message.getMessageId();
+            }
+            for (Map.Entry<Integer, List<Message>> shardMessages : misplaced.entrySet()) {
+                inNewTransaction(shardMessages.getKey(), false, () -> insertMissing(shardMessages.getValue()));
+                inNewTransaction(0, false, () -> delete(shardMessages.getValue()));
+                moved += shardMessages.getValue().size();
+            }
+        } while (page.size() == REBALANCE_PAGE_SIZE);
+        if (moved > 0) {
+            log.info("Moved {} messages from the primary database to their shards", moved);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        this.executor.shutdown();
+    }
+
+    /**
+     * @param postedBy
+     * @return	shard storing the messages of the account
+     */
+    public int shardOf(Integer postedBy) {
+        if (postedBy == null) {
+            return 0;
+        }
+        // MurmurHash3 finalizer, so consecutive account IDs spread evenly
+        int hash = postedBy;
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        hash *= 0xC2B2AE35;
+        hash ^= hash >>> 16;
+        return Math.floorMod(hash, this.shardCount);
+    }
+
+    // SINGLE-SHARD QUERIES //
+    @Override
+    public <S extends Message> S save(S message) {
+        saveAll(List.of(message));
+        return message;
+    }
+
+    @Override
+    public <S extends Message> List<S> saveAll(Iterable<S> messages) {
+        List<S> saved = new ArrayList<S>();
+        Map<Integer, List<Message>> byShard = new LinkedHashMap<Integer, List<Message>>();
+        for (S message : messages) {
+            int shard = shardOf(message.getPostedBy());
+            message.setMessageId(newMessageId(message, shard));
+            byShard.computeIfAbsent(shard, key -> new ArrayList<Message>()).add(message);
+            saved.add(message);
+        }
+        Map<Integer, List<Message>> committed = new LinkedHashMap<Integer, List<Message>>();
+        try {
+            for (Map.Entry<Integer, List<Message>> shardMessages : byShard.entrySet()) {
+                onShard(shardMessages.getKey(), false, () -> insert(shardMessages.getValue()));
+                if (shardMessages.getKey() != 0) {
+                    committed.put(shardMessages.getKey(), shardMessages.getValue());
+                }
+            }
+        } catch (RuntimeException e) {
+            undoInserts(committed);
+            throw e;
+        }
+        if (!committed.isEmpty() && TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        undoInserts(committed);
+                    }
+                }
+            });
+        }
+        return saved;
+    }
+
+    @Override
+    public List<Message> findAllByPostedBy(int postedBy) {
+        return onShard(shardOf(postedBy), true, () -> this.shardRepository.findAllByPostedBy(postedBy));
+    }
+
+    @Override
+    public List<Integer> findMessageIdsByPostedByBefore(int postedBy, int before, Pageable pageable) {
+        return onShard(shardOf(postedBy), true,
+                () -> this.shardRepository.findMessageIdsByPostedByBefore(postedBy, before, pageable));
+    }
+
+    @Override
+    public List<Message> findAllByPostedByPostedBetween(int postedBy, long since, long until) {
+        return onShard(shardOf(postedBy), true,
+                () -> this.shardRepository.findAllByPostedByPostedBetween(postedBy, since, until));
+    }
+
+    // QUERIES BY MESSAGE ID //
+    @Override
+    public Message findByMessageId(int messageId) {
+        int home = shardOfMessageId(messageId);
+        Message message = onShard(home, true, () -> this.shardRepository.findByMessageId(messageId));
+        if (message != null) {
+            return message;
+        }
+        for (Message found : scatter(otherShards(home), true, shard -> this.shardRepository.findByMessageId(messageId))) {
+            if (found != null) {
+                return found;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Integer findPostedByByMessageId(int messageId) {
+        int home = shardOfMessageId(messageId);
+        Integer postedBy = onShard(home, true, () -> this.shardRepository.findPostedByByMessageId(messageId));
+        if (postedBy != null) {
+            return postedBy;
+        }
+        for (Integer found : scatter(otherShards(home), true,
+                shard -> this.shardRepository.findPostedByByMessageId(messageId))) {
+            if (found != null) {
+                return found;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public int updateMessageText(int messageId, String messageText) {
+        int home = shardOfMessageId(messageId);
+        int updated = onShard(home, false, () -> this.shardRepository.updateMessageText(messageId, messageText));
+        if (updated == 0) {
+            for (int count : scatter(otherShards(home), false,
+                    shard -> this.shardRepository.updateMessageText(messageId, messageText))) {
+                updated += count;
+            }
+        }
+        return updated;
+    }
+
+    @Override
+    public int deleteByMessageId(int messageId) {
+        int home = shardOfMessageId(messageId);
+        int deleted = onShard(home, false, () -> this.shardRepository.deleteByMessageId(messageId));
+        if (deleted == 0) {
+            for (int count : scatter(otherShards(home), false, shard -> this.shardRepository.deleteByMessageId(messageId))) {
+                deleted += count;
+            }
+        }
+        return deleted;
+    }
+
+    @Override
+    public List<Message> findAllByMessageIdIn(Collection<Integer> messageIds) {
+        Map<Integer, List<Integer>> byShard = new LinkedHashMap<Integer, List<Integer>>();
+        for (Integer messageId : messageIds) {
+            byShard.computeIfAbsent(shardOfMessageId(messageId), key -> new ArrayList<Integer>()).add(messageId);
+        }
+        List<Message> messages = new ArrayList<Message>(messageIds.size());
+        for (List<Message> found : scatter(byShard.keySet().stream().mapToInt(Integer::intValue).toArray(), true,
+                shard -> this.shardRepository.findAllByMessageIdIn(byShard.get(shard)))) {
+            messages.addAll(found);
+        }
+        if (messages.size() < messageIds.size()) { // Look for messages stored before sharding on every shard
+            Set<Integer> missingIds = new HashSet<Integer>(messageIds);
+            for (Message message : messages) {
+                missingIds.remove(message.getMessageId());
+            }
+            for (List<Message> found : scatter(allShards(), true,
+                    shard -> this.shardRepository.findAllByMessageIdIn(missingIds))) {
+                for (Message message : found) {
+                    if (missingIds.remove(message.getMessageId())) {
+                        messages.add(message);
+                    }
+                }
+            }
+        }
+        return messages;
+    }
+
+    // SCATTER-GATHER QUERIES //
+    @Override
+    public List<Message> findAllMessages() {
+        return merge(scatter(allShards(), true, shard -> this.shardRepository.findAllMessages()), BY_ID, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Integer> findLatestMessageIdsByPostedByIn(Collection<Integer> postedBy, Pageable pageable) {
+        Map<Integer, List<Integer>> byShard = new LinkedHashMap<Integer, List<Integer>>();
+        for (Integer poster : postedBy) {
+            byShard.computeIfAbsent(shardOf(poster), key -> new ArrayList<Integer>()).add(poster);
+        }
+        List<Integer> messageIds = new ArrayList<Integer>();
+        for (List<Integer> found : scatter(byShard.keySet().stream().mapToInt(Integer::intValue).toArray(), true,
+                shard -> this.shardRepository.findLatestMessageIdsByPostedByIn(byShard.get(shard), pageable))) {
+            messageIds.addAll(found);
+        }
+        messageIds.sort(Comparator.reverseOrder());
+        return messageIds.size() > pageable.getPageSize() ? messageIds.subList(0, pageable.getPageSize()) : messageIds;
+    }
+
+    @Override
+    public List<Message> findFirstPage(Pageable pageable) {
+        return merge(scatter(allShards(), true, shard -> this.shardRepository.findFirstPage(pageable)),
+                BY_TIME_AND_ID, pageable.getPageSize());
+    }
+
+    @Override
+    public List<Message> findPageAfter(long time, int id, Pageable pageable) {
+        return merge(scatter(allShards(), true, shard -> this.shardRepository.findPageAfter(time, id, pageable)),
+                BY_TIME_AND_ID, pageable.getPageSize());
+    }
+
+    @Override
+    public List<Message> findAllPostedBetween(long since, long until) {
+        return merge(scatter(allShards(), true, shard -> this.shardRepository.findAllPostedBetween(since, until)),
+                BY_TIME_AND_ID, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Message> findPageAfterId(int afterId, int limit) {
+        return merge(scatter(allShards(), true, shard -> this.shardRepository.findPageAfterId(afterId, limit)),
+                BY_ID, limit);
+    }
+
+    /**
+     * Merges the shards' keyset pages of "fetchSize" messages. Each page is
+     * read in its own short transaction, so the caller's transaction isn't
+     * needed to keep cursors open.
+     */
+    @Override
+    public Stream<Message> streamAll(int fetchSize) {
+        PriorityQueue<ShardPages> heads = new PriorityQueue<ShardPages>(
+                (a, b) -> BY_TIME_AND_ID.compare(a.peek(), b.peek()));
+        for (int shard = 0; shard < this.shardCount; shard++) {
+            ShardPages pages = new ShardPages(shard, fetchSize);
+            if (pages.peek() != null) {
+                heads.add(pages);
+            }
+        }
+        Iterator<Message> merged = new Iterator<Message>() {
+            @Override
+            public boolean hasNext() {
+                return !heads.isEmpty();
+            }
+
+            @Override
+            public Message next() {
+                ShardPages pages = heads.poll();
+                if (pages == null) {
+                    throw new NoSuchElementException();
+                }
+                Message message = pages.next();
+                if (pages.peek() != null) {
+                    heads.add(pages);
+                }
+                return message;
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(merged, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * Walks a shard's messages in (timePostedEpoch, messageId) order, one
+     * keyset page at a time.
+     */
+    private class ShardPages {
+        private final int shard;
+        private final int pageSize;
+        private List<Message> page;
+        private int index;
+
+        ShardPages(int shard, int pageSize) {
+            this.shard = shard;
+            this.pageSize = pageSize;
+            this.page = inNewTransaction(shard, true,
+                    () -> ShardedMessageRepository.this.shardRepository.findFirstPage(PageRequest.of(0, pageSize)));
+        }
+
+        Message peek() {
+            if (this.index == this.page.size() && this.page.size() == this.pageSize) {
+                Message last = this.page.get(this.index - 1);
+                long lastTime = last.getTimePostedEpoch() == null ? Long.MIN_VALUE : last.getTimePostedEpoch();
+                this.page = inNewTransaction(this.shard, true, () -> ShardedMessageRepository.this.shardRepository
+                        .findPageAfter(lastTime, last.getMessageId(), PageRequest.of(0, this.pageSize)));
+                this.index = 0;
+            }
+            return this.index < this.page.size() ? this.page.get(this.index) : null;
+        }
+
+        Message next() {
+            return this.page.get(this.index++);
+        }
+    }
+
+    // HELPERS //
+    private int shardOfMessageId(int messageId) {
+        return Math.floorMod(messageId, this.shardCount);
+    }
+
+    /**
+     * Takes a new ID from the entity's generator (on the primary database)
+     * and encodes the shard in it.
+     */
+    private int newMessageId(Message message, int shard) {
+        long baseId;
+        try (StatelessSession session = this.sessionFactory.openStatelessSession()) {
+            baseId = ((Number) this.idGenerator.generate((SharedSessionContractImplementor) session, message)).longValue();
+        }
+        long messageId = baseId * this.shardCount + shard;
+        if (messageId > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Ran out of message IDs");
+        }
+        return (int) messageId;
+    }
+
+    /**
+     * Deletes messages inserted on other shards, whose batch failed.
+     */
+    private void undoInserts(Map<Integer, List<Message>> inserted) {
+        for (Map.Entry<Integer, List<Message>> shardMessages : inserted.entrySet()) {
+            try {
+                inNewTransaction(shardMessages.getKey(), false, () -> delete(shardMessages.getValue()));
+            } catch (RuntimeException e) {
+                log.error("Failed to undo the insert of {} on shard {}, they stay stored", shardMessages.getValue(),
+                        shardMessages.getKey(), e);
+            }
+        }
+    }
+
+    /**
+     * Inserts the messages not on the current shard yet, failing if another
+     * message has the ID of one.
+     */
+    private int[] insertMissing(List<Message> messages) {
+        List<Integer> messageIds = new ArrayList<Integer>(messages.size());
+        for (Message message : messages) {
+            messageIds.add(message.getMessageId());
+        }
+        Map<Integer, Message> stored = new HashMap<Integer, Message>();
+        for (Message message : this.shardRepository.findAllByMessageIdIn(messageIds)) {
+            stored.put(message.getMessageId(), message);
+        }
+        List<Message> missing = new ArrayList<Message>(messages.size());
+        for (Message message : messages) {
+            Message storedMessage = stored.get(message.getMessageId());
+            if (storedMessage == null) {
+                missing.add(message);
+            } else if (!storedMessage.equals(message)) {
+                throw new IllegalStateException("Can't move " + message + " to shard " + shardOf(message.getPostedBy())
+                        + ", which has " + storedMessage + " with the same ID");
+            }
+        }
+        return missing.isEmpty() ? new int[0] : insert(missing);
+    }
+
+    private int[][] delete(List<Message> messages) {
+        JdbcWrites.invalidateQueries(this.sessionFactory, Message.class);
+        return this.jdbcTemplate.batchUpdate(DELETE_SQL, messages, REBALANCE_PAGE_SIZE,
+                (statement, message) -> statement.setInt(1, message.getMessageId()));
+    }
+
+    private int[] insert(List<Message> messages) {
+        JdbcWrites.invalidateQueries(this.sessionFactory, Message.class);
+        return this.jdbcTemplate.batchUpdate(INSERT_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement statement, int i) throws SQLException {
+                Message message = messages.get(i);
+                statement.setInt(1, message.getMessageId());
+                statement.setObject(2, message.getPostedBy());
+                statement.setString(3, message.getMessageText());
+                statement.setObject(4, message.getTimePostedEpoch());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return messages.size();
+            }
+        });
+    }
+
+    /**
+     * Runs a query on a shard: on the primary in the caller's transaction
+     * (if any), elsewhere in a new transaction on that shard.
+     */
+    private <T> T onShard(int shard, boolean readOnly, Supplier<T> query) {
+        return shard == 0 ? query.get() : inNewTransaction(shard, readOnly, query);
+    }
+
+    private <T> T inNewTransaction(int shard, boolean readOnly, Supplier<T> query) {
+        TransactionTemplate transaction = readOnly ? this.newReadOnlyTransaction : this.newTransaction;
+        return ShardRoutingDataSource.onShard(shard, () -> transaction.execute(status -> query.get()));
+    }
+
+    /**
+     * Runs a query on several shards in parallel, the first one on the
+     * calling thread.
+     * @return	the result of each shard, in the order of "shards"
+     */
+    private <T> List<T> scatter(int[] shards, boolean readOnly, IntFunction<T> query) {
+        List<Future<T>> futures = new ArrayList<Future<T>>(shards.length);
+        for (int i = 1; i < shards.length; i++) {
+            int shard = shards[i];
+            futures.add(this.executor.submit(() -> onShard(shard, readOnly, () -> query.apply(shard))));
+        }
+        List<T> results = new ArrayList<T>(shards.length);
+        if (shards.length > 0) {
+            results.add(onShard(shards[0], readOnly, () -> query.apply(shards[0])));
+        }
+        for (Future<T> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while querying shards", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+        return results;
+    }
+
+    private int[] allShards() {
+        int[] shards = new int[this.shardCount];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = i;
+        }
+        return shards;
+    }
+
+    private int[] otherShards(int excludedShard) {
+        int[] shards = new int[this.shardCount - 1];
+        for (int i = 0, shard = 0; shard < this.shardCount; shard++) {
+            if (shard != excludedShard) {
+                shards[i++] = shard;
+            }
+        }
+        return shards;
+    }
+
+    /**
+     * Merges the shards' results, each sorted by the comparator, keeping the
+     * first "limit" messages.
+     */
+    private static List<Message> merge(List<List<Message>> results, Comparator<Message> order, int limit) {
+        List<Message> merged = new ArrayList<Message>();
+        for (List<Message> result : results) {
+            merged.addAll(result);
+        }
+        merged.sort(order);
+        return merged.size() > limit ? new ArrayList<Message>(merged.subList(0, limit)) : merged;
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.security.spec.InvalidKeySpecException;
+import java.util.Base64;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import javax.annotation.PreDestroy;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * This hashes and verifies account passwords with salted PBKDF2-HMAC-SHA256.
+ * Hashes are stored as "pbkdf2-sha256$iterations$salt$hash" (salt and hash
+ * in Base64), so the cost ("app.security.password.iterations") can be raised
+ * later: older hashes still verify, and {@link #needsRehash} tells the caller
+ * to upgrade them on the next successful login. Stored values without that
+ * prefix are legacy plaintext passwords, which verify too but always need a
+ * rehash.
+ *
+ * Hashing is deliberately slow, so the async methods run it on a dedicated
+ * pool of "app.security.password.threads" threads (0 = one per CPU) with a
+ * queue of "app.security.password.queue-capacity" tasks. A login storm then
+ * uses at most that many CPUs, leaving the rest to the request threads, and
+ * once the queue is full further attempts fail fast with a
+ * RejectedExecutionException instead of piling up.
+ */
+@Component
+public class PasswordHasher {
+    static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    static final String PREFIX = "pbkdf2-sha256";
+    static final int SALT_BYTES = 16;
+    static final int HASH_BITS = 256;
+
+    private final int iterations;
+    private final ThreadPoolExecutor executor;
+    private final SecureRandom random = new SecureRandom();
+    /**
+     * Hash that unknown usernames are verified against, so that a login with
+     * a wrong username takes as long as one with a wrong password.
+     */
+    private final String unknownUserHash;
+
+    // CONSTRUCTORS //
+    @Autowired
+    public PasswordHasher(@Value("${app.security.password.iterations:100000}") int iterations,
+            @Value("${app.security.password.threads:0}") int threads,
+            @Value("${app.security.password.queue-capacity:256}") int queueCapacity) {
+        if (iterations < 1) {
+            throw new IllegalArgumentException("app.security.password.iterations must be positive");
+        }
+        this.iterations = iterations;
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(queueCapacity), new HasherThreadFactory(),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.unknownUserHash = hash("unknown user");
+    }
+
+    /**
+     * @return	PBKDF2 iterations used for new hashes
+     */
+    public int getIterations() {
+        return this.iterations;
+    }
+
+    /**
+     * Hashes the password with a new random salt, on the calling thread.
+     * @param password
+     * @return	encoded hash
+     */
+    public String hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        this.random.nextBytes(salt);
+        byte[] hash = pbkdf2(password, salt, this.iterations);
+        Base64.Encoder base64 = Base64.getEncoder().withoutPadding();
+        return PREFIX + "$" + this.iterations + "$" + base64.encodeToString(salt) + "$" + base64.encodeToString(hash);
+    }
+
+    /**
+     * Checks the password against a stored value, on the calling thread. A
+     * "null" stored value (unknown user) is checked against a dummy hash and
+     * never matches.
+     * @param password
+     * @param stored	encoded hash, legacy plaintext password, or "null"
+     * @return	true if the password matches
+     */
+    public boolean verify(String password, String stored) {
+        if (password == null) {
+            return false;
+        }
+        if (stored == null) {
+            verify(password, this.unknownUserHash);
+            return false;
+        }
+        if (!stored.startsWith(PREFIX + "$")) { // Legacy plaintext
+            return MessageDigest.isEqual(password.getBytes(StandardCharsets.UTF_8), stored.getBytes(StandardCharsets.UTF_8));
+        }
+        String[] parts = stored.split("\\$");
+        if (parts.length != 4) {
+            return false;
+        }
+        try {
+            int storedIterations = Integer.parseInt(parts[1]);
+            byte[] salt = Base64.getDecoder().decode(parts[2]);
+            byte[] expected = Base64.getDecoder().decode(parts[3]);
+            return MessageDigest.isEqual(expected, pbkdf2(password, salt, storedIterations));
+        } catch (IllegalArgumentException e) { // Corrupt hash, including bad numbers
+            return false;
+        }
+    }
+
+    /**
+     * @param stored	encoded hash or legacy plaintext password
+     * @return	true if the stored value is plaintext or was hashed with a
+     *			different cost than the current one
+     */
+    public boolean needsRehash(String stored) {
+        return !stored.startsWith(PREFIX + "$" + this.iterations + "$");
+    }
+
+    /**
+     * {@link #hash} on the hashing pool.
+     * @param password
+     * @return	future of the encoded hash, failed with a
+     *			RejectedExecutionException if the pool is saturated
+     */
+    public CompletableFuture<String> hashAsync(String password) {
+        return submit(() -> hash(password));
+    }
+
+    /**
+     * {@link #verify} on the hashing pool.
+     * @param password
+     * @param stored	encoded hash, legacy plaintext password, or "null"
+     * @return	future of the result, failed with a
+     *			RejectedExecutionException if the pool is saturated
+     */
+    public CompletableFuture<Boolean> verifyAsync(String password, String stored) {
+        return submit(() -> verify(password, stored));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        this.executor.shutdown();
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, this.executor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private static byte[] pbkdf2(String password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    private static final class HasherThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "password-hasher-" + this.count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
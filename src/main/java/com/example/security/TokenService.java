@@ -0,0 +1,142 @@
+package com.example.security;
+
+import java.nio.ByteBuffer;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.Base64;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * This issues and verifies the stateless session tokens returned by
+ * POST /login. A token is "payload.signature" in unpadded Base64url, where
+ * the 12-byte payload is the account ID and the expiry (epoch seconds) and
+ * the signature is its HMAC-SHA256, so verifying one is a few microseconds
+ * of CPU and never touches the database.
+ *
+ * The key is "app.security.token.secret" (Base64, at least 32 bytes). If it
+ * isn't set, a random key is generated at startup: tokens then stop working
+ * when the app restarts and aren't accepted by other instances. Tokens are
+ * valid for "app.security.token.ttl-seconds".
+ */
+@Component
+public class TokenService {
+    private static final Logger log = LoggerFactory.getLogger(TokenService.class);
+    static final String ALGORITHM = "HmacSHA256";
+    static final int MIN_KEY_BYTES = 32;
+    static final int PAYLOAD_BYTES = Integer.BYTES + Long.BYTES;
+
+    private final SecretKeySpec key;
+    private final long ttlSeconds;
+    /**
+     * Mac instances aren't thread-safe, and looking one up and initializing
+     * it costs more than the HMAC itself, so each thread keeps its own.
+     */
+    private final ThreadLocal<Mac> macs = ThreadLocal.withInitial(this::newMac);
+
+    // CONSTRUCTORS //
+    @Autowired
+    public TokenService(@Value("${app.security.token.secret:}") String secret,
+            @Value("${app.security.token.ttl-seconds:3600}") long ttlSeconds) {
+        byte[] keyBytes;
+        if (secret == null || secret.isEmpty()) {
+            log.warn("app.security.token.secret is not set, using a random key:"
+                    + " tokens won't survive a restart or work across instances");
+            keyBytes = new byte[MIN_KEY_BYTES];
+            new SecureRandom().nextBytes(keyBytes);
+        } else {
+            keyBytes = Base64.getDecoder().decode(secret);
+            if (keyBytes.length < MIN_KEY_BYTES) {
+                throw new IllegalArgumentException("app.security.token.secret must be at least " + MIN_KEY_BYTES + " bytes");
+            }
+        }
+        this.key = new SecretKeySpec(keyBytes, ALGORITHM);
+        this.ttlSeconds = ttlSeconds;
+    }
+
+    /**
+     * Issues a token for the account, valid for the configured TTL.
+     * @param accountId
+     * @return	signed token
+     */
+    public String issue(int accountId) {
+        byte[] payload = ByteBuffer.allocate(PAYLOAD_BYTES)
+                .putInt(accountId)
+                .putLong(Instant.now().getEpochSecond() + this.ttlSeconds)
+                .array();
+        Base64.Encoder base64 = Base64.getUrlEncoder().withoutPadding();
+        return base64.encodeToString(payload) + "." + base64.encodeToString(sign(payload));
+    }
+
+    /**
+     * Verifies the token's signature and expiry.
+     * @param token
+     * @return	ID of the account the token was issued to, or "null" if the
+     *			token is malformed, forged or expired
+     */
+    public Integer verify(String token) {
+        if (token == null) {
+            return null;
+        }
+        int dot = token.indexOf('.');
+        if (dot < 0) {
+            return null;
+        }
+        byte[] payload;
+        byte[] signature;
+        try {
+            Base64.Decoder base64 = Base64.getUrlDecoder();
+            payload = base64.decode(token.substring(0, dot));
+            signature = base64.decode(token.substring(dot + 1));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (payload.length != PAYLOAD_BYTES || !MessageDigest.isEqual(sign(payload), signature)) {
+            return null;
+        }
+        ByteBuffer fields = ByteBuffer.wrap(payload);
+        int accountId = fields.getInt();
+        long expiresAt = fields.getLong();
+        if (Instant.now().getEpochSecond() >= expiresAt) {
+            return null;
+        }
+        return accountId;
+    }
+
+    /**
+     * Extracts the token from an "Authorization: Bearer ..." header value.
+     * @param authorization	header value, or "null"
+     * @return	the token, or "null" if the header isn't a bearer token
+     */
+    public static String bearerToken(String authorization) {
+        String prefix = "Bearer ";
+        if (authorization == null || !authorization.regionMatches(true, 0, prefix, 0, prefix.length())) {
+            return null;
+        }
+        return authorization.substring(prefix.length()).trim();
+    }
+
+    private byte[] sign(byte[] payload) {
+        return this.macs.get().doFinal(payload);
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(this.key);
+            return mac;
+        } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        }
+    }
+}
@@ -1,81 +1,212 @@
 package com.example.service;
 
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PreDestroy;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
+import com.example.cache.AccountIdIndex;
+import com.example.cache.CredentialCache;
+import com.example.cache.UsernameFilter;
 import com.example.entity.Account;
 import com.example.repository.AccountRepository;
+import com.example.security.PasswordHasher;
+import com.example.security.TokenService;
 
 /** 
  * This is a Service class that acts between the endpoints (controller) and the 
  * database (repository) of the "Account" Java class, validating input. 
+ *  
+ * Passwords are stored as salted hashes (see PasswordHasher). Hashing and 
+ * verifying them is slow on purpose, so it runs on the PasswordHasher's pool 
+ * and registration and login complete asynchronously, without holding a 
+ * request thread or a database connection while hashing. The database writes 
+ * that follow a hash run on a pool of their own, so a slow database never 
+ * holds up the hashing threads. When either pool is saturated they fail fast 
+ * with a 503 message (service unavailable). 
  */ 
 @Service
 public class AccountService {
+	/** Response header carrying the session token issued by a login */
+	public static final String AUTH_TOKEN_HEADER = "X-Auth-Token";
+
     AccountRepository accountRepository;
+	AccountIdIndex accountIdIndex;
+	PasswordHasher passwordHasher;
+	CredentialCache credentialCache;
+	TokenService tokenService;
+	UsernameFilter usernameFilter;
+	ReadYourWrites readYourWrites;
+	ThreadPoolExecutor databaseExecutor;
 
     // CONSTRUCTORS //
     @Autowired
-    public AccountService(AccountRepository accountRepository) {
+    public AccountService(AccountRepository accountRepository, AccountIdIndex accountIdIndex,
+			PasswordHasher passwordHasher, CredentialCache credentialCache, TokenService tokenService,
+			UsernameFilter usernameFilter, ReadYourWrites readYourWrites,
+			@Value("${app.accounts.db-threads:10}") int databaseThreads,
+			@Value("${app.accounts.db-queue-capacity:256}") int databaseQueueCapacity) {
         this.accountRepository = accountRepository;
+		this.accountIdIndex = accountIdIndex;
+		this.passwordHasher = passwordHasher;
+		this.credentialCache = credentialCache;
+		this.tokenService = tokenService;
+		this.usernameFilter = usernameFilter;
+		this.readYourWrites = readYourWrites;
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("account-db-");
+		threadFactory.setDaemon(true);
+		this.databaseExecutor = new ThreadPoolExecutor(databaseThreads, databaseThreads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(databaseQueueCapacity), threadFactory,
+				new ThreadPoolExecutor.AbortPolicy());
     }
 
     // CREATE OPERATIONS //
     /** 
 	 * This registers a new account into the "account" database table. 
 	 *  
+	 * Only usernames the UsernameFilter may have seen are looked up before 
+	 * the insert; for the rest the unique constraint on "account.username" 
+	 * is the check, and its violation is answered with the same 409 message. 
+	 *  
 	 * @param account   The new account to be registered 
 	 *  
 	 * @return	Account if it was successfully persisted, or "null" if it 
 	 *          wasn't successfully persisted or if username or password were
-	 *          invalid 
+	 *          invalid. The returned account carries the password as sent,
+	 *          not its stored hash.
 	 */
-	@Transactional
-	public ResponseEntity<Account> registerAccount(Account account) { 
+	public CompletableFuture<ResponseEntity<Account>> registerAccount(Account account) { 
 		// Check username isn't blank 
 		if(account.getUsername() == "") { 
-			return ResponseEntity.status(400).body(null);
+			return CompletableFuture.completedFuture(ResponseEntity.status(400).body(null));
 		} 
 		// Check password is more than 4 characters 
 		if(account.getPassword().length() < 4) { 
-			return ResponseEntity.status(400).body(null); 
+			return CompletableFuture.completedFuture(ResponseEntity.status(400).body(null)); 
 		}
 
-		// Check there isn't an account already with the specified username
-		if(this.accountRepository.findByUsername(account.getUsername()) != null) {
-			return ResponseEntity.status(409).body(null);
+		// Check there isn't an account already with the specified username, unless it's certainly new
+		String username = account.getUsername();
+		if((username == null || this.usernameFilter.mightContain(username))
+				&& this.accountRepository.findByUsername(username) != null) {
+			return CompletableFuture.completedFuture(ResponseEntity.status(409).body(null));
 		}
  
+		// Hash first, so the insert's transaction doesn't wait for it, then insert on the database pool
+		return this.passwordHasher.hashAsync(account.getPassword()).thenApplyAsync(hash -> {
+			Account addedAccount;
+			try {
+				addedAccount = this.accountRepository.save(new Account(username, hash));
+			} catch (DataIntegrityViolationException e) {
+				if (UniqueViolation.isCauseOf(e, "account", "username")) { // Username taken since the check above, or missed by the filter
+					this.usernameFilter.add(username);
+					return ResponseEntity.status(409).body((Account) null);
+				}
+				throw e;
+			}
 
-		Account addedAccount = this.accountRepository.save(account);
+			if (addedAccount != null) { // Account successfully registered
+				AfterCommit.run(() -> {
+					this.accountIdIndex.add(addedAccount.getAccountId());
+					this.usernameFilter.add(username);
+					this.readYourWrites.written(ReadYourWrites.USERNAME, username);
+				});
+				return ResponseEntity.status(200).body(
+						new Account(addedAccount.getAccountId(), addedAccount.getUsername(), account.getPassword()));
 
-		if (addedAccount != null) { // Account successfully registered
-			return ResponseEntity.status(200).body(addedAccount);
-
-		} else { // Registration failed due to other error
-			return ResponseEntity.status(400).body(null);
-		}
+			} else { // Registration failed due to other error
+				return ResponseEntity.status(400).body((Account) null);
+			}
+		}, this.databaseExecutor).exceptionally(AccountService::unavailableOnRejection);
 	} 
  
 	/** 
 	 * This authorizes/logs in an account.
 	 *  
+	 * The stored hash is read through the CredentialCache, so repeated logins 
+	 * only verify the password and don't query the database. With read 
+	 * replicas, accounts registered within the read-your-writes window are 
+	 * looked up on the primary database (see ReadYourWrites). Hashes made with 
+	 * an outdated cost (or legacy plaintext passwords) are upgraded on a 
+	 * successful login. 
+	 *  
+	 * A successful login also returns a signed session token (see 
+	 * TokenService) in the "X-Auth-Token" header. 
+	 *  
 	 * @param account   The account credientials attempting to log in 
 	 *  
 	 * @return	Account if it was successfully logged in, or "null" if it
-	 *          wasn't successfully logged in 
+	 *          wasn't successfully logged in. The returned account carries
+	 *          the password as sent, not its stored hash.
 	 */
-	@Transactional(readOnly = true)
-	public ResponseEntity<Account> loginAccount(Account account) {
-		Account loggedInAccount = this.accountRepository.findByUsernameAndPassword(account.getUsername(), account.getPassword());
+	public CompletableFuture<ResponseEntity<Account>> loginAccount(Account account) {
+		String username = account.getUsername();
+		Account cachedCredentials = this.credentialCache.get(username);
+		long stamp = this.credentialCache.stamp();
+		Account credentials = cachedCredentials != null
+				? cachedCredentials
+				: this.readYourWrites.reading(ReadYourWrites.USERNAME, username,
+						() -> this.accountRepository.findByUsername(username));
+		String storedPassword = credentials != null ? credentials.getPassword() : null;
 
-		if (loggedInAccount != null) { // Account successfully logged in
-			return ResponseEntity.status(200).body(loggedInAccount);
+		return this.passwordHasher.verifyAsync(account.getPassword(), storedPassword).thenCompose(verified -> {
+			if (!verified) { // Login failed / unauthorized
+				return CompletableFuture.completedFuture(ResponseEntity.status(401).body((Account) null));
+			}
 
-		} else { // Login failed / unauthorized
-			return ResponseEntity.status(401).body(null);
-		}
+			int accountId = credentials.getAccountId();
+			if (this.passwordHasher.needsRehash(storedPassword)) { // Upgrade the stored hash, storing it on the database pool
+				return this.passwordHasher.hashAsync(account.getPassword()).thenApplyAsync(hash -> {
+					if (this.accountRepository.updatePassword(accountId, storedPassword, hash) == 1) {
+						this.credentialCache.invalidate(username);
+						this.credentialCache.put(username, new Account(accountId, username, hash));
+					}
+					return loggedIn(accountId, username, account.getPassword());
+				}, this.databaseExecutor);
+			}
+			if (cachedCredentials == null) { // Cache the verified hash, unless it changed meanwhile
+				this.credentialCache.putIfNotInvalidated(username, new Account(accountId, username, storedPassword), stamp);
+			}
+			return CompletableFuture.completedFuture(loggedIn(accountId, username, account.getPassword()));
+		}).exceptionally(AccountService::unavailableOnRejection);
 	} 
+
+	@PreDestroy
+	public void shutdown() {
+		this.databaseExecutor.shutdown();
+	}
+
+	/**
+	 * @return	200 message with the logged in account, carrying the password
+	 *			as sent, and a session token for it
+	 */
+	private ResponseEntity<Account> loggedIn(int accountId, String username, String password) {
+		return ResponseEntity.status(200)
+				.header(AUTH_TOKEN_HEADER, this.tokenService.issue(accountId))
+				.body(new Account(accountId, username, password));
+	}
+
+	/**
+	 * Maps a failure of the PasswordHasher's or the database pool to accept
+	 * more work to a 503 message (service unavailable), and rethrows anything
+	 * else.
+	 */
+	private static ResponseEntity<Account> unavailableOnRejection(Throwable e) {
+		Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+		if (cause instanceof RejectedExecutionException) {
+			return ResponseEntity.status(503).body(null);
+		}
+		throw e instanceof CompletionException ? (CompletionException) e : new CompletionException(e);
+	}
 }
\ No newline at end of file
@@ -0,0 +1,30 @@
+package com.example.service;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Runs cache and index maintenance once the surrounding transaction has
+ * committed, so other threads never observe a change that might still be
+ * rolled back. Outside of a transaction the action runs immediately.
+ */
+final class AfterCommit {
+    private AfterCommit() {
+    }
+
+    /**
+     * @param action	action to run after the current transaction commits
+     */
+    static void run(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
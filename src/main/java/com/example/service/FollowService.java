@@ -0,0 +1,251 @@
+package com.example.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.cache.AccountIdIndex;
+import com.example.cache.FeedCache;
+import com.example.repository.AccountRepository;
+import com.example.repository.FollowRepository;
+import com.example.repository.MessageStore;
+
+/** 
+ * This is a Service class that acts between the endpoints (controller) and the 
+ * database (repository) of the "Follow" Java class, validating input, and 
+ * that maintains the precomputed home feeds of the FeedCache. 
+ *  
+ * New messages are fanned out to the cached feeds of their poster's followers 
+ * on a pool of "app.feed.fanout-threads" threads, after the message commits. 
+ * When more than "app.feed.fanout-queue-capacity" messages are waiting, the 
+ * committing thread fans out on its own. Accounts with more than 
+ * "app.feed.celebrity-threshold" followers aren't fanned out at all: their 
+ * followers' feeds list them to be merged in when read instead, so a 
+ * celebrity's message costs one write rather than one per follower. 
+ * Celebrity status is decided when a feed is built, so a feed may miss (or 
+ * list twice, which readers drop) messages of an account crossing the 
+ * threshold until the feed expires. It is read from the follower counts 
+ * kept alongside the follows ("follower_count"), so neither building a feed 
+ * nor fanning out counts followers. 
+ */ 
+@Service
+public class FollowService {
+    private static final Logger log = LoggerFactory.getLogger(FollowService.class);
+
+    FollowRepository followRepository;
+	MessageStore messageRepository;
+	AccountRepository accountRepository;
+	AccountIdIndex accountIdIndex;
+	FeedCache feedCache;
+	int celebrityThreshold;
+	ThreadPoolExecutor fanoutExecutor;
+	TransactionTemplate transaction;
+
+    // CONSTRUCTORS //
+    @Autowired
+    public FollowService(FollowRepository followRepository, MessageStore messageRepository,
+			AccountRepository accountRepository, AccountIdIndex accountIdIndex, FeedCache feedCache,
+			PlatformTransactionManager transactionManager,
+			@Value("${app.feed.celebrity-threshold:10000}") int celebrityThreshold,
+			@Value("${app.feed.fanout-threads:1}") int fanoutThreads,
+			@Value("${app.feed.fanout-queue-capacity:10000}") int fanoutQueueCapacity) {
+        this.followRepository = followRepository;
+		this.messageRepository = messageRepository;
+		this.accountRepository = accountRepository;
+		this.accountIdIndex = accountIdIndex;
+		this.feedCache = feedCache;
+		this.celebrityThreshold = celebrityThreshold;
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("feed-fanout-");
+		threadFactory.setDaemon(true);
+		this.fanoutExecutor = new ThreadPoolExecutor(fanoutThreads, fanoutThreads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(fanoutQueueCapacity), threadFactory,
+				new ThreadPoolExecutor.CallerRunsPolicy());
+		this.transaction = new TransactionTemplate(transactionManager);
+    }
+
+    // CREATE OPERATIONS //
+	/**
+	 * This makes an account follow another.
+	 *
+	 * @param followerId	ID of the account following
+	 * @param followeeId	ID of the account to follow
+	 *
+	 * @return	count of follows created (1, or 0 if it already existed), or
+	 *			"null" if either account doesn't exist or they're the same
+	 */
+	public ResponseEntity<String> follow(int followerId, int followeeId) {
+		// Check accounts are different and both exist
+		if(followerId == followeeId || !accountExists(followerId) || !accountExists(followeeId)) {
+			return ResponseEntity.status(400).body(null);
+		}
+
+		// On its own, so a concurrent creation doesn't fail the follow
+		try {
+			this.followRepository.createFollowerCount(followeeId);
+		} catch (DataIntegrityViolationException e) {
+			if (!UniqueViolation.isCauseOf(e)) {
+				throw e;
+			}
+		}
+
+		int followCount;
+		try {
+			followCount = this.transaction.execute(status -> {
+				int created = this.followRepository.follow(followerId, followeeId);
+				if (created != 0) {
+					this.followRepository.addFollowers(followeeId, 1);
+				}
+				return created;
+			});
+		} catch (DataIntegrityViolationException e) {
+			if (!UniqueViolation.isCauseOf(e)) {
+				throw e;
+			}
+			followCount = 0; // Followed concurrently
+		}
+
+		if (followCount != 0) { // Rebuild the feed with the followee's messages
+			AfterCommit.run(() -> this.feedCache.invalidate(followerId));
+		}
+		return ResponseEntity.status(200).body(String.valueOf(followCount));
+	}
+
+    // READ OPERATIONS //
+	/**
+	 * Gets the IDs of the accounts an account follows, in ascending order.
+	 *
+	 * @param followerId	ID of the following account
+	 *
+	 * @return	IDs of the followed accounts
+	 */
+	@Transactional(readOnly = true)
+	public ResponseEntity<List<Integer>> getFollowing(int followerId) {
+		return ResponseEntity.status(200).body(this.followRepository.findFolloweeIds(followerId));
+	}
+
+	/**
+	 * Gets the precomputed feed of an account from the FeedCache, building
+	 * it on a miss: the newest messages of the followed accounts under the
+	 * celebrity threshold, and the list of those over it.
+	 *
+	 * @param accountId	ID of the account whose feed to get
+	 *
+	 * @return	the account's feed
+	 */
+	@Transactional(readOnly = true)
+	public FeedCache.Feed getFeed(int accountId) {
+		FeedCache.Feed feed = this.feedCache.get(accountId);
+		if (feed != null) {
+			return feed;
+		}
+
+		long stamp = this.feedCache.beginLoad(accountId);
+		List<Integer> followeeIds = this.followRepository.findFolloweeIds(accountId);
+		List<Integer> celebrityIds = followeeIds.isEmpty() ? followeeIds
+				: this.followRepository.findFolloweesWithMoreFollowersThan(accountId, this.celebrityThreshold);
+		List<Integer> fannedOutIds = new ArrayList<Integer>(followeeIds);
+		fannedOutIds.removeAll(celebrityIds);
+
+		List<Integer> messageIds = fannedOutIds.isEmpty() ? fannedOutIds
+				: this.messageRepository.findLatestMessageIdsByPostedByIn(fannedOutIds,
+						PageRequest.of(0, this.feedCache.getMaxLength()));
+		// Newest first from the database, oldest first in the feed
+		int[] feedIds = new int[messageIds.size()];
+		for (int i = 0; i < feedIds.length; i++) {
+			feedIds[i] = messageIds.get(feedIds.length - 1 - i);
+		}
+		feed = new FeedCache.Feed(feedIds, celebrityIds.stream().mapToInt(Integer::intValue).sorted().toArray(),
+				feedIds.length >= this.feedCache.getMaxLength());
+		this.feedCache.putLoaded(accountId, stamp, feed);
+		return feed;
+	}
+
+    // UPDATE OPERATIONS //
+	/**
+	 * Fans a new message out to the cached feeds of its poster's followers,
+	 * asynchronously, unless the poster is over the celebrity threshold.
+	 * Should be called once the message has committed.
+	 *
+	 * @param postedBy	ID of the message's poster
+	 * @param messageId	ID of the new message
+	 */
+	public void fanOut(int postedBy, int messageId) {
+		this.fanoutExecutor.execute(() -> {
+			try {
+				Integer followerCount = this.followRepository.findFollowerCount(postedBy);
+				if (followerCount == null || followerCount > this.celebrityThreshold) { // Never followed, or merged in on read
+					return;
+				}
+				List<Integer> followerIds = this.followRepository.findFollowerIds(postedBy,
+						PageRequest.of(0, this.celebrityThreshold + 1));
+				if (followerIds.size() > this.celebrityThreshold) { // Merged in on read instead
+					return;
+				}
+				for (int followerId : followerIds) {
+					this.feedCache.addMessage(followerId, messageId);
+				}
+			} catch (RuntimeException e) {
+				log.warn("Fan-out of message {} failed", messageId, e);
+			}
+		});
+	}
+
+    // DELETE OPERATIONS //
+	/**
+	 * This makes an account stop following another.
+	 *
+	 * @param followerId	ID of the account following
+	 * @param followeeId	ID of the followed account
+	 *
+	 * @return	count of follows removed (1), or an empty string if there was
+	 *			no such follow
+	 */
+	@Transactional
+	public ResponseEntity<String> unfollow(int followerId, int followeeId) {
+		int unfollowCount = this.followRepository.unfollow(followerId, followeeId);
+
+		if (unfollowCount != 0) { // Rebuild the feed without the followee's messages
+			this.followRepository.addFollowers(followeeId, -1);
+			AfterCommit.run(() -> this.feedCache.invalidate(followerId));
+			return ResponseEntity.status(200).body(String.valueOf(unfollowCount));
+		}
+		return ResponseEntity.status(200).body("");
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		this.fanoutExecutor.shutdown();
+	}
+
+	/**
+	 * Checks whether an account exists, using the AccountIdIndex and only
+	 * querying the database for accounts missing from it.
+	 */
+	private boolean accountExists(int accountId) {
+		if (this.accountIdIndex.contains(accountId)) {
+			return true;
+		}
+		if (this.accountRepository.existsByAccountId(accountId)) {
+			this.accountIdIndex.add(accountId);
+			return true;
+		}
+		return false;
+	}
+}
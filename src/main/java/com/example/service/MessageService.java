@@ -1,15 +1,47 @@
 package com.example.service;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
 
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.example.cache.AccountIdIndex;
+import com.example.cache.FeedCache;
+import com.example.cache.InvertedIndex;
+import com.example.cache.MessageCache;
+import com.example.cache.MessageSearchIndex;
+import com.example.cache.TimelineCache;
+import com.example.dto.FeedPage;
+import com.example.dto.MessageBatchResult;
+import com.example.dto.MessagePage;
+import com.example.dto.MessageSearchPage;
 import com.example.entity.Message;
-import com.example.repository.MessageRepository;
+import com.example.repository.MessageStore;
 import com.example.repository.AccountRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 
 /** 
  * This is a Service class that acts between the endpoints (controller) and the 
@@ -17,28 +49,93 @@ import com.example.repository.AccountRepository;
  */
 @Service
 public class MessageService {
-    MessageRepository messageRepository;
+	/** Largest page size accepted by {@link #getMessagesPage(String, int)} */
+	public static final int MAX_PAGE_LIMIT = 1000;
+	/** Largest number of messages accepted by {@link #createMessages(List)} */
+	public static final int MAX_BATCH_SIZE = 1000;
+	/** Deepest search result reachable by {@link #searchMessages(String, String, int)} */
+	public static final int MAX_SEARCH_RESULTS = 10000;
+
+    MessageStore messageRepository;
 	AccountRepository accountRepository;
+	AccountIdIndex accountIdIndex;
+	MessageCache messageCache;
+	TimelineCache timelineCache;
+	MessageSearchIndex searchIndex;
+	FollowService followService;
+	MessageWriteBehind writeBehind;
+	ReadYourWrites readYourWrites;
+	ObjectWriter messageWriter;
+	int exportFetchSize;
+	int streamPageSize;
 
     // CONSTRUCTORS //
     @Autowired
-    public MessageService(MessageRepository messageRepository, AccountRepository accountRepository) {
+    public MessageService(MessageStore messageRepository, AccountRepository accountRepository,
+			AccountIdIndex accountIdIndex, MessageCache messageCache, TimelineCache timelineCache,
+			MessageSearchIndex searchIndex, FollowService followService, ObjectProvider<MessageWriteBehind> writeBehind,
+			ReadYourWrites readYourWrites, ObjectMapper objectMapper,
+			@Value("${app.messages.export.fetch-size:500}") int exportFetchSize,
+			@Value("${app.messages.stream.page-size:500}") int streamPageSize) {
         this.messageRepository = messageRepository;
 		this.accountRepository = accountRepository;
+		this.accountIdIndex = accountIdIndex;
+		this.messageCache = messageCache;
+		this.timelineCache = timelineCache;
+		this.searchIndex = searchIndex;
+		this.followService = followService;
+		this.writeBehind = writeBehind.getIfAvailable();
+		if (this.writeBehind != null) {
+			this.writeBehind.setOnWritten(messages -> messages.forEach(this::indexAddedMessage));
+		}
+		this.readYourWrites = readYourWrites;
+		// NDJSON: no separator between root values, a newline is written after
+		// each one; the servlet container owns (and flushes) the output stream
+		this.messageWriter = objectMapper.writerFor(Message.class)
+				.withRootValueSeparator("")
+				.without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+				.without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+		this.exportFetchSize = exportFetchSize;
+		this.streamPageSize = streamPageSize;
     }
 
     // CREATE OPERATIONS //
 	/** 
 	 * This registers a new message into the "message" database table. 
 	 *  
+	 * In write-behind mode (see MessageWriteBehind) the message is only
+	 * queued for insertion, and returned with its assigned ID and a 202
+	 * status; or with a 503 status if the queue is full. 
+	 *  
 	 * @param message   The new message to be created 
 	 *  
-	 * @return	Message if it was successfully persisted; or "null" if it 
-	 *		    wasn't successfully persisted or if new message text is blank 
-	 *		    or too long, or poster isn't in database
+	 * @return	Message if it was successfully persisted (or queued); or 
+	 *		    "null" if it wasn't successfully persisted or if new message 
+	 *		    text is blank or too long, or poster isn't in database
 	 */
-	@Transactional
 	public ResponseEntity<Message> createMessage(Message message) { 
+		return createMessage(message, true);
+	} 
+
+	/**
+	 * This registers a new message posted by an authenticated account, whose
+	 * ID comes from a verified session token rather than the request body.
+	 * The token proves the account exists, so it isn't looked up.
+	 *
+	 * @param accountId	ID of the authenticated poster
+	 * @param message	The new message to be created; its "postedBy" is
+	 *					replaced with "accountId"
+	 *
+	 * @return	Message if it was successfully persisted; or "null" if it
+	 *		    wasn't successfully persisted or if new message text is blank
+	 *		    or too long
+	 */
+	public ResponseEntity<Message> createMessageAs(int accountId, Message message) {
+		message.setPostedBy(accountId);
+		return createMessage(message, false);
+	}
+
+	private ResponseEntity<Message> createMessage(Message message, boolean checkPoster) { 
 		// Check message text isn't blank 
 		if(message.getMessageText() == "") { 
 			return ResponseEntity.status(400).body(null); 
@@ -49,14 +146,21 @@ public class MessageService {
 		}
 
 		// Check if message poster is a user in the database
-		if(this.accountRepository.findByAccountId(message.getPostedBy()) == null) {
+		if(checkPoster && !accountExists(message.getPostedBy())) {
 			return ResponseEntity.status(400).body(null);
 		}
- 
+
+		if (this.writeBehind != null) {
+			if (!this.writeBehind.enqueue(message)) { // Writer can't keep up
+				return ResponseEntity.status(503).body(null);
+			}
+			return ResponseEntity.status(202).body(message);
+		}
 
         Message addedMessage = this.messageRepository.save(message);
 
         if (addedMessage != null) { // Message successfully created
+			AfterCommit.run(() -> indexAddedMessage(addedMessage));
             return ResponseEntity.status(200).body(addedMessage);
 
         } else { // Creation failed due to other error
@@ -64,44 +168,487 @@ public class MessageService {
         }
 	} 
  
+	/**
+	 * This registers a batch of new messages into the "message" database
+	 * table, in one transaction.
+	 *
+	 * Each message is validated with the same rules as createMessage, but the
+	 * existence of all the distinct posters is checked with a single query,
+	 * and the valid messages are inserted with JDBC batching. Invalid messages
+	 * don't prevent the valid ones from being created.
+	 *
+	 * @param messages	The new messages to be created
+	 *
+	 * @return	the outcome of each message, in the order they were given; or
+	 *			"null" if the batch is empty or has more than 1000 messages
+	 */
+	@Transactional
+	public ResponseEntity<List<MessageBatchResult>> createMessages(List<Message> messages) {
+		// Check batch isn't empty or too large
+		if(messages == null || messages.isEmpty() || messages.size() > MAX_BATCH_SIZE) {
+			return ResponseEntity.status(400).body(null);
+		}
+
+		return createMessages(messages, findExistingPosterIds(messages));
+	}
+
+	/**
+	 * This registers a batch of new messages posted by an authenticated
+	 * account, like createMessageAs: every message's "postedBy" is replaced
+	 * with "accountId", and the account isn't looked up.
+	 *
+	 * @param accountId	ID of the authenticated poster
+	 * @param messages	The new messages to be created
+	 *
+	 * @return	the outcome of each message, in the order they were given; or
+	 *			"null" if the batch is empty or has more than 1000 messages
+	 */
+	@Transactional
+	public ResponseEntity<List<MessageBatchResult>> createMessagesAs(int accountId, List<Message> messages) {
+		// Check batch isn't empty or too large
+		if(messages == null || messages.isEmpty() || messages.size() > MAX_BATCH_SIZE) {
+			return ResponseEntity.status(400).body(null);
+		}
+
+		for (Message message : messages) {
+			message.setPostedBy(accountId);
+		}
+		return createMessages(messages, Collections.singleton(accountId));
+	}
+
+	/**
+	 * Returns which of the posters of the messages are users in the database,
+	 * looking up the posters missing from the AccountIdIndex in one query.
+	 */
+	private Set<Integer> findExistingPosterIds(List<Message> messages) {
+		Set<Integer> existingPosterIds = new HashSet<Integer>();
+		Set<Integer> unknownPosterIds = new HashSet<Integer>();
+		for (Message message : messages) {
+			Integer postedBy = message.getPostedBy();
+			if (postedBy != null && !existingPosterIds.contains(postedBy)) {
+				if (this.accountIdIndex.contains(postedBy)) {
+					existingPosterIds.add(postedBy);
+				} else {
+					unknownPosterIds.add(postedBy);
+				}
+			}
+		}
+		if (!unknownPosterIds.isEmpty()) {
+			for (Integer accountId : this.accountRepository.findExistingAccountIds(unknownPosterIds)) {
+				this.accountIdIndex.add(accountId);
+				existingPosterIds.add(accountId);
+			}
+		}
+		return existingPosterIds;
+	}
+
+	private ResponseEntity<List<MessageBatchResult>> createMessages(List<Message> messages, Set<Integer> existingPosterIds) {
+		List<MessageBatchResult> results = new ArrayList<MessageBatchResult>(messages.size());
+		List<Message> messagesToAdd = new ArrayList<Message>(messages.size());
+		for (Message message : messages) {
+			String messageText = message.getMessageText();
+			if (messageText == null || messageText.isEmpty() || messageText.length() > 253
+					|| !existingPosterIds.contains(message.getPostedBy())) {
+				results.add(new MessageBatchResult(400, null));
+			} else {
+				// IDs are always generated, never taken from the request
+				message.setMessageId(null);
+				messagesToAdd.add(message);
+				results.add(new MessageBatchResult(200, message));
+			}
+		}
+
+		List<Message> addedMessages = this.messageRepository.saveAll(messagesToAdd);
+
+		AfterCommit.run(() -> addedMessages.forEach(this::indexAddedMessage));
+		return ResponseEntity.status(200).body(results);
+	}
+ 
 	// READ OPERATIONS // 
 	/** 
-	 * Gets all messages. 
+	 * Gets all messages, ordered by ID. They are read as a projection, so
+	 * the persistence context neither tracks nor snapshots them. 
 	 *  
 	 * @return  All messages
 	 */
 	@Transactional(readOnly = true)
 	public ResponseEntity<List<Message>> getAllMessages() { 
-        List<Message> messages = this.messageRepository.findAll();
+        List<Message> messages = this.messageRepository.findAllMessages();
 
         return ResponseEntity.status(200).body(messages);
 	} 
+
+	/**
+	 * Gets the messages posted in a time range, ordered by (timePostedEpoch,
+	 * messageId). Only the range is read from the database.
+	 *
+	 * @param since	earliest timePostedEpoch (inclusive), or "null" for no
+	 *				lower bound
+	 * @param until	latest timePostedEpoch (inclusive), or "null" for no
+	 *				upper bound
+	 *
+	 * @return	messages posted in the range, or "null" if "since" is after
+	 *			"until"
+	 */
+	@Transactional(readOnly = true)
+	public ResponseEntity<List<Message>> getMessagesPostedBetween(Long since, Long until) {
+		long from = since == null ? Long.MIN_VALUE : since;
+		long to = until == null ? Long.MAX_VALUE : until;
+		// Check range isn't reversed
+		if(from > to) {
+			return ResponseEntity.status(400).body(null);
+		}
+
+		return ResponseEntity.status(200).body(this.messageRepository.findAllPostedBetween(from, to));
+	}
+
+	/**
+	 * Gets all messages, ordered by ID like getAllMessages(), as an Iterable
+	 * that reads them lazily "app.messages.stream.page-size" rows at a time
+	 * while the response is being written.
+	 *
+	 * The next page is only read once the previous one has been serialized
+	 * and accepted by the socket, so a slow client holds back the reads
+	 * instead of the whole table piling up in memory. Each page is its own
+	 * short query, so no transaction or cursor stays open for the length of
+	 * the response.
+	 *
+	 * @return	all messages, read on iteration
+	 */
+	public ResponseEntity<Iterable<Message>> streamAllMessages() {
+		Iterable<Message> messages = () -> new Iterator<Message>() {
+			Iterator<Message> page = Collections.emptyIterator();
+			int lastId = 0;
+			boolean lastPage = false;
+
+			@Override
+			public boolean hasNext() {
+				if (!this.page.hasNext() && !this.lastPage) {
+					List<Message> next = messageRepository.findPageAfterId(this.lastId, streamPageSize);
+					this.lastPage = next.size() < streamPageSize;
+					if (!next.isEmpty()) {
+						this.lastId = next.get(next.size() - 1).getMessageId();
+					}
+					this.page = next.iterator();
+				}
+				return this.page.hasNext();
+			}
+
+			@Override
+			public Message next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return this.page.next();
+			}
+		};
+
+		return ResponseEntity.status(200).body(messages);
+	}
+
+	/**
+	 * Gets one page of messages, ordered by (timePostedEpoch, messageId),
+	 * using keyset pagination so each request only reads "limit" rows no
+	 * matter how large the table is.
+	 *
+	 * @param after	cursor ("timePostedEpoch:messageId") of the last message
+	 *				of the previous page, or "null" for the first page
+	 * @param limit	maximum number of messages on the page
+	 *
+	 * @return	page of messages with the cursor of the next page, or "null"
+	 *			if the cursor or limit were invalid
+	 */
+	@Transactional(readOnly = true)
+	public ResponseEntity<MessagePage> getMessagesPage(String after, int limit) {
+		// Check limit is within bounds
+		if(limit < 1 || limit > MAX_PAGE_LIMIT) {
+			return ResponseEntity.status(400).body(null);
+		}
+
+		// Fetch one extra row to know whether there is a next page
+		Pageable pageable = PageRequest.of(0, limit + 1);
+		List<Message> messages;
+
+		if (after == null || after.isEmpty()) { // First page
+			messages = this.messageRepository.findFirstPage(pageable);
+
+		} else { // Page following the cursor
+			String[] cursor = after.split(":", -1);
+			if (cursor.length != 2) {
+				return ResponseEntity.status(400).body(null);
+			}
+			long afterTime;
+			int afterId;
+			try {
+				afterTime = Long.parseLong(cursor[0]);
+				afterId = Integer.parseInt(cursor[1]);
+			} catch (NumberFormatException e) {
+				return ResponseEntity.status(400).body(null);
+			}
+			messages = this.messageRepository.findPageAfter(afterTime, afterId, pageable);
+		}
+
+		String nextCursor = null;
+		if (messages.size() > limit) { // There is at least one more page
+			messages = messages.subList(0, limit);
+			nextCursor = MessagePage.cursorOf(messages.get(limit - 1));
+		}
+
+		return ResponseEntity.status(200).body(new MessagePage(messages, nextCursor));
+	}
+
+	/**
+	 * Exports all messages as newline-delimited JSON (one message per line),
+	 * ordered by (timePostedEpoch, messageId).
+	 *
+	 * The table is read with keyset pagination, as by getMessagesPage
+	 * ("app.messages.export.fetch-size" rows per query), and each page is
+	 * written to the client before the next is read, so only one page and
+	 * never the JSON document is held in memory, whatever the database
+	 * driver buffers for a cursor. The body runs after this method returns;
+	 * each page is its own short query, so no transaction stays open for the
+	 * length of the export.
+	 *
+	 * @return	streaming body writing all messages
+	 */
+	public ResponseEntity<StreamingResponseBody> exportMessages() {
+		StreamingResponseBody body = outputStream -> {
+			Pageable pageable = PageRequest.of(0, this.exportFetchSize);
+			try (JsonGenerator generator = this.messageWriter.createGenerator(outputStream)) {
+				List<Message> page = this.messageRepository.findFirstPage(pageable);
+				while (true) {
+					for (Message message : page) {
+						this.messageWriter.writeValue(generator, message);
+						generator.writeRaw('\n');
+					}
+					if (page.size() < this.exportFetchSize) { // Last page
+						break;
+					}
+					Message last = page.get(page.size() - 1);
+					long lastTime = last.getTimePostedEpoch() == null ? Long.MIN_VALUE : last.getTimePostedEpoch();
+					page = this.messageRepository.findPageAfter(lastTime, last.getMessageId(), pageable);
+				}
+			}
+		};
+
+		return ResponseEntity.status(200).contentType(MediaType.APPLICATION_NDJSON).body(body);
+	}
  
 	/** 
-	 * Gets all messages by one account. 
+	 * Gets all messages by one account, ordered by ID. 
+	 *  
+	 * The IDs of an account's messages are read through the TimelineCache and
+	 * the messages themselves through the MessageCache, so only cache misses
+	 * join or start a (read-only) transaction. 
 	 *  
 	 * @param account_id    ID of the account that we want all messages from
 	 * 
 	 * @return  All messages by one account 
 	 */
-	@Transactional(readOnly = true)
+	@Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
 	public ResponseEntity<List<Message>> getAllMessagesByAccount(int accountId) {
-        List<Message> messages = this.messageRepository.findAllByPostedBy(accountId);
+		this.readYourWrites.reading(ReadYourWrites.ACCOUNT, accountId);
+		int[] messageIds = this.timelineCache.get(accountId);
+
+		if (messageIds == null) { // Timeline not cached
+			long timelineStamp = this.timelineCache.stamp();
+			long messageStamp = this.messageCache.stamp();
+			List<Message> messages = this.messageRepository.findAllByPostedBy(accountId);
+
+			if (messages.size() <= this.timelineCache.getMaxLength()) {
+				messageIds = new int[messages.size()];
+				for (int i = 0; i < messageIds.length; i++) {
+					Message message = messages.get(i);
+					messageIds[i] = message.getMessageId();
+					this.messageCache.putIfNotInvalidated(message.getMessageId(), message, messageStamp);
+				}
+				this.timelineCache.putIfNotInvalidated(accountId, messageIds, timelineStamp);
+			}
+			return ResponseEntity.status(200).body(messages);
+		}
 
-		return ResponseEntity.status(200).body(messages); 
+		// Timeline cached, fetch only the messages missing from the MessageCache
+		Message[] messages = findMessages(messageIds);
+
+		// Skip messages deleted since the timeline was cached
+		List<Message> timeline = new ArrayList<Message>(messages.length);
+		for (Message message : messages) {
+			if (message != null) {
+				timeline.add(message);
+			}
+		}
+		return ResponseEntity.status(200).body(timeline); 
 	} 
  
+	/**
+	 * Searches the text of all messages, returning those containing every
+	 * word of the query (case-insensitive) ranked by relevance, one page at
+	 * a time.
+	 *
+	 * Matches are found in the MessageSearchIndex and the messages read
+	 * through the MessageCache, so only cache misses join or start a
+	 * (read-only) transaction.
+	 *
+	 * @param query	words to search for
+	 * @param after	cursor returned with the previous page, or "null" for
+	 *				the first page
+	 * @param limit	maximum number of messages on the page
+	 *
+	 * @return	page of matching messages with the cursor of the next page,
+	 *			or "null" if the query has no words, or the cursor or limit
+	 *			were invalid
+	 */
+	@Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+	public ResponseEntity<MessageSearchPage> searchMessages(String query, String after, int limit) {
+		// Check query has at least one word and limit is within bounds
+		if(InvertedIndex.terms(query).isEmpty() || limit < 1 || limit > MAX_PAGE_LIMIT) {
+			return ResponseEntity.status(400).body(null);
+		}
+		// The cursor is the number of results on the previous pages
+		int offset = 0;
+		if (after != null && !after.isEmpty()) {
+			try {
+				offset = Integer.parseInt(after);
+			} catch (NumberFormatException e) {
+				return ResponseEntity.status(400).body(null);
+			}
+		}
+		if(offset < 0 || offset > MAX_SEARCH_RESULTS - limit) {
+			return ResponseEntity.status(400).body(null);
+		}
+
+		// Fetch one extra match to know whether there is a next page
+		int[] matchIds = this.searchIndex.search(query, offset, limit + 1);
+		String nextCursor = null;
+		if (matchIds.length > limit) {
+			matchIds = Arrays.copyOf(matchIds, limit);
+			nextCursor = String.valueOf(offset + limit);
+		}
+
+		// Skip messages deleted or edited since they were indexed
+		List<Message> matches = new ArrayList<Message>(matchIds.length);
+		for (Message message : findMessages(matchIds)) {
+			if (message != null && InvertedIndex.matches(message.getMessageText(), query)) {
+				matches.add(message);
+			}
+		}
+		return ResponseEntity.status(200).body(new MessageSearchPage(matches, nextCursor));
+	}
+
+	/**
+	 * Gets the messages by one account posted in a time range, ordered by
+	 * (timePostedEpoch, messageId). Only the range is read from the database;
+	 * the account's cached timeline isn't used.
+	 *
+	 * @param accountId	ID of the account that we want messages from
+	 * @param since	earliest timePostedEpoch (inclusive), or "null" for no
+	 *				lower bound
+	 * @param until	latest timePostedEpoch (inclusive), or "null" for no
+	 *				upper bound
+	 *
+	 * @return	messages by the account posted in the range, or "null" if
+	 *			"since" is after "until"
+	 */
+	@Transactional(readOnly = true)
+	public ResponseEntity<List<Message>> getMessagesByAccountPostedBetween(int accountId, Long since, Long until) {
+		long from = since == null ? Long.MIN_VALUE : since;
+		long to = until == null ? Long.MAX_VALUE : until;
+		// Check range isn't reversed
+		if(from > to) {
+			return ResponseEntity.status(400).body(null);
+		}
+
+		this.readYourWrites.reading(ReadYourWrites.ACCOUNT, accountId);
+		return ResponseEntity.status(200).body(this.messageRepository.findAllByPostedByPostedBetween(accountId, from, to));
+	}
+
+	/**
+	 * Gets one page of the home feed of an account: the messages of the
+	 * accounts it follows, newest (highest ID) first.
+	 *
+	 * The feed comes precomputed from FollowService, so only the followed
+	 * celebrities' messages are looked up, through the TimelineCache or a
+	 * range scan of at most "limit" IDs each, and k-way merged with it. A
+	 * page thus costs O(limit) plus O(limit) per followed celebrity, no
+	 * matter how many accounts are followed. Feeds go back at most
+	 * "app.feed.max-length" messages of the accounts that are fanned out to.
+	 *
+	 * @param accountId	ID of the account whose feed to read
+	 * @param after	cursor returned with the previous page, or "null" for
+	 *				the first page
+	 * @param limit	maximum number of messages on the page
+	 *
+	 * @return	page of the feed with the cursor of the next page, or "null"
+	 *			if the cursor or limit were invalid
+	 */
+	@Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+	public ResponseEntity<FeedPage> getFeed(int accountId, String after, int limit) {
+		// Check limit is within bounds
+		if(limit < 1 || limit > MAX_PAGE_LIMIT) {
+			return ResponseEntity.status(400).body(null);
+		}
+		// The cursor is the ID of the last message of the previous page
+		int before = Integer.MAX_VALUE;
+		if (after != null && !after.isEmpty()) {
+			try {
+				before = Integer.parseInt(after);
+			} catch (NumberFormatException e) {
+				return ResponseEntity.status(400).body(null);
+			}
+		}
+
+		FeedCache.Feed feed = this.followService.getFeed(accountId);
+		int[] feedIds = feed.getMessageIds();
+		int[] mergedAccountIds = feed.getMergedAccountIds();
+		// Fetch one extra message to know whether there is a next page
+		int[][] sources = new int[mergedAccountIds.length + 1][];
+		sources[0] = newestBefore(feedIds, before, limit + 1);
+		for (int i = 0; i < mergedAccountIds.length; i++) {
+			sources[i + 1] = newestMessageIdsBefore(mergedAccountIds[i], before, limit + 1);
+		}
+		// A full feed has dropped older messages, so don't read past its oldest
+		int oldest = feed.isTruncated() ? feedIds[0] : Integer.MIN_VALUE;
+		int[] pageIds = mergeNewest(sources, limit + 1, oldest);
+
+		String nextCursor = null;
+		if (pageIds.length > limit) { // There is at least one more page
+			pageIds = Arrays.copyOf(pageIds, limit);
+			nextCursor = String.valueOf(pageIds[limit - 1]);
+		}
+
+		// Skip messages deleted since they were fanned out
+		List<Message> messages = new ArrayList<Message>(pageIds.length);
+		for (Message message : findMessages(pageIds)) {
+			if (message != null) {
+				messages.add(message);
+			}
+		}
+		return ResponseEntity.status(200).body(new FeedPage(messages, nextCursor));
+	}
+
 	/** 
 	 * Gets message with the corresponding ID. 
 	 *  
+	 * Messages are read through the MessageCache. Only a cache miss joins or
+	 * starts a (read-only) transaction, so hits never check out a connection.
+	 *  
 	 * @param message_id    ID of the message that we want
 	 * 
 	 * @return	Singular message with the specified ID, or "null" if it wasn't 
 	 *			successfully retrieved 
 	 */
-	@Transactional(readOnly = true)
+	@Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
 	public ResponseEntity<Message> getMessage(int messageId) {
-        Message message = this.messageRepository.findByMessageId(messageId);
+		Message message = this.messageCache.get(messageId);
+
+		if (message == null) { // Cache miss
+			this.readYourWrites.reading(ReadYourWrites.MESSAGE, messageId);
+			long stamp = this.messageCache.stamp();
+			message = this.messageRepository.findByMessageId(messageId);
+			if (message != null) {
+				this.messageCache.putIfNotInvalidated(messageId, message, stamp);
+			}
+		}
 
 		return ResponseEntity.status(200).body(message); 
 	} 
@@ -130,15 +677,22 @@ public class MessageService {
 		}
 
 
-		Message messageToUpdate = this.messageRepository.findByMessageId(messageId);
-
-		if (messageToUpdate != null) { // Message already exists
-			messageToUpdate.setMessageText(message.getMessageText());
-			Message updatedMessage = this.messageRepository.save(messageToUpdate);
+		int updatedMessageCount = this.messageRepository.updateMessageText(messageId, message.getMessageText());
 
-			if (updatedMessage != null) { // Message successfully updated
-				return ResponseEntity.status(200).body("1");
-			}
+		if (updatedMessageCount != 0) { // Message successfully updated
+			// The poster's timeline shows the new text too
+			Integer postedBy = this.readYourWrites.isEnabled()
+					? this.messageRepository.findPostedByByMessageId(messageId)
+					: null;
+			AfterCommit.run(() -> {
+				this.messageCache.invalidate(messageId);
+				this.searchIndex.update(messageId, message.getMessageText());
+				this.readYourWrites.written(ReadYourWrites.MESSAGE, messageId);
+				if (postedBy != null) {
+					this.readYourWrites.written(ReadYourWrites.ACCOUNT, postedBy);
+				}
+			});
+			return ResponseEntity.status(200).body(String.valueOf(updatedMessageCount));
 		}
 
 		// Pre-existing message not found or updated
@@ -156,13 +710,157 @@ public class MessageService {
 	 */
 	@Transactional()
 	public ResponseEntity<String> deleteMessageById(int messageId) { 
-		int deletedMessageCount = this.messageRepository.deleteByMessageId(messageId);
+		Integer postedBy = this.messageRepository.findPostedByByMessageId(messageId);
+		int deletedMessageCount = postedBy == null ? 0 : this.messageRepository.deleteByMessageId(messageId);
 
 		if (deletedMessageCount != 0) { // Message successfully deleted
+			AfterCommit.run(() -> {
+				this.messageCache.invalidate(messageId);
+				this.timelineCache.removeMessage(postedBy, messageId);
+				this.searchIndex.remove(messageId);
+				this.readYourWrites.written(ReadYourWrites.ACCOUNT, postedBy);
+			});
             return ResponseEntity.status(200).body(String.valueOf(deletedMessageCount));
 
         } else { // Deletion not fulfilled
             return ResponseEntity.status(200).body(""); 
         }
 	} 
+
+	/**
+	 * Adds a message that has just been inserted to the caches and indexes,
+	 * fans it out to its poster's followers' feeds, and has reads of it and
+	 * of its poster's messages go to the primary database for a while (see
+	 * ReadYourWrites).
+	 */
+	private void indexAddedMessage(Message addedMessage) {
+		this.timelineCache.addMessage(addedMessage.getPostedBy(), addedMessage.getMessageId());
+		this.searchIndex.add(addedMessage.getMessageId(), addedMessage.getMessageText());
+		this.followService.fanOut(addedMessage.getPostedBy(), addedMessage.getMessageId());
+		this.readYourWrites.written(ReadYourWrites.ACCOUNT, addedMessage.getPostedBy());
+		this.readYourWrites.written(ReadYourWrites.MESSAGE, addedMessage.getMessageId());
+	}
+
+	/**
+	 * Reads messages through the MessageCache, fetching the ones missing from
+	 * it in a single query.
+	 *
+	 * @param messageIds	IDs of the messages
+	 *
+	 * @return	the messages, in the order of their IDs, with "null" in place
+	 *			of the messages that don't exist
+	 */
+	private Message[] findMessages(int[] messageIds) {
+		Message[] messages = new Message[messageIds.length];
+		List<Integer> missingIds = new ArrayList<Integer>();
+		for (int i = 0; i < messageIds.length; i++) {
+			messages[i] = this.messageCache.get(messageIds[i]);
+			if (messages[i] == null) {
+				missingIds.add(messageIds[i]);
+			}
+		}
+
+		if (!missingIds.isEmpty()) {
+			if (this.readYourWrites.isEnabled()) {
+				for (Integer missingId : missingIds) {
+					this.readYourWrites.reading(ReadYourWrites.MESSAGE, missingId);
+				}
+			}
+			long messageStamp = this.messageCache.stamp();
+			Map<Integer, Message> missingMessages = new HashMap<Integer, Message>();
+			for (Message message : this.messageRepository.findAllByMessageIdIn(missingIds)) {
+				missingMessages.put(message.getMessageId(), message);
+				this.messageCache.putIfNotInvalidated(message.getMessageId(), message, messageStamp);
+			}
+			for (int i = 0; i < messageIds.length; i++) {
+				if (messages[i] == null) {
+					messages[i] = missingMessages.get(messageIds[i]);
+				}
+			}
+		}
+		return messages;
+	}
+
+	/**
+	 * Returns up to "count" of the newest IDs less than "before" from a sorted
+	 * array, newest first.
+	 */
+	private static int[] newestBefore(int[] sortedIds, int before, int count) {
+		int end = Arrays.binarySearch(sortedIds, before);
+		end = end >= 0 ? end : -end - 1;
+		int[] newest = new int[Math.min(count, end)];
+		for (int i = 0; i < newest.length; i++) {
+			newest[i] = sortedIds[end - 1 - i];
+		}
+		return newest;
+	}
+
+	/**
+	 * Returns up to "count" of the newest IDs less than "before" of the
+	 * messages by one account, newest first, from its cached timeline or
+	 * else a range scan.
+	 */
+	private int[] newestMessageIdsBefore(int postedBy, int before, int count) {
+		int[] timeline = this.timelineCache.get(postedBy);
+		if (timeline != null) {
+			return newestBefore(timeline, before, count);
+		}
+		this.readYourWrites.reading(ReadYourWrites.ACCOUNT, postedBy);
+		return this.messageRepository.findMessageIdsByPostedByBefore(postedBy, before, PageRequest.of(0, count))
+				.stream().mapToInt(Integer::intValue).toArray();
+	}
+
+	/**
+	 * K-way merges ID lists sorted newest first into the "count" newest
+	 * distinct IDs not less than "oldest".
+	 */
+	private static int[] mergeNewest(int[][] sources, int count, int oldest) {
+		// Heads of the sources as {id, source, position}, newest on top
+		PriorityQueue<int[]> heads = new PriorityQueue<int[]>(Math.max(1, sources.length),
+				(a, b) -> Integer.compare(b[0], a[0]));
+		for (int i = 0; i < sources.length; i++) {
+			if (sources[i].length > 0) {
+				heads.add(new int[] {sources[i][0], i, 0});
+			}
+		}
+		int[] merged = new int[count];
+		int size = 0;
+		while (size < count && !heads.isEmpty()) {
+			int[] head = heads.poll();
+			if (head[0] < oldest) {
+				break;
+			}
+			if (size == 0 || merged[size - 1] != head[0]) { // Drop duplicates
+				merged[size++] = head[0];
+			}
+			int[] source = sources[head[1]];
+			if (++head[2] < source.length) {
+				head[0] = source[head[2]];
+				heads.add(head);
+			}
+		}
+		return Arrays.copyOf(merged, size);
+	}
+
+	/**
+	 * Checks whether an account exists, using the AccountIdIndex and only
+	 * querying the database for accounts missing from it.
+	 *
+	 * @param accountId	ID of the account, may be "null"
+	 *
+	 * @return	true if the account exists
+	 */
+	private boolean accountExists(Integer accountId) {
+		if (accountId == null) {
+			return false;
+		}
+		if (this.accountIdIndex.contains(accountId)) {
+			return true;
+		}
+		if (this.accountRepository.existsByAccountId(accountId)) {
+			this.accountIdIndex.add(accountId);
+			return true;
+		}
+		return false;
+	}
 }
@@ -0,0 +1,594 @@
+package com.example.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.entity.Message;
+import com.example.id.NodeCounterIdGenerator;
+import com.example.repository.JdbcWrites;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Opt-in write-behind mode of POST /messages ("app.messages.write-behind.enabled"):
+ * validated messages get their ID from the entity's own generator (a
+ * database round trip only once per sequence block) and are appended to a
+ * bounded in-memory queue, and a background writer inserts them in JDBC
+ * batches of up to "app.messages.write-behind.batch-size". The poster gets
+ * a 202 without waiting for the insert, so the message is only readable
+ * once the writer has caught up.
+ *
+ * Every queued message is first appended to a journal file
+ * ("app.messages.write-behind.journal"). After each batch, once the journal
+ * holds a batch worth of messages it is rolled over to a numbered segment
+ * ("{journal}.0", "{journal}.1", ...), and the segments whose messages have
+ * all been written are deleted, so under steady load the journal stays
+ * about the size of the queue; it is emptied whenever the queue is drained.
+ * Until then each batch also appends a checkpoint line ({"written": n})
+ * recording that the first n journaled messages are in the database.
+ * The journal survives a crash of the process; with
+ * "app.messages.write-behind.journal-sync" it is also forced to disk on
+ * each append, to survive a crash of the machine.
+ *
+ * Whatever is left in the segments and the journal after the last
+ * checkpoint is inserted on the next start, so a message written and then
+ * edited or deleted before a crash doesn't come back; before the web server accepts requests and
+ * before the caches and indexes are warmed. IDs are first reserved above
+ * the highest one in the table and the journal, so new messages never get
+ * the ID of a replayed one (the sequence of an in-memory database starts
+ * over after a crash, and a file database can lose its last sequence
+ * updates). A journaled message already in the database with the same
+ * content was written before the crash and is skipped. Any message the
+ * database rejects, like one whose ID is taken by a different row, is
+ * logged as an error and appended to "{journal}.rejected": the poster got a
+ * 202 for it, so it is never silently dropped.
+ *
+ * The queue holds "app.messages.write-behind.capacity" messages. Once it is
+ * full, posters wait up to "app.messages.write-behind.offer-timeout-ms" for
+ * room and are then turned away, so a database that can't keep up slows
+ * posters down instead of growing the queue without bound.
+ */
+@Component
+@ConditionalOnProperty(name = "app.messages.write-behind.enabled", havingValue = "true")
+public class MessageWriteBehind implements SmartLifecycle {
+    private static final Logger log = LoggerFactory.getLogger(MessageWriteBehind.class);
+
+    private static final String INSERT_SQL = "INSERT INTO message (messageId, postedBy, messageText, timePostedEpoch)"
+            + " VALUES (?, ?, ?, ?)";
+    private static final String SELECT_SQL = "SELECT messageId, postedBy, messageText, timePostedEpoch"
+            + " FROM message WHERE messageId = ?";
+    private static final long RETRY_DELAY_MILLIS = 1000;
+    /** Field of a journal line recording how many journaled messages were written */
+    private static final String CHECKPOINT_FIELD = "written";
+
+    private final ArrayBlockingQueue<Message> queue;
+    /** Free slots of the queue, taken before a message is journaled */
+    private final Semaphore free;
+    /**
+     * Guards the journal, its segments and the counters below, so journal
+     * order is queue order
+     */
+    private final Object journalLock = new Object();
+    /** Sealed segments of the journal, oldest first */
+    private final ArrayDeque<Segment> segments = new ArrayDeque<Segment>();
+    private final Path journalPath;
+    private final Path rejectedPath;
+    private final Thread writer;
+    private volatile boolean running = true;
+    private volatile boolean started;
+    private volatile Consumer<List<Message>> onWritten = messages -> { };
+    private List<Message> recovered;
+    private List<Path> recoveredSegments;
+    private int nextSegment;
+    /**
+     * Messages appended to the journal, at the start of the current file, and
+     * written (or rejected); all start over whenever the journal is emptied
+     */
+    private long appended;
+    private long appendedBeforeFile;
+    private long processed;
+
+    JdbcTemplate jdbcTemplate;
+    TransactionTemplate transaction;
+    SessionFactoryImplementor sessionFactory;
+    IdentifierGenerator idGenerator;
+    ObjectMapper objectMapper;
+    FileChannel journal;
+    int batchSize;
+    long offerTimeoutMillis;
+    boolean journalSync;
+
+    // CONSTRUCTORS //
+    @Autowired
+    public MessageWriteBehind(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+            EntityManagerFactory entityManagerFactory, ObjectMapper objectMapper,
+            @Value("${app.messages.write-behind.capacity:10000}") int capacity,
+            @Value("${app.messages.write-behind.batch-size:500}") int batchSize,
+            @Value("${app.messages.write-behind.offer-timeout-ms:100}") long offerTimeoutMillis,
+            @Value("${app.messages.write-behind.journal:data/message-journal.ndjson}") String journal,
+            @Value("${app.messages.write-behind.journal-sync:false}") boolean journalSync) throws IOException {
+        if (capacity < 1 || batchSize < 1) {
+            throw new IllegalArgumentException("app.messages.write-behind.capacity and batch-size must be positive");
+        }
+        this.queue = new ArrayBlockingQueue<Message>(capacity);
+        this.free = new Semaphore(capacity);
+        this.jdbcTemplate = jdbcTemplate;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        this.idGenerator = this.sessionFactory.getMetamodel().entityPersister(Message.class).getIdentifierGenerator();
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+        this.offerTimeoutMillis = offerTimeoutMillis;
+        this.journalSync = journalSync;
+
+        this.journalPath = Paths.get(journal).toAbsolutePath();
+        this.rejectedPath = this.journalPath.resolveSibling(this.journalPath.getFileName() + ".rejected");
+        Files.createDirectories(this.journalPath.getParent());
+        this.recoveredSegments = findSegments();
+        List<Message> journaled = new ArrayList<Message>();
+        long written = 0;
+        for (Path segment : this.recoveredSegments) {
+            written = Math.max(written, readJournal(segment, journaled));
+            this.nextSegment = Math.max(this.nextSegment, segmentNumber(segment) + 1);
+        }
+        written = Math.max(written, readJournal(this.journalPath, journaled));
+        this.recovered = new ArrayList<Message>(journaled.subList((int) Math.min(written, journaled.size()),
+                journaled.size()));
+        this.journal = openJournal();
+        this.writer = new Thread(this::writeQueued, "message-write-behind");
+        this.writer.setDaemon(true);
+    }
+
+    /**
+     * Reserves IDs above every stored or journaled one, inserts the messages
+     * left in the journal by a previous run, then starts the writer. Runs
+     * before the web server starts, and so before any message is posted or
+     * the caches and indexes are warmed from the database.
+     */
+    @Override
+    public void start() {
+        reserveIds();
+        if (!this.recovered.isEmpty()) {
+            log.info("Recovering {} journaled messages", this.recovered.size());
+            for (int from = 0; from < this.recovered.size(); from += this.batchSize) {
+                insert(this.recovered.subList(from, Math.min(from + this.batchSize, this.recovered.size())));
+            }
+        }
+        synchronized (this.journalLock) {
+            try {
+                for (Path segment : this.recoveredSegments) {
+                    Files.deleteIfExists(segment);
+                }
+                this.journal.truncate(0);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to empty the recovered message journal", e);
+            }
+        }
+        this.recovered = null;
+        this.recoveredSegments = null;
+        this.writer.start();
+        this.started = true;
+    }
+
+    /**
+     * Stops the writer once it has inserted everything queued, after the web
+     * server has stopped taking requests.
+     */
+    @Override
+    public void stop() {
+        shutdown();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return this.started && this.running;
+    }
+
+    /**
+     * Starts just before the web server (Integer.MAX_VALUE - 1), and so
+     * stops just after it.
+     */
+    @Override
+    public int getPhase() {
+        return Integer.MAX_VALUE - 2;
+    }
+
+    /**
+     * Sets what to do with messages once the writer has inserted them, like
+     * updating caches and indexes. Only called with the messages that were
+     * actually inserted, and not for recovered messages.
+     * @param onWritten
+     */
+    public void setOnWritten(Consumer<List<Message>> onWritten) {
+        this.onWritten = onWritten;
+    }
+
+    /**
+     * Assigns the message an ID, journals it and queues it for insertion.
+     * @param message	validated message, whose ID is replaced
+     * @return	true if it was queued; false if the queue stayed full for the
+     *			offer timeout
+     * @throws UncheckedIOException	if the journal couldn't be written
+     */
+    public boolean enqueue(Message message) {
+        try {
+            if (!this.free.tryAcquire(this.offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                return false;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        try {
+            message.setMessageId(generateId(message));
+            ByteBuffer line = ByteBuffer.wrap((this.objectMapper.writeValueAsString(message) + "\n")
+                    .getBytes(StandardCharsets.UTF_8));
+            synchronized (this.journalLock) {
+                while (line.hasRemaining()) {
+                    this.journal.write(line);
+                }
+                if (this.journalSync) {
+                    this.journal.force(false);
+                }
+                this.queue.add(message);
+                this.appended++;
+            }
+            return true;
+        } catch (IOException e) {
+            this.free.release();
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            this.free.release();
+            throw e;
+        }
+    }
+
+    /**
+     * @return	number of messages waiting to be inserted
+     */
+    public int size() {
+        return this.queue.size();
+    }
+
+    /**
+     * Stops the writer once it has inserted everything queued.
+     */
+    @PreDestroy
+    public void shutdown() {
+        this.running = false;
+        if (this.writer.isAlive()) {
+            try {
+                this.writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this.journalLock) {
+            try {
+                this.journal.close();
+            } catch (IOException e) {
+                log.warn("Failed to close the message journal", e);
+            }
+        }
+    }
+
+    private Integer generateId(Message message) {
+        try (StatelessSession session = this.sessionFactory.openStatelessSession()) {
+            return (Integer) this.idGenerator.generate((SharedSessionContractImplementor) session, message);
+        }
+    }
+
+    /**
+     * Moves the ID generator past the highest message ID in the table and
+     * the journal.
+     */
+    private void reserveIds() {
+        Long storedMaxId = this.jdbcTemplate.queryForObject("SELECT MAX(messageId) FROM message", Long.class);
+        long maxId = storedMaxId == null ? 0 : storedMaxId;
+        for (Message message : this.recovered) {
+            if (message.getMessageId() != null) {
+                maxId = Math.max(maxId, message.getMessageId());
+            }
+        }
+        try (StatelessSession session = this.sessionFactory.openStatelessSession()) {
+            Transaction transaction = session.beginTransaction();
+            ((NodeCounterIdGenerator) this.idGenerator).reserveAbove((SharedSessionContractImplementor) session, maxId);
+            transaction.commit();
+        }
+    }
+
+    /**
+     * Writer loop: takes up to a batch of queued messages at a time, and
+     * trims the journal after each.
+     */
+    private void writeQueued() {
+        List<Message> batch = new ArrayList<Message>(this.batchSize);
+        while (this.running || !this.queue.isEmpty()) {
+            try {
+                Message first = this.queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+            } catch (InterruptedException e) {
+                continue;
+            }
+            this.queue.drainTo(batch, this.batchSize - 1);
+            List<Message> inserted = insert(batch);
+            if (inserted == null) {
+                return; // Shutting down without a database; the journal keeps the batch
+            }
+            this.free.release(batch.size());
+            trimJournal(batch.size());
+            if (!inserted.isEmpty()) {
+                try {
+                    this.onWritten.accept(inserted);
+                } catch (RuntimeException e) {
+                    log.error("Failed to index written messages", e);
+                }
+            }
+            batch = new ArrayList<Message>(this.batchSize);
+        }
+    }
+
+    /**
+     * Records that the writer is done with the next "count" journaled
+     * messages: empties the journal if nothing is queued anymore, otherwise
+     * rolls it over to a new segment once it holds a batch worth of
+     * messages, deletes the segments that are done and appends a checkpoint
+     * for the messages left in the files.
+     */
+    private void trimJournal(int count) {
+        synchronized (this.journalLock) {
+            this.processed += count;
+            try {
+                if (this.queue.isEmpty()) { // Done with every journaled message
+                    while (!this.segments.isEmpty()) {
+                        Files.deleteIfExists(this.segments.poll().path);
+                    }
+                    this.journal.truncate(0);
+                    this.appended = 0;
+                    this.appendedBeforeFile = 0;
+                    this.processed = 0;
+                    return;
+                }
+                if (this.appended - this.appendedBeforeFile >= this.batchSize) {
+                    rollOver();
+                }
+                while (!this.segments.isEmpty() && this.segments.peek().end <= this.processed) {
+                    Files.deleteIfExists(this.segments.poll().path);
+                }
+                ByteBuffer checkpoint = ByteBuffer.wrap(("{\"" + CHECKPOINT_FIELD + "\":" + this.processed + "}\n")
+                        .getBytes(StandardCharsets.UTF_8));
+                while (checkpoint.hasRemaining()) {
+                    this.journal.write(checkpoint);
+                }
+                if (this.journalSync) {
+                    this.journal.force(false);
+                }
+            } catch (IOException e) {
+                log.warn("Failed to trim the message journal", e);
+            }
+        }
+    }
+
+    /**
+     * Seals the journal file as the next segment and starts a new one. Must
+     * hold the journalLock.
+     */
+    private void rollOver() throws IOException {
+        Path segment = this.journalPath.resolveSibling(this.journalPath.getFileName() + "." + this.nextSegment);
+        this.journal.close();
+        try {
+            Files.move(this.journalPath, segment, StandardCopyOption.ATOMIC_MOVE);
+            this.nextSegment++;
+            this.segments.add(new Segment(segment, this.appended));
+            this.appendedBeforeFile = this.appended;
+        } finally {
+            this.journal = openJournal();
+        }
+    }
+
+    /**
+     * Inserts the messages in one batch, falling back to one at a time if
+     * the database rejects any: a message already stored with the same
+     * content counts as inserted (a previous run or attempt wrote it), the
+     * others are rejected. Other failures (like the database being down) are
+     * retried until the application shuts down.
+     * @return	the messages inserted, or null if they couldn't be inserted
+     *			before shutdown
+     */
+    private List<Message> insert(List<Message> messages) {
+        while (true) {
+            try {
+                try {
+                    this.transaction.executeWithoutResult(status -> batchInsert(messages));
+                    return messages;
+                } catch (DataIntegrityViolationException e) {
+                    List<Message> inserted = new ArrayList<Message>(messages.size());
+                    for (Message message : messages) {
+                        if (insertOne(message)) {
+                            inserted.add(message);
+                        }
+                    }
+                    return inserted;
+                }
+            } catch (DataAccessException e) {
+                if (!this.running) {
+                    log.error("Failed to write {} messages before shutdown, they stay in the journal", messages.size(), e);
+                    return null;
+                }
+                log.warn("Failed to write {} messages, retrying", messages.size(), e);
+                try {
+                    Thread.sleep(RETRY_DELAY_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return	true if the message was inserted or already stored
+     */
+    private boolean insertOne(Message message) {
+        try {
+            batchInsert(List.of(message));
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            List<Message> stored = this.jdbcTemplate.query(SELECT_SQL, (row, i) -> new Message(row.getInt(1),
+                    (Integer) row.getObject(2), row.getString(3), (Long) row.getObject(4)), message.getMessageId());
+            if (stored.size() == 1 && stored.get(0).equals(message)) {
+                return true;
+            }
+            reject(message, e.getMostSpecificCause().getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Keeps a message the database refused in the rejected file, for an
+     * operator to look at.
+     */
+    private void reject(Message message, String reason) {
+        log.error("Accepted message {} can't be stored, moving it to {}: {}", message, this.rejectedPath, reason);
+        try {
+            Files.write(this.rejectedPath, (this.objectMapper.writeValueAsString(message) + "\n").getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            log.error("Failed to keep rejected message {}", message, e);
+        }
+    }
+
+    private void batchInsert(List<Message> messages) {
+        JdbcWrites.invalidateQueries(this.sessionFactory, Message.class);
+        this.jdbcTemplate.batchUpdate(INSERT_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement statement, int i) throws SQLException {
+                Message message = messages.get(i);
+                statement.setInt(1, message.getMessageId());
+                statement.setObject(2, message.getPostedBy());
+                statement.setString(3, message.getMessageText());
+                statement.setObject(4, message.getTimePostedEpoch());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return messages.size();
+            }
+        });
+    }
+
+    private FileChannel openJournal() throws IOException {
+        return FileChannel.open(this.journalPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    /**
+     * @return	the journal's segments, oldest first
+     */
+    private List<Path> findSegments() throws IOException {
+        String prefix = this.journalPath.getFileName() + ".";
+        List<Path> segments = new ArrayList<Path>();
+        try (Stream<Path> files = Files.list(this.journalPath.getParent())) {
+            files.filter(file -> {
+                String name = file.getFileName().toString();
+                return name.startsWith(prefix) && name.length() > prefix.length()
+                        && name.substring(prefix.length()).chars().allMatch(Character::isDigit);
+            }).forEach(segments::add);
+        }
+        segments.sort(Comparator.comparingInt(MessageWriteBehind::segmentNumber));
+        return segments;
+    }
+
+    private static int segmentNumber(Path segment) {
+        String name = segment.getFileName().toString();
+        return Integer.parseInt(name.substring(name.lastIndexOf('.') + 1));
+    }
+
+    /**
+     * Adds the messages of a journal file to "messages".
+     * @return	the last checkpoint in the file, counting journaled messages
+     *			from the start of the oldest file, or 0 if it has none
+     */
+    private long readJournal(Path journalPath, List<Message> messages) throws IOException {
+        long written = 0;
+        if (!Files.exists(journalPath)) {
+            return written;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(journalPath, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    JsonNode entry = this.objectMapper.readTree(line);
+                    if (entry.has(CHECKPOINT_FIELD)) {
+                        written = entry.get(CHECKPOINT_FIELD).asLong();
+                    } else {
+                        messages.add(this.objectMapper.treeToValue(entry, Message.class));
+                    }
+                } catch (IOException e) { // Torn last line of a crash mid-append
+                    log.warn("Skipping unreadable journal entry: {}", line);
+                }
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Sealed journal file, holding the messages appended before "end".
+     */
+    private static final class Segment {
+        final Path path;
+        final long end;
+
+        Segment(Path path, long end) {
+            this.path = path;
+            this.end = end;
+        }
+    }
+}
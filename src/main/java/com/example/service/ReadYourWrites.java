@@ -0,0 +1,111 @@
+package com.example.service;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.repository.ReplicaRoutingDataSource;
+
+/**
+ * Remembers what was written recently, so that reading it back doesn't go to
+ * a read replica that may not have applied the write yet (see
+ * ReplicaRoutingDataSource). Writes are recorded by kind and ID, for example
+ * an account whose messages changed, and reads of a key written in the last
+ * "app.datasource.replicas.read-your-writes-ms" go to the primary database.
+ * The window should exceed the replicas' usual lag.
+ *
+ * Without replicas (app.datasource.replicas.urls) nothing is recorded.
+ */
+@Component
+public class ReadYourWrites {
+	/** An account, whose messages were posted, edited or deleted */
+	public static final String ACCOUNT = "account";
+	/** A message, whose text was edited */
+	public static final String MESSAGE = "message";
+	/** A username, which was registered */
+	public static final String USERNAME = "username";
+
+	/** Writes between two sweeps of the expired keys */
+	private static final int SWEEP_INTERVAL = 1024;
+
+	boolean enabled;
+	long windowNanos;
+	ConcurrentHashMap<String, Long> deadlines = new ConcurrentHashMap<String, Long>();
+	AtomicInteger writes = new AtomicInteger();
+
+	// CONSTRUCTORS //
+	@Autowired
+	public ReadYourWrites(@Value("${app.datasource.replicas.urls:}") String replicaUrls,
+			@Value("${app.datasource.replicas.read-your-writes-ms:2000}") long windowMs) {
+		this.enabled = !replicaUrls.trim().isEmpty() && windowMs > 0;
+		this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMs);
+	}
+
+	/**
+	 * @return	whether writes are recorded, which is only the case with
+	 *			read replicas
+	 */
+	public boolean isEnabled() {
+		return this.enabled;
+	}
+
+	/**
+	 * Records a write, starting (or restarting) its window. Call it once the
+	 * write has committed.
+	 * @param kind	ACCOUNT, MESSAGE or USERNAME
+	 * @param id
+	 */
+	public void written(String kind, Object id) {
+		if (!this.enabled) {
+			return;
+		}
+		long now = System.nanoTime();
+		this.deadlines.put(kind + ':' + id, now + this.windowNanos);
+		if (this.writes.incrementAndGet() % SWEEP_INTERVAL == 0) {
+			this.deadlines.values().removeIf(deadline -> deadline - now < 0);
+		}
+	}
+
+	/**
+	 * @param kind	ACCOUNT, MESSAGE or USERNAME
+	 * @param id
+	 * @return	whether it was written within the window
+	 */
+	public boolean isRecent(String kind, Object id) {
+		if (!this.enabled) {
+			return false;
+		}
+		Long deadline = this.deadlines.get(kind + ':' + id);
+		return deadline != null && deadline - System.nanoTime() > 0;
+	}
+
+	/**
+	 * Sends the rest of the current transaction (or scope of a method with
+	 * Propagation.SUPPORTS) to the primary database if the key was written
+	 * within the window. Call it before the transaction's first query.
+	 * @param kind	ACCOUNT, MESSAGE or USERNAME
+	 * @param id
+	 */
+	public void reading(String kind, Object id) {
+		if (isRecent(kind, id)) {
+			ReplicaRoutingDataSource.onPrimaryUntilCompletion();
+		}
+	}
+
+	/**
+	 * Runs a read outside of a transaction, on the primary database if the
+	 * key was written within the window.
+	 * @param kind	ACCOUNT, MESSAGE or USERNAME
+	 * @param id
+	 * @param read
+	 * @return	result of the read
+	 */
+	public <T> T reading(String kind, Object id, Supplier<T> read) {
+		return isRecent(kind, id) ? ReplicaRoutingDataSource.onPrimary(read) : read.get();
+	}
+}
@@ -0,0 +1,60 @@
+package com.example.service;
+
+import java.sql.SQLException;
+import java.util.regex.Pattern;
+
+import org.springframework.dao.DataIntegrityViolationException;
+
+/**
+ * Tells unique constraint violations, which services answer as conflicts,
+ * apart from other integrity violations (NOT NULL, foreign keys).
+ *
+ * A primary key collision is a unique violation too (same SQLSTATE), so
+ * callers that answer a particular duplicate, like a taken username, must
+ * name the column: H2 describes the violated index as "TABLE(COLUMN ...)".
+ */
+final class UniqueViolation {
+    /** SQLSTATE of a unique constraint violation */
+    static final String SQL_STATE = "23505";
+    /** Quoted literals in a message, such as the duplicate values */
+    private static final Pattern LITERAL = Pattern.compile("'(?:[^']|'')*'");
+
+    private UniqueViolation() {
+    }
+
+    /**
+     * @param e
+     * @return	true if the exception was caused by a unique constraint
+     *			violation
+     */
+    static boolean isCauseOf(DataIntegrityViolationException e) {
+        return find(e) != null;
+    }
+
+    /**
+     * @param e
+     * @param table
+     * @param column
+     * @return	true if the exception was caused by a violation of the unique
+     *			index on the column, not of another one (such as the primary
+     *			key)
+     */
+    static boolean isCauseOf(DataIntegrityViolationException e, String table, String column) {
+        SQLException violation = find(e);
+        if (violation == null || violation.getMessage() == null) {
+            return false;
+        }
+        String message = LITERAL.matcher(violation.getMessage()).replaceAll("''");
+        return Pattern.compile("\\b" + Pattern.quote(table) + "\\(" + Pattern.quote(column) + "\\b",
+                Pattern.CASE_INSENSITIVE).matcher(message).find();
+    }
+
+    private static SQLException find(DataIntegrityViolationException e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException && SQL_STATE.equals(((SQLException) cause).getSQLState())) {
+                return (SQLException) cause;
+            }
+        }
+        return null;
+    }
+}
@@ -1,3 +1,5 @@
+drop table if exists follower_count;
+drop table if exists follow;
 drop table if exists message;
 drop table if exists account;
 create table account (
@@ -12,6 +14,28 @@ create table message (
     timePostedEpoch bigint,
     foreign key (postedBy) references account(accountId)
 );
+-- Backs the keyset pagination of GET /messages?limit=&after= and the time
+-- ranges of GET /messages?since=&until=
+create index message_time_id_idx on message (timePostedEpoch, messageId);
+-- Backs GET /accounts/{accountId}/messages
+create index message_posted_by_idx on message (postedBy, messageId);
+-- Backs GET /accounts/{accountId}/messages?since=&until=
+create index message_posted_by_time_idx on message (postedBy, timePostedEpoch, messageId);
+create table follow (
+    followerId int not null,
+    followeeId int not null,
+    primary key (followerId, followeeId),
+    foreign key (followerId) references account(accountId),
+    foreign key (followeeId) references account(accountId)
+);
+-- Backs the fan-out of new messages to followers' feeds
+create index follow_followee_idx on follow (followeeId, followerId);
+-- Number of followers of each followed account, for the feeds' celebrity check
+create table follower_count (
+    accountId int primary key,
+    followers int not null,
+    foreign key (accountId) references account(accountId)
+);
 
 -- Starting test values with ids of 9999 to avoid test issues
 insert into account values (9999, 'testuser1', 'password');
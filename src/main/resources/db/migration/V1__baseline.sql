@@ -0,0 +1,34 @@
+-- Schema of data.sql, plus the sequences Hibernate generates in the in-memory
+-- mode. Keep data.sql (which resets the in-memory database) in step with the
+-- latest migration.
+create table if not exists account (
+    accountId int primary key auto_increment,
+    username varchar(255) not null unique,
+    password varchar(255)
+);
+create table if not exists message (
+    messageId int primary key auto_increment,
+    postedBy int,
+    messageText varchar(255),
+    timePostedEpoch bigint,
+    foreign key (postedBy) references account(accountId)
+);
+-- Backs the keyset pagination of GET /messages?limit=&after= and the time
+-- ranges of GET /messages?since=&until=
+create index if not exists message_time_id_idx on message (timePostedEpoch, messageId);
+-- Backs GET /accounts/{accountId}/messages
+create index if not exists message_posted_by_idx on message (postedBy, messageId);
+-- Backs GET /accounts/{accountId}/messages?since=&until=
+create index if not exists message_posted_by_time_idx on message (postedBy, timePostedEpoch, messageId);
+create table if not exists follow (
+    followerId int not null,
+    followeeId int not null,
+    primary key (followerId, followeeId),
+    foreign key (followerId) references account(accountId),
+    foreign key (followeeId) references account(accountId)
+);
+-- Backs the fan-out of new messages to followers' feeds
+create index if not exists follow_followee_idx on follow (followeeId, followerId);
+-- IDs are handed out in blocks of 50 (increment_size of the entities)
+create sequence if not exists account_seq start with 1 increment by 50;
+create sequence if not exists message_seq start with 1 increment by 50;
@@ -0,0 +1,12 @@
+-- Number of followers of each followed account, kept by FollowService as
+-- follows are created and removed, so the celebrity check of the feeds
+-- doesn't count followers
+create table if not exists follower_count (
+    accountId int primary key,
+    followers int not null,
+    foreign key (accountId) references account(accountId)
+);
+insert into follower_count (accountId, followers)
+    select followeeId, count(*) from follow
+    where followeeId not in (select accountId from follower_count)
+    group by followeeId;
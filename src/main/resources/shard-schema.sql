@@ -0,0 +1,12 @@
+-- "message" table of the shards other than the primary database (see
+-- ShardingConfiguration), with the indexes of data.sql. Posters live in the
+-- primary database, so there is no foreign key to "account".
+create table if not exists message (
+    messageId int primary key,
+    postedBy int,
+    messageText varchar(255),
+    timePostedEpoch bigint
+);
+create index if not exists message_time_id_idx on message (timePostedEpoch, messageId);
+create index if not exists message_posted_by_idx on message (postedBy, messageId);
+create index if not exists message_posted_by_time_idx on message (postedBy, timePostedEpoch, messageId);
@@ -0,0 +1,91 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.entity.Account;
+import com.example.entity.Message;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class CounterIdsTest {
+	ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    /**
+     * Before every test, reset the database, restart the app with ids assigned in memory, and create a new
+     * webClient and ObjectMapper for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        String[] args = new String[] {"--spring.jpa.properties.app.ids.strategy=counter"};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+    	Thread.sleep(500);
+    	SpringApplication.exit(app);
+    }
+
+    /**
+     * Sending POST localhost:8080/messages twice, then POST localhost:8080/messages/batch
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: messages with increasing ids, above the preloaded ones (up to 9999)
+     */
+    @Test
+    public void messageIdsFollowPreloadedOnes() throws IOException, InterruptedException {
+        Message first = objectMapper.readValue(post("http://localhost:8080/messages",
+                "{\"postedBy\":9999,\"messageText\":\"first\",\"timePostedEpoch\":1669947792}"), Message.class);
+        Message second = objectMapper.readValue(post("http://localhost:8080/messages",
+                "{\"postedBy\":9999,\"messageText\":\"second\",\"timePostedEpoch\":1669947792}"), Message.class);
+        String batch = post("http://localhost:8080/messages/batch",
+                "[{\"postedBy\":9998,\"messageText\":\"third\",\"timePostedEpoch\":1669947792}]");
+
+        Assertions.assertEquals(10000, first.getMessageId());
+        Assertions.assertEquals(10001, second.getMessageId());
+        Assertions.assertTrue(batch.contains("\"messageId\":10002"), batch);
+    }
+
+    /**
+     * Sending POST localhost:8080/register
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the account, with an id above the preloaded ones (up to 9999)
+     */
+    @Test
+    public void accountIdsFollowPreloadedOnes() throws IOException, InterruptedException {
+        Account account = objectMapper.readValue(post("http://localhost:8080/register",
+                "{\"username\":\"user\",\"password\":\"password\"}"), Account.class);
+
+        Assertions.assertEquals(10000, account.getAccountId());
+    }
+
+    private String post(String uri, String json) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(uri))
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode(), "Expected Status Code 200 - Actual Code was: " + response.statusCode());
+        return response.body();
+    }
+}
@@ -0,0 +1,104 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.dto.MessageBatchResult;
+import com.example.entity.Message;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class CreateMessagesBatchTest {
+	ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    /**
+     * Before every test, reset the database, restart the app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        String[] args = new String[] {};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+    	Thread.sleep(500);
+    	SpringApplication.exit(app);
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages/batch with a mix of valid and invalid messages
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: per-message results in request order; only the valid messages are created
+     */
+    @Test
+    public void createMessagesPartialSuccess() throws IOException, InterruptedException {
+        String json = "["
+                + "{\"postedBy\":9999,\"messageText\": \"hello message\",\"timePostedEpoch\": 1669947792},"
+                + "{\"postedBy\":9999,\"messageText\": \"\",\"timePostedEpoch\": 1669947792},"
+                + "{\"postedBy\":5050,\"messageText\": \"hello message\",\"timePostedEpoch\": 1669947792},"
+                + "{\"postedBy\":9997,\"messageText\": \"second message\",\"timePostedEpoch\": 1669947793}"
+                + "]";
+        HttpResponse<String> response = postBatch(json);
+        int status = response.statusCode();
+        Assertions.assertEquals(200, status, "Expected Status Code 200 - Actual Code was: " + status);
+        List<MessageBatchResult> results = objectMapper.readValue(response.body(), new TypeReference<List<MessageBatchResult>>(){});
+        Assertions.assertEquals(4, results.size());
+        Assertions.assertEquals(200, results.get(0).getStatus());
+        Assertions.assertEquals(new Message(1, 9999, "hello message", 1669947792L), results.get(0).getMessage());
+        Assertions.assertEquals(400, results.get(1).getStatus());
+        Assertions.assertNull(results.get(1).getMessage());
+        Assertions.assertEquals(400, results.get(2).getStatus());
+        Assertions.assertNull(results.get(2).getMessage());
+        Assertions.assertEquals(200, results.get(3).getStatus());
+        Assertions.assertEquals(new Message(2, 9997, "second message", 1669947793L), results.get(3).getMessage());
+
+        HttpRequest getRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/2"))
+                .build();
+        Message actualResult = objectMapper.readValue(webClient.send(getRequest, HttpResponse.BodyHandlers.ofString()).body(), Message.class);
+        Assertions.assertEquals(results.get(3).getMessage(), actualResult);
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages/batch with no messages
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void createMessagesEmptyBatch() throws IOException, InterruptedException {
+        HttpResponse<String> response = postBatch("[]");
+        int status = response.statusCode();
+        Assertions.assertEquals(400, status, "Expected Status Code 400 - Actual Code was: " + status);
+    }
+
+    private HttpResponse<String> postBatch(String json) throws IOException, InterruptedException {
+        HttpRequest postRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/batch"))
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .build();
+        return webClient.send(postRequest, HttpResponse.BodyHandlers.ofString());
+    }
+}
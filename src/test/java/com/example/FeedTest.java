@@ -0,0 +1,190 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.dto.FeedPage;
+import com.example.entity.Message;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class FeedTest {
+	ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    /**
+     * Every test starts the app itself, so it can choose the celebrity threshold; reset the database,
+     * restart the app, and create a new webClient and ObjectMapper for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    private void setUp(String... args) throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+    	Thread.sleep(500);
+    	SpringApplication.exit(app);
+    }
+
+    /**
+     * Account 9999 following 9998 and 9997, then both posting, then sending
+     * GET localhost:8080/accounts/9999/feed
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the followed accounts' messages, latest posted first, with no next page
+     */
+    @Test
+    public void getFeedOfFollowedAccounts() throws IOException, InterruptedException {
+        setUp();
+        Assertions.assertEquals(200, send("POST", "http://localhost:8080/accounts/9999/following/9998"));
+        Assertions.assertEquals(200, send("POST", "http://localhost:8080/accounts/9999/following/9997"));
+        Message first = post("{\"postedBy\":9998,\"messageText\":\"first\",\"timePostedEpoch\":100}");
+        Message second = post("{\"postedBy\":9997,\"messageText\":\"second\",\"timePostedEpoch\":200}");
+        post("{\"postedBy\":9996,\"messageText\":\"not followed\",\"timePostedEpoch\":300}");
+
+        // Feeds are ordered by message ID, and the preloaded message has the highest
+        List<Message> expected = new ArrayList<Message>(Arrays.asList(
+                new Message(9997, 9997, "test message 2", 1669947792L), second, first));
+        FeedPage page = awaitFeed("http://localhost:8080/accounts/9999/feed", expected.size());
+        Assertions.assertEquals(expected, page.getMessages(), "Expected="+expected + ", Actual="+page.getMessages());
+        Assertions.assertNull(page.getNextCursor());
+    }
+
+    /**
+     * With every account a celebrity (--app.feed.celebrity-threshold=0), so that nothing is fanned out,
+     * account 9999 following 9998, then 9998 posting, then sending GET localhost:8080/accounts/9999/feed
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the followed account's message, merged in on read
+     */
+    @Test
+    public void getFeedOfFollowedCelebrity() throws IOException, InterruptedException {
+        setUp("--app.feed.celebrity-threshold=0");
+        Assertions.assertEquals(200, send("POST", "http://localhost:8080/accounts/9999/following/9998"));
+        Message message = post("{\"postedBy\":9998,\"messageText\":\"famous\",\"timePostedEpoch\":100}");
+
+        FeedPage page = getFeed("http://localhost:8080/accounts/9999/feed");
+        Assertions.assertEquals(Arrays.asList(message), page.getMessages());
+    }
+
+    /**
+     * Account 9999 following 9997, then unfollowing with DELETE localhost:8080/accounts/9999/following/9997
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the feed and the list of followed accounts are empty again
+     */
+    @Test
+    public void unfollowEmptiesFeed() throws IOException, InterruptedException {
+        setUp();
+        Assertions.assertEquals(200, send("POST", "http://localhost:8080/accounts/9999/following/9997"));
+        Assertions.assertEquals(1, getFeed("http://localhost:8080/accounts/9999/feed").getMessages().size());
+
+        Assertions.assertEquals(200, send("DELETE", "http://localhost:8080/accounts/9999/following/9997"));
+        Assertions.assertEquals(new ArrayList<Message>(), getFeed("http://localhost:8080/accounts/9999/feed").getMessages());
+        HttpResponse<String> response = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/accounts/9999/following"))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals("[]", response.body());
+    }
+
+    /**
+     * Account 9999 following 9998, then 9998 posting 5 messages, then reading the feed 2 messages at a time
+     * with GET localhost:8080/accounts/9999/feed?limit=2&after={nextCursor}
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: every message exactly once, newest first, the last page without a next cursor
+     */
+    @Test
+    public void getFeedInPages() throws IOException, InterruptedException {
+        setUp();
+        Assertions.assertEquals(200, send("POST", "http://localhost:8080/accounts/9999/following/9998"));
+        List<Message> expected = new ArrayList<Message>();
+        for (int i = 0; i < 5; i++) {
+            expected.add(0, post("{\"postedBy\":9998,\"messageText\":\"message " + i + "\",\"timePostedEpoch\":" + i + "}"));
+        }
+        awaitFeed("http://localhost:8080/accounts/9999/feed?limit=5", 5);
+
+        List<Message> actual = new ArrayList<Message>();
+        FeedPage page = getFeed("http://localhost:8080/accounts/9999/feed?limit=2");
+        actual.addAll(page.getMessages());
+        while (page.getNextCursor() != null) {
+            page = getFeed("http://localhost:8080/accounts/9999/feed?limit=2&after=" + page.getNextCursor());
+            actual.addAll(page.getMessages());
+        }
+        Assertions.assertEquals(expected, actual, "Expected="+expected + ", Actual="+actual);
+    }
+
+    /**
+     * Sending POST localhost:8080/accounts/9999/following/9999 and POST localhost:8080/accounts/9999/following/1234
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void followSelfOrMissingAccount() throws IOException, InterruptedException {
+        setUp();
+        Assertions.assertEquals(400, send("POST", "http://localhost:8080/accounts/9999/following/9999"));
+        Assertions.assertEquals(400, send("POST", "http://localhost:8080/accounts/9999/following/1234"));
+        Assertions.assertEquals(400, send("POST", "http://localhost:8080/accounts/1234/following/9999"));
+    }
+
+    /**
+     * Messages are fanned out to feeds in the background, so poll until the feed is complete.
+     */
+    private FeedPage awaitFeed(String uri, int size) throws IOException, InterruptedException {
+        FeedPage page = getFeed(uri);
+        for (int i = 0; i < 50 && page.getMessages().size() < size; i++) {
+            Thread.sleep(20);
+            page = getFeed(uri);
+        }
+        return page;
+    }
+
+    private FeedPage getFeed(String uri) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(uri))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode(), "Expected Status Code 200 - Actual Code was: " + response.statusCode());
+        return objectMapper.readValue(response.body(), FeedPage.class);
+    }
+
+    private int send(String method, String uri) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(uri))
+                .method(method, HttpRequest.BodyPublishers.noBody())
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString()).statusCode();
+    }
+
+    private Message post(String json) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode(), "Expected Status Code 200 - Actual Code was: " + response.statusCode());
+        return objectMapper.readValue(response.body(), Message.class);
+    }
+}
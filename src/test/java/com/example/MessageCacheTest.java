@@ -0,0 +1,123 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.entity.Message;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class MessageCacheTest {
+	ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    /**
+     * Before every test, reset the database, restart the app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        String[] args = new String[] {};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+    	Thread.sleep(500);
+    	SpringApplication.exit(app);
+    }
+
+    /**
+     * Reading GET localhost:8080/messages/9999 twice, then reading the cache statistics
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: one miss followed by one hit on the "messages" cache
+     */
+    @Test
+    public void getMessageIsCached() throws IOException, InterruptedException {
+        getMessage(9999);
+        getMessage(9999);
+        JsonNode stats = messageCacheStats();
+        Assertions.assertEquals(1, stats.get("misses").asLong(), "Expected one miss, stats were " + stats);
+        Assertions.assertEquals(1, stats.get("hits").asLong(), "Expected one hit, stats were " + stats);
+        Assertions.assertEquals(1, stats.get("size").asInt(), "Expected one cached message, stats were " + stats);
+    }
+
+    /**
+     * Reading GET localhost:8080/messages/9999, updating it with PATCH, and reading it again
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the updated message, not the cached one
+     */
+    @Test
+    public void updateMessageInvalidatesCache() throws IOException, InterruptedException {
+        getMessage(9999);
+        HttpRequest patchRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/9999"))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"messageText\": \"text changed\"}"))
+                .header("Content-Type", "application/json")
+                .build();
+        webClient.send(patchRequest, HttpResponse.BodyHandlers.ofString());
+        Message expectedResult = new Message(9999, 9999, "text changed", 1669947792L);
+        Message actualResult = objectMapper.readValue(getMessage(9999).body(), Message.class);
+        Assertions.assertEquals(expectedResult, actualResult, "Expected="+expectedResult + ", Actual="+actualResult);
+    }
+
+    /**
+     * Reading GET localhost:8080/messages/9999, deleting it, and reading it again
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: empty, not the cached message
+     */
+    @Test
+    public void deleteMessageInvalidatesCache() throws IOException, InterruptedException {
+        getMessage(9999);
+        HttpRequest deleteRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/9999"))
+                .DELETE()
+                .build();
+        webClient.send(deleteRequest, HttpResponse.BodyHandlers.ofString());
+        HttpResponse<String> response = getMessage(9999);
+        Assertions.assertEquals(200, response.statusCode(), "Expected Status Code 200 - Actual Code was: " + response.statusCode());
+        Assertions.assertTrue(response.body().isEmpty(), "Expected Empty Result, but Result was " + response.body());
+    }
+
+    private HttpResponse<String> getMessage(int messageId) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/" + messageId))
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private JsonNode messageCacheStats() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/admin/caches"))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        for (JsonNode stats : objectMapper.readTree(response.body())) {
+            if (stats.get("name").asText().equals("messages")) {
+                return stats;
+            }
+        }
+        Assertions.fail("No \"messages\" cache in " + response.body());
+        return null;
+    }
+}
@@ -0,0 +1,93 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.config.JsonConfiguration;
+import com.example.entity.Message;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class MessageJsonTest {
+	ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    /**
+     * Before every test, reset the database, restart the app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        String[] args = new String[] {};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+    	Thread.sleep(500);
+    	SpringApplication.exit(app);
+    }
+
+    /**
+     * Posting a message with quotes, escapes and non-ASCII text, then sending GET localhost:8080/messages and
+     * GET localhost:8080/accounts/9999/messages (twice, the second from the caches), which the application writes
+     * with MessageSerializer
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: exactly the bytes a plain ObjectMapper writes for the same messages
+     */
+    @Test
+    public void listsAreWrittenLikeJacksonBeans() throws IOException, InterruptedException {
+        ObjectMapper appMapper = app.getBean(ObjectMapper.class);
+        Object serializer = appMapper.getSerializerProviderInstance().findValueSerializer(Message.class);
+        Assertions.assertTrue(serializer instanceof JsonConfiguration.MessageSerializer, "Expected MessageSerializer, was " + serializer);
+
+        HttpRequest postRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        "{\"postedBy\":9999,\"messageText\":\"\\\"quoted\\\" \\\\ tab\\t caf\\u00e9 \\u2603\",\"timePostedEpoch\":1669947793}"))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<String> response = webClient.send(postRequest, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode(), "Expected Status Code 200 - Actual Code was: " + response.statusCode());
+        Message posted = objectMapper.readValue(response.body(), Message.class);
+        Assertions.assertEquals(objectMapper.writeValueAsString(posted), response.body());
+
+        Message seed9999 = new Message(9999, 9999, "test message 1", 1669947792L);
+        Message seed9997 = new Message(9997, 9997, "test message 2", 1669947792L);
+        Message seed9996 = new Message(9996, 9996, "test message 3", 1669947792L);
+        Message[] all = {seed9996, seed9997, seed9999, posted};
+        Arrays.sort(all, (a, b) -> a.getMessageId().compareTo(b.getMessageId()));
+        Assertions.assertEquals(objectMapper.writeValueAsString(all), get("http://localhost:8080/messages"));
+
+        Message[] byAccount = {seed9999, posted};
+        Arrays.sort(byAccount, (a, b) -> a.getMessageId().compareTo(b.getMessageId()));
+        Assertions.assertEquals(objectMapper.writeValueAsString(byAccount), get("http://localhost:8080/accounts/9999/messages"));
+        Assertions.assertEquals(objectMapper.writeValueAsString(byAccount), get("http://localhost:8080/accounts/9999/messages"));
+    }
+
+    private String get(String uri) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(uri))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode(), "Expected Status Code 200 - Actual Code was: " + response.statusCode());
+        return response.body();
+    }
+}
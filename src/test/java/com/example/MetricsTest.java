@@ -0,0 +1,77 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+public class MetricsTest {
+	ApplicationContext app;
+    HttpClient webClient;
+
+    /**
+     * Before every test, reset the database, restart the app, and create a new webClient
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        String[] args = new String[] {};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+    	Thread.sleep(500);
+    	SpringApplication.exit(app);
+    }
+
+    /**
+     * Sending GET localhost:8080/messages/9999 and an invalid PATCH localhost:8080/messages/9999, then
+     * GET localhost:8080/actuator/prometheus
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the request timers split by status and URI template, the service timers split by
+     *  the returned status, the repository timers and the Hikari pool gauges
+     */
+    @Test
+    public void prometheusScrapeSplitsByStatus() throws IOException, InterruptedException {
+        send(HttpRequest.newBuilder().uri(URI.create("http://localhost:8080/messages/9999")).build());
+        send(HttpRequest.newBuilder().uri(URI.create("http://localhost:8080/messages/9999"))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"messageText\":\"\"}"))
+                .header("Content-Type", "application/json")
+                .build());
+
+        HttpResponse<String> response = send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/actuator/prometheus"))
+                .build());
+        Assertions.assertEquals(200, response.statusCode(), "Expected Status Code 200 - Actual Code was: " + response.statusCode());
+        Assertions.assertTrue(response.headers().firstValue("Content-Type").orElse("").startsWith("text/plain"));
+        String body = response.body();
+        assertContains(body, "http_server_requests_seconds_count{method=\"GET\",status=\"200\",uri=\"/messages/{messageId}\"} 1\n");
+        assertContains(body, "http_server_requests_seconds_count{method=\"PATCH\",status=\"400\",uri=\"/messages/{messageId}\"} 1\n");
+        assertContains(body, "service_method_seconds_count{class=\"MessageService\",exception=\"none\",method=\"updateMessageText\",status=\"400\"} 1\n");
+        assertContains(body, "spring_data_repository_invocations_seconds_count{method=\"findByMessageId\",repository=\"MessageRepository\",state=\"SUCCESS\"}");
+        assertContains(body, "# TYPE hikaricp_connections_active gauge\n");
+        assertContains(body, "hikaricp_connections_max{pool=");
+    }
+
+    private void assertContains(String body, String expected) {
+        Assertions.assertTrue(body.contains(expected), "Expected scrape to contain " + expected + "\n" + body);
+    }
+
+    private HttpResponse<String> send(HttpRequest request) throws IOException, InterruptedException {
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
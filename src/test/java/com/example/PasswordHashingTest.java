@@ -0,0 +1,103 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.entity.Account;
+import com.example.repository.AccountRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class PasswordHashingTest {
+	ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    /**
+     * Before every test, reset the database, restart the app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        String[] args = new String[] {};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+    	Thread.sleep(500);
+    	SpringApplication.exit(app);
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/register, then POST localhost:8080/login with the right
+     * and a wrong password
+     *
+     * Expected Response:
+     *  Status Code: 200 for registration and the right password, 401 for the wrong password
+     *  Response Body: the account with the password as sent
+     *  Database: a salted hash is stored, not the password
+     */
+    @Test
+    public void registeredPasswordIsStoredHashed() throws IOException, InterruptedException {
+        HttpResponse<String> registered = post("/register", "{\"username\":\"user\",\"password\":\"password\"}");
+        Assertions.assertEquals(200, registered.statusCode(), "Expected Status Code 200 - Actual Code was: " + registered.statusCode());
+        Account account = objectMapper.readValue(registered.body(), Account.class);
+        Assertions.assertEquals("password", account.getPassword());
+
+        String stored = app.getBean(AccountRepository.class).findByUsername("user").getPassword();
+        Assertions.assertTrue(stored.startsWith("pbkdf2-sha256$"), "Expected a PBKDF2 hash - Actual was: " + stored);
+
+        HttpResponse<String> loggedIn = post("/login", "{\"username\":\"user\",\"password\":\"password\"}");
+        Assertions.assertEquals(200, loggedIn.statusCode(), "Expected Status Code 200 - Actual Code was: " + loggedIn.statusCode());
+        Assertions.assertEquals(new Account(account.getAccountId(), "user", "password"),
+                objectMapper.readValue(loggedIn.body(), Account.class));
+
+        HttpResponse<String> wrongPassword = post("/login", "{\"username\":\"user\",\"password\":\"pass404\"}");
+        Assertions.assertEquals(401, wrongPassword.statusCode(), "Expected Status Code 401 - Actual Code was: " + wrongPassword.statusCode());
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/login twice for an account stored with a plaintext
+     * password (data.sql)
+     *
+     * Expected Response:
+     *  Status Code: 200 both times
+     *  Database: the plaintext password is replaced by a hash on the first login
+     */
+    @Test
+    public void legacyPlaintextPasswordIsUpgradedOnLogin() throws IOException, InterruptedException {
+        AccountRepository accountRepository = app.getBean(AccountRepository.class);
+        Assertions.assertEquals("password", accountRepository.findByUsername("testuser1").getPassword());
+
+        HttpResponse<String> first = post("/login", "{\"username\":\"testuser1\",\"password\":\"password\"}");
+        Assertions.assertEquals(200, first.statusCode(), "Expected Status Code 200 - Actual Code was: " + first.statusCode());
+        String stored = accountRepository.findByUsername("testuser1").getPassword();
+        Assertions.assertTrue(stored.startsWith("pbkdf2-sha256$"), "Expected a PBKDF2 hash - Actual was: " + stored);
+
+        HttpResponse<String> second = post("/login", "{\"username\":\"testuser1\",\"password\":\"password\"}");
+        Assertions.assertEquals(200, second.statusCode(), "Expected Status Code 200 - Actual Code was: " + second.statusCode());
+    }
+
+    private HttpResponse<String> post(String path, String json) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,117 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.entity.Account;
+import com.example.entity.Message;
+import com.example.repository.PageCacheWarmer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class PersistentStorageTest {
+	ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    @TempDir
+    Path storageDir;
+
+    /**
+     * Every test starts the app in the "persistent" profile, on a database file in a new directory, with its own
+     * extra arguments; create a new webClient and ObjectMapper for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    private void start(String... extraArgs) throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        List<String> args = new ArrayList<String>(Arrays.asList("--spring.profiles.active=persistent",
+                "--app.storage.path=" + storageDir.resolve("socialmedia")));
+        args.addAll(Arrays.asList(extraArgs));
+        app = SpringApplication.run(SocialMediaApp.class, args.toArray(new String[0]));
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+    	Thread.sleep(500);
+    	SpringApplication.exit(app);
+    }
+
+    /**
+     * Registering an account and posting a message, restarting the app, then sending GET localhost:8080/messages
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the message, and no test data since data.sql doesn't run; each migration ran once and
+     *  the page cache warmed at each start
+     */
+    @Test
+    public void messagesSurviveRestart() throws IOException, InterruptedException {
+        start();
+        Assertions.assertEquals(Arrays.asList(), getList("http://localhost:8080/messages"));
+        HttpResponse<String> response = send("http://localhost:8080/register", "{\"username\":\"durable\",\"password\":\"password\"}");
+        Assertions.assertEquals(200, response.statusCode(), "Expected Status Code 200 - Actual Code was: " + response.statusCode());
+        Account account = objectMapper.readValue(response.body(), Account.class);
+        response = send("http://localhost:8080/messages",
+                "{\"postedBy\":" + account.getAccountId() + ",\"messageText\":\"still here\",\"timePostedEpoch\":1669947793}");
+        Assertions.assertEquals(200, response.statusCode(), "Expected Status Code 200 - Actual Code was: " + response.statusCode());
+        Message message = objectMapper.readValue(response.body(), Message.class);
+
+        SpringApplication.exit(app);
+        start();
+
+        Assertions.assertEquals(Arrays.asList(message), getList("http://localhost:8080/messages"));
+        Assertions.assertEquals(Arrays.asList(message), getList("http://localhost:8080/accounts/" + account.getAccountId() + "/messages"));
+        Assertions.assertEquals(2, app.getBean(JdbcTemplate.class).queryForObject("SELECT COUNT(*) FROM schema_version", Integer.class));
+        Assertions.assertTrue(app.getBean(PageCacheWarmer.class).getEntriesRead() > 0);
+    }
+
+    /**
+     * Starting the app with --spring.sql.init.mode=always, then sending GET localhost:8080/messages
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the test data of data.sql
+     */
+    @Test
+    public void testDataOnlyWhenAsked() throws IOException, InterruptedException {
+        start("--spring.sql.init.mode=always");
+        Message seed9999 = new Message(9999, 9999, "test message 1", 1669947792L);
+        Message seed9997 = new Message(9997, 9997, "test message 2", 1669947792L);
+        Message seed9996 = new Message(9996, 9996, "test message 3", 1669947792L);
+
+        Assertions.assertEquals(Arrays.asList(seed9996, seed9997, seed9999), getList("http://localhost:8080/messages"));
+    }
+
+    private List<Message> getList(String uri) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(uri))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode(), "Expected Status Code 200 - Actual Code was: " + response.statusCode());
+        return Arrays.asList(objectMapper.readValue(response.body(), Message[].class));
+    }
+
+    private HttpResponse<String> send(String uri, String json) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(uri))
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,147 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+
+import com.example.entity.Message;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class ReadReplicaTest {
+	ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    /**
+     * Before every test, reset the "replica" database to the initial data, which it keeps afterwards like a
+     * replica that stopped replicating, and create a new webClient and ObjectMapper for interacting locally on
+     * the web. Each test starts the app with its own replica.
+     * @throws SQLException
+     */
+    @BeforeEach
+    public void setUp() throws SQLException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        try (Connection connection = DriverManager.getConnection("jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1", "sa", "password")) {
+            ScriptUtils.executeSqlScript(connection, new ClassPathResource("data.sql"));
+        }
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+    	Thread.sleep(500);
+    	SpringApplication.exit(app);
+    }
+
+    /**
+     * Posting a message by account 9999, then sending GET localhost:8080/messages,
+     * GET localhost:8080/accounts/9999/messages and GET localhost:8080/messages/{messageId}
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: GET /messages comes from the replica, without the new message; the poster's messages and
+     *  the new message itself come from the primary, inside the read-your-writes window
+     */
+    @Test
+    public void readOnlyTransactionsReadFromReplicaExceptRecentWrites() throws IOException, InterruptedException {
+        start("jdbc:h2:mem:replica");
+        Message seed9999 = new Message(9999, 9999, "test message 1", 1669947792L);
+        Message seed9997 = new Message(9997, 9997, "test message 2", 1669947792L);
+        Message seed9996 = new Message(9996, 9996, "test message 3", 1669947792L);
+        Message posted = post("{\"postedBy\":9999,\"messageText\":\"fresh\",\"timePostedEpoch\":1669947793}");
+
+        Assertions.assertEquals(Arrays.asList(seed9996, seed9997, seed9999), getList("http://localhost:8080/messages"));
+        Assertions.assertEquals(Arrays.asList(posted, seed9999), getList("http://localhost:8080/accounts/9999/messages"));
+        Assertions.assertEquals(posted, objectMapper.readValue(get("http://localhost:8080/messages/" + posted.getMessageId()), Message.class));
+
+        String scrape = get("http://localhost:8080/actuator/prometheus");
+        Assertions.assertTrue(scrape.contains("hikaricp_connections_acquire_seconds_count{pool=\"replica-1\"}"), scrape);
+        Assertions.assertTrue(scrape.contains("datasource_replica_up{replica=\"1\"} 1\n"), scrape);
+    }
+
+    /**
+     * Registering an account that the replica doesn't have, then sending POST localhost:8080/login right away
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the account, looked up on the primary
+     */
+    @Test
+    public void loginRightAfterRegistrationReadsFromPrimary() throws IOException, InterruptedException {
+        start("jdbc:h2:mem:replica");
+        String account = "{\"username\":\"replicated-later\",\"password\":\"password\"}";
+
+        Assertions.assertEquals(200, send("http://localhost:8080/register", account).statusCode());
+        HttpResponse<String> response = send("http://localhost:8080/login", account);
+        Assertions.assertEquals(200, response.statusCode(), "Expected Status Code 200 - Actual Code was: " + response.statusCode());
+    }
+
+    /**
+     * Sending GET localhost:8080/messages and GET localhost:8080/accounts/9999/messages with an unreachable replica
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the messages, read from the primary, and the replica reported down
+     */
+    @Test
+    public void readsFailOverToPrimaryWhenReplicaIsDown() throws IOException, InterruptedException {
+        start("jdbc:h2:tcp://localhost:1/nowhere");
+        Message seed9999 = new Message(9999, 9999, "test message 1", 1669947792L);
+
+        Assertions.assertEquals(3, getList("http://localhost:8080/messages").size());
+        Assertions.assertEquals(Arrays.asList(seed9999), getList("http://localhost:8080/accounts/9999/messages"));
+
+        String scrape = get("http://localhost:8080/actuator/prometheus");
+        Assertions.assertTrue(scrape.contains("datasource_replica_up{replica=\"1\"} 0\n"), scrape);
+    }
+
+    private void start(String replicaUrl) throws InterruptedException {
+        String[] args = new String[] {"--app.datasource.replicas.urls=" + replicaUrl};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    private String get(String uri) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(uri))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode(), "Expected Status Code 200 - Actual Code was: " + response.statusCode());
+        return response.body();
+    }
+
+    private List<Message> getList(String uri) throws IOException, InterruptedException {
+        return Arrays.asList(objectMapper.readValue(get(uri), Message[].class));
+    }
+
+    private HttpResponse<String> send(String uri, String json) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(uri))
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private Message post(String json) throws IOException, InterruptedException {
+        HttpResponse<String> response = send("http://localhost:8080/messages", json);
+        Assertions.assertEquals(200, response.statusCode(), "Expected Status Code 200 - Actual Code was: " + response.statusCode());
+        return objectMapper.readValue(response.body(), Message.class);
+    }
+}
@@ -0,0 +1,124 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.entity.Message;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class RetrieveMessagesInRangeTest {
+	ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    /**
+     * Before every test, reset the database, restart the app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        String[] args = new String[] {};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+    	Thread.sleep(500);
+    	SpringApplication.exit(app);
+    }
+
+    /**
+     * Posting messages at different times, then sending GET localhost:8080/messages?since=150&until=300
+     * and GET localhost:8080/accounts/9999/messages?since=150
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: only the messages posted in the range (inclusive), ordered by time
+     */
+    @Test
+    public void getMessagesInRange() throws IOException, InterruptedException {
+        post("{\"postedBy\":9999,\"messageText\":\"at 100\",\"timePostedEpoch\":100}");
+        Message at300 = post("{\"postedBy\":9999,\"messageText\":\"at 300\",\"timePostedEpoch\":300}");
+        Message at200 = post("{\"postedBy\":9999,\"messageText\":\"at 200\",\"timePostedEpoch\":200}");
+        Message other = post("{\"postedBy\":9998,\"messageText\":\"other at 250\",\"timePostedEpoch\":250}");
+
+        List<Message> expected = new ArrayList<Message>(Arrays.asList(at200, other, at300));
+        List<Message> actual = get("http://localhost:8080/messages?since=150&until=300");
+        Assertions.assertEquals(expected, actual, "Expected="+expected + ", Actual="+actual);
+
+        expected = new ArrayList<Message>(Arrays.asList(at200, at300));
+        actual = get("http://localhost:8080/accounts/9999/messages?since=150&until=1000");
+        Assertions.assertEquals(expected, actual, "Expected="+expected + ", Actual="+actual);
+
+        expected = new ArrayList<Message>(Arrays.asList(at200, at300, new Message(9999, 9999, "test message 1", 1669947792L)));
+        actual = get("http://localhost:8080/accounts/9999/messages?since=150");
+        Assertions.assertEquals(expected, actual, "Expected="+expected + ", Actual="+actual);
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages?since=300&until=100
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void getMessagesInReversedRange() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages?since=300&until=100"))
+                .build();
+        int status = webClient.send(request, HttpResponse.BodyHandlers.ofString()).statusCode();
+        Assertions.assertEquals(400, status, "Expected Status Code 400 - Actual Code was: " + status);
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages?since=150&until=300&limit=10
+     *
+     * Expected Response:
+     *  Status Code: 400, as pages can't be bounded by time
+     */
+    @Test
+    public void getMessagesPageInRange() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages?since=150&until=300&limit=10"))
+                .build();
+        int status = webClient.send(request, HttpResponse.BodyHandlers.ofString()).statusCode();
+        Assertions.assertEquals(400, status, "Expected Status Code 400 - Actual Code was: " + status);
+    }
+
+    private List<Message> get(String uri) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(uri))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode(), "Expected Status Code 200 - Actual Code was: " + response.statusCode());
+        return Arrays.asList(objectMapper.readValue(response.body(), Message[].class));
+    }
+
+    private Message post(String json) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode(), "Expected Status Code 200 - Actual Code was: " + response.statusCode());
+        return objectMapper.readValue(response.body(), Message.class);
+    }
+}
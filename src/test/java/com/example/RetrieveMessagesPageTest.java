@@ -0,0 +1,148 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.dto.MessagePage;
+import com.example.entity.Message;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class RetrieveMessagesPageTest {
+	ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    /**
+     * Before every test, reset the database, restart the app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        String[] args = new String[] {};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+    	Thread.sleep(500);
+    	SpringApplication.exit(app);
+    }
+
+    /**
+     * Walking GET localhost:8080/messages?limit=2 with the returned cursor until it is exhausted
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: every message exactly once, ordered by (timePostedEpoch, messageId)
+     */
+    @Test
+    public void getMessagesPageWalksWholeTable() throws IOException, InterruptedException {
+        HttpResponse<String> response1 = getPage("http://localhost:8080/messages?limit=2");
+        Assertions.assertEquals(200, response1.statusCode(), "Expected Status Code 200 - Actual Code was: " + response1.statusCode());
+        MessagePage page1 = objectMapper.readValue(response1.body(), MessagePage.class);
+        List<Message> expectedPage1 = new ArrayList<Message>();
+        expectedPage1.add(new Message(9996, 9996, "test message 3", 1669947792L));
+        expectedPage1.add(new Message(9997, 9997, "test message 2", 1669947792L));
+        Assertions.assertEquals(expectedPage1, page1.getMessages(), "Expected="+expectedPage1 + ", Actual="+page1.getMessages());
+        Assertions.assertEquals("1669947792:9997", page1.getNextCursor());
+
+        HttpResponse<String> response2 = getPage("http://localhost:8080/messages?limit=2&after=" + page1.getNextCursor());
+        Assertions.assertEquals(200, response2.statusCode(), "Expected Status Code 200 - Actual Code was: " + response2.statusCode());
+        MessagePage page2 = objectMapper.readValue(response2.body(), MessagePage.class);
+        List<Message> expectedPage2 = new ArrayList<Message>();
+        expectedPage2.add(new Message(9999, 9999, "test message 1", 1669947792L));
+        Assertions.assertEquals(expectedPage2, page2.getMessages(), "Expected="+expectedPage2 + ", Actual="+page2.getMessages());
+        Assertions.assertNull(page2.getNextCursor(), "Expected no next cursor on the last page");
+    }
+
+    /**
+     * Posting two messages without a timePostedEpoch, then walking GET localhost:8080/messages?limit=2 with the
+     * returned cursor until it is exhausted
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the messages without a time first, then the others, every message exactly once
+     */
+    @Test
+    public void getMessagesPageWalksMessagesWithoutTime() throws IOException, InterruptedException {
+        List<Message> expected = new ArrayList<Message>();
+        for (String text : new String[] {"untimed 1", "untimed 2"}) {
+            HttpRequest postRequest = HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8080/messages"))
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"postedBy\":9999,\"messageText\":\"" + text + "\"}"))
+                    .header("Content-Type", "application/json")
+                    .build();
+            HttpResponse<String> response = webClient.send(postRequest, HttpResponse.BodyHandlers.ofString());
+            Assertions.assertEquals(200, response.statusCode(), "Expected Status Code 200 - Actual Code was: " + response.statusCode());
+            expected.add(objectMapper.readValue(response.body(), Message.class));
+        }
+        expected.add(new Message(9996, 9996, "test message 3", 1669947792L));
+        expected.add(new Message(9997, 9997, "test message 2", 1669947792L));
+        expected.add(new Message(9999, 9999, "test message 1", 1669947792L));
+
+        List<Message> walked = new ArrayList<Message>();
+        String uri = "http://localhost:8080/messages?limit=2";
+        for (int i = 0; i < 10; i++) {
+            HttpResponse<String> response = getPage(uri);
+            Assertions.assertEquals(200, response.statusCode(), "Expected Status Code 200 - Actual Code was: " + response.statusCode());
+            MessagePage page = objectMapper.readValue(response.body(), MessagePage.class);
+            walked.addAll(page.getMessages());
+            if (page.getNextCursor() == null) {
+                break;
+            }
+            uri = "http://localhost:8080/messages?limit=2&after=" + page.getNextCursor();
+        }
+        Assertions.assertEquals(expected, walked);
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages?limit=0
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void getMessagesPageInvalidLimit() throws IOException, InterruptedException {
+        HttpResponse<String> response = getPage("http://localhost:8080/messages?limit=0");
+        int status = response.statusCode();
+        Assertions.assertEquals(400, status, "Expected Status Code 400 - Actual Code was: " + status);
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages?limit=2&after= with malformed cursors
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void getMessagesPageInvalidCursor() throws IOException, InterruptedException {
+        for (String cursor : new String[] {"garbage", "1669947792:9997:1", "null:9997", ":9997"}) {
+            HttpResponse<String> response = getPage("http://localhost:8080/messages?limit=2&after=" + cursor);
+            int status = response.statusCode();
+            Assertions.assertEquals(400, status, "Expected Status Code 400 for " + cursor + " - Actual Code was: " + status);
+        }
+    }
+
+    private HttpResponse<String> getPage(String uri) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(uri))
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
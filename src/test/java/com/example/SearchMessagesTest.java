@@ -0,0 +1,146 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.dto.MessageSearchPage;
+import com.example.entity.Message;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class SearchMessagesTest {
+	ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    /**
+     * Before every test, reset the database, restart the app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        String[] args = new String[] {};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+    	Thread.sleep(500);
+    	SpringApplication.exit(app);
+    }
+
+    /**
+     * Walking GET localhost:8080/messages/search?q=test&limit=2 with the returned cursor
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: every message of data.sql exactly once, equally relevant so newest first
+     */
+    @Test
+    public void searchMessagesWalksAllMatches() throws IOException, InterruptedException {
+        MessageSearchPage page1 = search("TEST", "&limit=2");
+        List<Message> expectedPage1 = new ArrayList<Message>();
+        expectedPage1.add(new Message(9999, 9999, "test message 1", 1669947792L));
+        expectedPage1.add(new Message(9997, 9997, "test message 2", 1669947792L));
+        Assertions.assertEquals(expectedPage1, page1.getMessages(), "Expected="+expectedPage1 + ", Actual="+page1.getMessages());
+        Assertions.assertNotNull(page1.getNextCursor(), "Expected a next cursor");
+
+        MessageSearchPage page2 = search("TEST", "&limit=2&after=" + page1.getNextCursor());
+        List<Message> expectedPage2 = new ArrayList<Message>();
+        expectedPage2.add(new Message(9996, 9996, "test message 3", 1669947792L));
+        Assertions.assertEquals(expectedPage2, page2.getMessages(), "Expected="+expectedPage2 + ", Actual="+page2.getMessages());
+        Assertions.assertNull(page2.getNextCursor(), "Expected no next cursor on the last page");
+
+        List<Message> expected = new ArrayList<Message>();
+        expected.add(new Message(9997, 9997, "test message 2", 1669947792L));
+        Assertions.assertEquals(expected, search("message, 2!", "").getMessages());
+    }
+
+    /**
+     * Creating, updating and deleting messages, searching after each step
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the index follows every change, and the shorter of two matching messages ranks first
+     */
+    @Test
+    public void searchMessagesFollowsWrites() throws IOException, InterruptedException {
+        Message longer = post("{\"postedBy\":9999,\"messageText\":\"cats and dogs living together\",\"timePostedEpoch\":1669947800}");
+        Message shorter = post("{\"postedBy\":9999,\"messageText\":\"Cats!\",\"timePostedEpoch\":1669947801}");
+        List<Message> expected = new ArrayList<Message>();
+        expected.add(shorter);
+        expected.add(longer);
+        Assertions.assertEquals(expected, search("cats", "").getMessages());
+
+        HttpRequest patch = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/" + shorter.getMessageId()))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"messageText\":\"birds\"}"))
+                .header("Content-Type", "application/json")
+                .build();
+        Assertions.assertEquals(200, webClient.send(patch, HttpResponse.BodyHandlers.ofString()).statusCode());
+        expected.remove(shorter);
+        Assertions.assertEquals(expected, search("cats", "").getMessages());
+        Assertions.assertEquals(1, search("birds", "").getMessages().size());
+
+        HttpRequest delete = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/" + longer.getMessageId()))
+                .DELETE()
+                .build();
+        Assertions.assertEquals(200, webClient.send(delete, HttpResponse.BodyHandlers.ofString()).statusCode());
+        Assertions.assertTrue(search("cats", "").getMessages().isEmpty());
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages/search?q=!!!
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void searchMessagesWithoutWords() throws IOException, InterruptedException {
+        HttpResponse<String> response = get("/messages/search?q=" + URLEncoder.encode("!!!", StandardCharsets.UTF_8));
+        int status = response.statusCode();
+        Assertions.assertEquals(400, status, "Expected Status Code 400 - Actual Code was: " + status);
+    }
+
+    private MessageSearchPage search(String query, String parameters) throws IOException, InterruptedException {
+        HttpResponse<String> response = get("/messages/search?q=" + URLEncoder.encode(query, StandardCharsets.UTF_8) + parameters);
+        Assertions.assertEquals(200, response.statusCode(), "Expected Status Code 200 - Actual Code was: " + response.statusCode());
+        return objectMapper.readValue(response.body(), MessageSearchPage.class);
+    }
+
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private Message post(String json) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode(), "Expected Status Code 200 - Actual Code was: " + response.statusCode());
+        return objectMapper.readValue(response.body(), Message.class);
+    }
+}
@@ -0,0 +1,127 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.entity.Message;
+import com.example.repository.MessageRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class SecondLevelCacheTest {
+	ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    MessageRepository messageRepository;
+
+    /**
+     * Before every test, reset the database, restart the app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web. The application's own caches sit in front of Hibernate's, so the
+     * repository is queried directly.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        String[] args = new String[] {};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        messageRepository = app.getBean(MessageRepository.class);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+    	Thread.sleep(500);
+    	SpringApplication.exit(app);
+    }
+
+    /**
+     * Loading messages 9999 and 9997, loading 9999 again, updating it with PATCH localhost:8080/messages/9999,
+     * and loading both again
+     *
+     * Expected Response:
+     *  The second load of 9999 is a hit on the "hibernate:message" region, the third returns the updated message,
+     *  and message 9997 is still a hit: the update only replaced the entry of 9999
+     */
+    @Test
+    public void messagesAreCachedUntilUpdated() throws IOException, InterruptedException {
+        Message seed = new Message(9999, 9999, "test message 1", 1669947792L);
+        Message other = new Message(9997, 9997, "test message 2", 1669947792L);
+        Assertions.assertEquals(seed, messageRepository.findByMessageId(9999));
+        Assertions.assertEquals(other, messageRepository.findByMessageId(9997));
+        long hits = regionStats("hibernate:message").get("hits").asLong();
+        Assertions.assertEquals(seed, messageRepository.findByMessageId(9999));
+        JsonNode stats = regionStats("hibernate:message");
+        Assertions.assertTrue(stats.get("hits").asLong() > hits, "Expected a hit, stats were " + stats);
+
+        HttpRequest patchRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/9999"))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"messageText\": \"text changed\"}"))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<String> response = webClient.send(patchRequest, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode(), "Expected Status Code 200 - Actual Code was: " + response.statusCode());
+        Assertions.assertEquals(new Message(9999, 9999, "text changed", 1669947792L), messageRepository.findByMessageId(9999));
+        Assertions.assertEquals(Arrays.asList(new Message(9999, 9999, "text changed", 1669947792L)),
+                messageRepository.findAllByMessageIdIn(Arrays.asList(9999, 1)));
+        hits = regionStats("hibernate:message").get("hits").asLong();
+        Assertions.assertEquals(other, messageRepository.findByMessageId(9997));
+        stats = regionStats("hibernate:message");
+        Assertions.assertTrue(stats.get("hits").asLong() > hits, "Expected a hit, stats were " + stats);
+    }
+
+    /**
+     * Listing the messages of account 9999 twice, posting a message with POST localhost:8080/messages, and listing
+     * them again
+     *
+     * Expected Response:
+     *  The second listing is a hit on the "hibernate:message-queries" region, and the third includes the new message
+     */
+    @Test
+    public void queriesAreCachedUntilMessagesAreWritten() throws IOException, InterruptedException {
+        Message seed = new Message(9999, 9999, "test message 1", 1669947792L);
+        Assertions.assertEquals(Arrays.asList(seed), messageRepository.findAllByPostedBy(9999));
+        Assertions.assertEquals(Arrays.asList(seed), messageRepository.findAllByPostedBy(9999));
+        JsonNode stats = regionStats("hibernate:message-queries");
+        Assertions.assertEquals(1, stats.get("hits").asLong(), "Expected one hit, stats were " + stats);
+
+        HttpRequest postRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"postedBy\":9999,\"messageText\":\"hello message\",\"timePostedEpoch\":1669947792}"))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<String> response = webClient.send(postRequest, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode(), "Expected Status Code 200 - Actual Code was: " + response.statusCode());
+        Message posted = objectMapper.readValue(response.body(), Message.class);
+        List<Message> messages = messageRepository.findAllByPostedBy(9999);
+        Assertions.assertEquals(2, messages.size(), "Expected the new message, Actual=" + messages);
+        Assertions.assertTrue(messages.contains(posted), "Expected the new message, Actual=" + messages);
+    }
+
+    private JsonNode regionStats(String name) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/admin/caches"))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        for (JsonNode stats : objectMapper.readTree(response.body())) {
+            if (stats.get("name").asText().equals(name)) {
+                return stats;
+            }
+        }
+        Assertions.fail("No \"" + name + "\" cache in " + response.body());
+        return null;
+    }
+}
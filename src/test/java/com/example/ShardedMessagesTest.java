@@ -0,0 +1,173 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.entity.Message;
+import com.example.repository.ShardRoutingDataSource;
+import com.example.repository.ShardedMessageRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class ShardedMessagesTest {
+	ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    /**
+     * Before every test, reset the databases, restart the app with messages sharded across 3 databases, and
+     * create a new webClient and ObjectMapper for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        String[] args = new String[] {"--app.messages.shards.count=3"};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+    	Thread.sleep(500);
+    	SpringApplication.exit(app);
+    }
+
+    /**
+     * Posting messages by several accounts, then sending GET localhost:8080/messages,
+     * GET localhost:8080/accounts/{accountId}/messages and GET localhost:8080/messages/{messageId}
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the same messages as without sharding, each stored only on its poster's shard
+     */
+    @Test
+    public void messagesStoredOnTheirPostersShard() throws IOException, InterruptedException {
+        ShardedMessageRepository repository = app.getBean(ShardedMessageRepository.class);
+        ShardRoutingDataSource dataSource = app.getBean(ShardRoutingDataSource.class);
+        Message seed9999 = new Message(9999, 9999, "test message 1", 1669947792L);
+        Message seed9997 = new Message(9997, 9997, "test message 2", 1669947792L);
+        Message seed9996 = new Message(9996, 9996, "test message 3", 1669947792L);
+        Message first = post("{\"postedBy\":9999,\"messageText\":\"first\",\"timePostedEpoch\":1669947793}");
+        Message second = post("{\"postedBy\":9998,\"messageText\":\"second\",\"timePostedEpoch\":1669947794}");
+        Message third = post("{\"postedBy\":9997,\"messageText\":\"third\",\"timePostedEpoch\":1669947795}");
+
+        for (Message message : Arrays.asList(seed9999, seed9997, seed9996, first, second, third)) {
+            int shard = repository.shardOf(message.getPostedBy());
+            for (int i = 0; i < dataSource.getShardCount(); i++) {
+                int count = new JdbcTemplate(dataSource.getShard(i)).queryForObject(
+                        "SELECT COUNT(*) FROM message WHERE messageId = ?", Integer.class, message.getMessageId());
+                Assertions.assertEquals(i == shard ? 1 : 0, count, message + " on shard " + i);
+            }
+        }
+        for (Message message : Arrays.asList(first, second, third)) {
+            Assertions.assertEquals(repository.shardOf(message.getPostedBy()), message.getMessageId() % 3);
+        }
+
+        List<Message> expected = new ArrayList<Message>(Arrays.asList(seed9996, seed9997, seed9999));
+        expected.addAll(Arrays.asList(first, second, third));
+        expected.sort((a, b) -> a.getMessageId() - b.getMessageId());
+        Assertions.assertEquals(expected, getList("http://localhost:8080/messages"));
+        Assertions.assertEquals(Arrays.asList(first, seed9999), getList("http://localhost:8080/accounts/9999/messages"));
+        Assertions.assertEquals(second, objectMapper.readValue(get("http://localhost:8080/messages/" + second.getMessageId()), Message.class));
+        Assertions.assertEquals(seed9997, objectMapper.readValue(get("http://localhost:8080/messages/9997"), Message.class));
+    }
+
+    /**
+     * Sending PATCH and DELETE localhost:8080/messages/{messageId} for messages on other shards than the primary
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: 1, and the messages are updated and deleted
+     */
+    @Test
+    public void updateAndDeleteOnShards() throws IOException, InterruptedException {
+        Message message = post("{\"postedBy\":9998,\"messageText\":\"before\",\"timePostedEpoch\":1669947793}");
+
+        HttpRequest patchRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/" + message.getMessageId()))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"messageText\":\"after\"}"))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<String> response = webClient.send(patchRequest, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals("1", response.body());
+        message.setMessageText("after");
+        Assertions.assertEquals(message, objectMapper.readValue(get("http://localhost:8080/messages/" + message.getMessageId()), Message.class));
+
+        for (int messageId : new int[] {message.getMessageId(), 9997, 9996}) {
+            HttpRequest deleteRequest = HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8080/messages/" + messageId))
+                    .DELETE()
+                    .build();
+            response = webClient.send(deleteRequest, HttpResponse.BodyHandlers.ofString());
+            Assertions.assertEquals("1", response.body());
+            Assertions.assertEquals("", get("http://localhost:8080/messages/" + messageId));
+        }
+    }
+
+    /**
+     * Saving messages by posters on every shard in a transaction that then rolls back
+     *
+     * Expected Response:
+     *  None of the messages stays stored, on any shard
+     */
+    @Test
+    public void rolledBackBatchesLeaveNoMessages() {
+        ShardedMessageRepository repository = app.getBean(ShardedMessageRepository.class);
+        ShardRoutingDataSource dataSource = app.getBean(ShardRoutingDataSource.class);
+        List<Message> messages = new ArrayList<Message>();
+        for (int postedBy : new int[] {9999, 9998, 9997, 9996}) {
+            messages.add(new Message(postedBy, "rolled back", 1669947793L));
+        }
+        new TransactionTemplate(app.getBean(PlatformTransactionManager.class)).executeWithoutResult(status -> {
+            repository.saveAll(messages);
+            status.setRollbackOnly();
+        });
+
+        for (int i = 0; i < dataSource.getShardCount(); i++) {
+            int count = new JdbcTemplate(dataSource.getShard(i)).queryForObject(
+                    "SELECT COUNT(*) FROM message WHERE messageText = 'rolled back'", Integer.class);
+            Assertions.assertEquals(0, count, "Messages left on shard " + i);
+        }
+    }
+
+    private String get(String uri) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(uri))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode(), "Expected Status Code 200 - Actual Code was: " + response.statusCode());
+        return response.body();
+    }
+
+    private List<Message> getList(String uri) throws IOException, InterruptedException {
+        return Arrays.asList(objectMapper.readValue(get(uri), Message[].class));
+    }
+
+    private Message post(String json) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode(), "Expected Status Code 200 - Actual Code was: " + response.statusCode());
+        return objectMapper.readValue(response.body(), Message.class);
+    }
+}
@@ -0,0 +1,104 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.dto.MessageBatchResult;
+import com.example.entity.Message;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class TokenSessionTest {
+	ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    /**
+     * Before every test, reset the database, restart the app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        String[] args = new String[] {};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+    	Thread.sleep(500);
+    	SpringApplication.exit(app);
+    }
+
+    /**
+     * Logging in as testuser1 (account 9999), then sending POST localhost:8080/messages and
+     * POST localhost:8080/messages/batch with the returned token and another account as "postedBy"
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: messages posted by the token's account, not the body's
+     */
+    @Test
+    public void createMessageWithTokenPostsAsTokenAccount() throws IOException, InterruptedException {
+        String token = login();
+
+        HttpResponse<String> response = send("/messages", "Bearer " + token,
+                "{\"postedBy\":9998,\"messageText\":\"hello message\",\"timePostedEpoch\":1669947792}");
+        Assertions.assertEquals(200, response.statusCode(), "Expected Status Code 200 - Actual Code was: " + response.statusCode());
+        Message message = objectMapper.readValue(response.body(), Message.class);
+        Assertions.assertEquals(9999, message.getPostedBy());
+
+        HttpResponse<String> batch = send("/messages/batch", "Bearer " + token,
+                "[{\"messageText\":\"batch message\",\"timePostedEpoch\":1669947792}]");
+        Assertions.assertEquals(200, batch.statusCode(), "Expected Status Code 200 - Actual Code was: " + batch.statusCode());
+        MessageBatchResult[] results = objectMapper.readValue(batch.body(), MessageBatchResult[].class);
+        Assertions.assertEquals(200, results[0].getStatus());
+        Assertions.assertEquals(9999, results[0].getMessage().getPostedBy());
+    }
+
+    /**
+     * Sending POST localhost:8080/messages with a tampered token
+     *
+     * Expected Response:
+     *  Status Code: 401
+     */
+    @Test
+    public void createMessageWithInvalidTokenUnauthorized() throws IOException, InterruptedException {
+        String token = login();
+        String tampered = (token.charAt(0) == 'A' ? 'B' : 'A') + token.substring(1);
+
+        HttpResponse<String> response = send("/messages", "Bearer " + tampered,
+                "{\"postedBy\":9999,\"messageText\":\"hello message\",\"timePostedEpoch\":1669947792}");
+        Assertions.assertEquals(401, response.statusCode(), "Expected Status Code 401 - Actual Code was: " + response.statusCode());
+    }
+
+    private String login() throws IOException, InterruptedException {
+        HttpResponse<String> response = send("/login", null, "{\"username\":\"testuser1\",\"password\":\"password\"}");
+        Assertions.assertEquals(200, response.statusCode(), "Expected Status Code 200 - Actual Code was: " + response.statusCode());
+        return response.headers().firstValue("X-Auth-Token")
+                .orElseThrow(() -> new AssertionError("Expected an X-Auth-Token header"));
+    }
+
+    private HttpResponse<String> send(String path, String authorization, String json) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json");
+        if (authorization != null) {
+            request.header("Authorization", authorization);
+        }
+        return webClient.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
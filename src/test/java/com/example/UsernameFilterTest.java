@@ -0,0 +1,114 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.cache.UsernameFilter;
+
+public class UsernameFilterTest {
+	ApplicationContext app;
+    HttpClient webClient;
+
+    /**
+     * Before every test, reset the database, restart the app, and create a new webClient
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        String[] args = new String[] {};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+    	Thread.sleep(500);
+    	SpringApplication.exit(app);
+    }
+
+    /**
+     * Inserting an account behind the app's back (so the username filter misses it), with an id far above
+     * the ones the sequence hands out, then sending an http request to POST localhost:8080/register with
+     * its username
+     *
+     * Expected Response:
+     *  Status Code: 409, from the unique constraint on the username
+     */
+    @Test
+    public void registerUsernameMissedByFilterConflict() throws IOException, InterruptedException {
+        app.getBean(JdbcTemplate.class).update("insert into account values (1000000, 'sneaky', 'password')");
+        Assertions.assertFalse(app.getBean(UsernameFilter.class).mightContain("sneaky"));
+
+        HttpResponse<String> response = register("sneaky");
+        Assertions.assertEquals(409, response.statusCode(), "Expected Status Code 409 - Actual Code was: " + response.statusCode());
+        Assertions.assertTrue(app.getBean(UsernameFilter.class).mightContain("sneaky"));
+    }
+
+    /**
+     * Inserting an account behind the app's back with the id the sequence hands out next, then sending an
+     * http request to POST localhost:8080/register with a new username
+     *
+     * Expected Response:
+     *  Status Code: 500, as the primary key collides: not a 409, and the username isn't added to the filter
+     */
+    @Test
+    public void registerIdCollisionIsNotAConflict() throws IOException, InterruptedException {
+        app.getBean(JdbcTemplate.class).update("insert into account values (1, 'squatter', 'password')");
+
+        HttpResponse<String> response = register("newcomer");
+        Assertions.assertEquals(500, response.statusCode(), "Expected Status Code 500 - Actual Code was: " + response.statusCode());
+        Assertions.assertFalse(app.getBean(UsernameFilter.class).mightContain("newcomer"));
+    }
+
+    /**
+     * Sending several concurrent http requests to POST localhost:8080/register with the same new username
+     *
+     * Expected Response:
+     *  Status Code: 200 for exactly one of them, 409 for the others
+     */
+    @Test
+    public void registerSameUsernameConcurrentlyOneSucceeds() {
+        List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            responses.add(webClient.sendAsync(registerRequest("racer"), HttpResponse.BodyHandlers.ofString()));
+        }
+
+        int created = 0;
+        for (CompletableFuture<HttpResponse<String>> response : responses) {
+            int status = response.join().statusCode();
+            Assertions.assertTrue(status == 200 || status == 409, "Expected Status Code 200 or 409 - Actual Code was: " + status);
+            if (status == 200) {
+                created++;
+            }
+        }
+        Assertions.assertEquals(1, created, "Expected exactly one registration to succeed");
+    }
+
+    private HttpResponse<String> register(String username) throws IOException, InterruptedException {
+        return webClient.send(registerRequest(username), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpRequest registerRequest(String username) {
+        return HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/register"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"username\":\"" + username + "\",\"password\":\"password\"}"))
+                .header("Content-Type", "application/json")
+                .build();
+    }
+}
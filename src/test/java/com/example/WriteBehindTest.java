@@ -0,0 +1,188 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.entity.Message;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class WriteBehindTest {
+	ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    @TempDir
+    Path journalDir;
+
+    /**
+     * Every test prepares the journal before starting the app in write-behind mode; reset the database,
+     * restart the app, and create a new webClient and ObjectMapper for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    private void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        String[] args = new String[] {"--app.messages.write-behind.enabled=true",
+                "--app.messages.write-behind.journal=" + journalDir.resolve("journal.ndjson")};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+    	Thread.sleep(500);
+    	SpringApplication.exit(app);
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages with valid message, then polling
+     * GET localhost:8080/messages/{messageId}
+     *
+     * Expected Response:
+     *  Status Code: 202, with the message and its assigned id
+     *  The message is then readable, and the journal empty once it is
+     */
+    @Test
+    public void createMessageAccepted() throws IOException, InterruptedException {
+        setUp();
+        HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{"+
+                        "\"postedBy\":9999, " +
+                        "\"messageText\": \"hello message\", " +
+                        "\"timePostedEpoch\": 1669947792}"))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<String> response = webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofString());
+        int status = response.statusCode();
+        Assertions.assertEquals(202, status, "Expected Status Code 202 - Actual Code was: " + status);
+        Message accepted = objectMapper.readValue(response.body(), Message.class);
+        Assertions.assertNotNull(accepted.getMessageId());
+
+        Message written = awaitMessage(accepted.getMessageId());
+        Assertions.assertEquals(accepted, written);
+        for (int i = 0; i < 50 && Files.size(journalDir.resolve("journal.ndjson")) > 0; i++) {
+            Thread.sleep(20);
+        }
+        Assertions.assertEquals(0, Files.size(journalDir.resolve("journal.ndjson")));
+    }
+
+    /**
+     * Starting the app with a message left in the journal by a crash, then sending GET localhost:8080/messages/12345
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the journaled message, and the journal is empty
+     */
+    @Test
+    public void recoverJournaledMessages() throws IOException, InterruptedException {
+        Message journaled = new Message(12345, 9998, "journaled message", 1669947792L);
+        Files.writeString(journalDir.resolve("journal.ndjson"), new ObjectMapper().writeValueAsString(journaled) + "\n");
+        setUp();
+
+        Assertions.assertEquals(journaled, getMessage(12345));
+        Assertions.assertEquals(0, Files.size(journalDir.resolve("journal.ndjson")));
+    }
+
+    /**
+     * Starting the app with a journal segment and a journal holding a message the database already has, one whose
+     * id a different row holds, and a new one, then sending POST localhost:8080/messages with valid message
+     *
+     * Expected Response:
+     *  The stored and new messages are readable, the colliding one is kept in journal.ndjson.rejected instead of
+     *  being dropped, the new message gets an id above every journaled one, and only the journal file is left
+     */
+    @Test
+    public void recoverRejectsCollidingMessages() throws IOException, InterruptedException {
+        Message stored = new Message(9999, 9999, "test message 1", 1669947792L);
+        Message colliding = new Message(9997, 9998, "journaled message", 1669947792L);
+        Message journaled = new Message(12345, 9998, "journaled message", 1669947792L);
+        Files.writeString(journalDir.resolve("journal.ndjson.0"), new ObjectMapper().writeValueAsString(stored) + "\n"
+                + new ObjectMapper().writeValueAsString(colliding) + "\n");
+        Files.writeString(journalDir.resolve("journal.ndjson"), new ObjectMapper().writeValueAsString(journaled) + "\n");
+        setUp();
+
+        Assertions.assertEquals(stored, getMessage(9999));
+        Assertions.assertEquals(new Message(9997, 9997, "test message 2", 1669947792L), getMessage(9997));
+        Assertions.assertEquals(journaled, getMessage(12345));
+        Assertions.assertEquals(colliding, objectMapper.readValue(
+                Files.readString(journalDir.resolve("journal.ndjson.rejected")), Message.class));
+        Assertions.assertFalse(Files.exists(journalDir.resolve("journal.ndjson.0")));
+
+        HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{"+
+                        "\"postedBy\":9999, " +
+                        "\"messageText\": \"hello message\", " +
+                        "\"timePostedEpoch\": 1669947792}"))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<String> response = webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(202, response.statusCode(), "Expected Status Code 202 - Actual Code was: " + response.statusCode());
+        Message accepted = objectMapper.readValue(response.body(), Message.class);
+        Assertions.assertTrue(accepted.getMessageId() > 12345, "Expected an id above 12345, was " + accepted.getMessageId());
+        Assertions.assertEquals(accepted, awaitMessage(accepted.getMessageId()));
+    }
+
+    /**
+     * Starting the app with a journal whose first message was written and then deleted before a crash (the writer
+     * checkpointed it, but the queue wasn't drained yet) and a second message that wasn't written yet, then sending
+     * GET localhost:8080/messages/{messageId} for both
+     *
+     * Expected Response:
+     *  Status Code: 200, with an empty body for the deleted message, which isn't inserted again, and the unwritten
+     *  message for the other; nothing is rejected
+     */
+    @Test
+    public void recoverSkipsCheckpointedMessages() throws IOException, InterruptedException {
+        Message deleted = new Message(12344, 9998, "deleted message", 1669947792L);
+        Message journaled = new Message(12345, 9998, "journaled message", 1669947792L);
+        Files.writeString(journalDir.resolve("journal.ndjson"), new ObjectMapper().writeValueAsString(deleted) + "\n"
+                + new ObjectMapper().writeValueAsString(journaled) + "\n"
+                + "{\"written\":1}\n");
+        setUp();
+
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/12344"))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode(), "Expected Status Code 200 - Actual Code was: " + response.statusCode());
+        Assertions.assertEquals("", response.body());
+        Assertions.assertEquals(journaled, getMessage(12345));
+        Assertions.assertFalse(Files.exists(journalDir.resolve("journal.ndjson.rejected")));
+        Assertions.assertEquals(0, Files.size(journalDir.resolve("journal.ndjson")));
+    }
+
+    private Message getMessage(int messageId) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/" + messageId))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode(), "Expected Status Code 200 - Actual Code was: " + response.statusCode());
+        return objectMapper.readValue(response.body(), Message.class);
+    }
+
+    private Message awaitMessage(int messageId) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/" + messageId))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        for (int i = 0; i < 50 && response.body().isEmpty(); i++) {
+            Thread.sleep(20);
+            response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        }
+        Assertions.assertEquals(200, response.statusCode(), "Expected Status Code 200 - Actual Code was: " + response.statusCode());
+        return objectMapper.readValue(response.body(), Message.class);
+    }
+}